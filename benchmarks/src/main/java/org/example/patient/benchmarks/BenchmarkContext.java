@@ -0,0 +1,92 @@
+package org.example.patient.benchmarks;
+
+import org.example.ExerciseApplication;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.service.PatientNameIndex;
+import org.example.patient.service.PatientService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Boots the application against an in-memory H2 database with the same wiring as production,
+ * minus the web server (requests are dispatched through MockMvc).
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(ExerciseApplication.class)
+                .web(WebApplicationType.NONE)
+                // passed as arguments so they take precedence over application.properties
+                .run(
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmarks;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE",
+                        "--spring.datasource.driverClassName=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.flyway.enabled=false",
+                        "--app.ingest.directory=" + ingestDirectory());
+    }
+
+    /**
+     * Boots against an existing PostgreSQL database, migrated by Flyway like production. Benchmarks that need
+     * the PostgreSQL schema (partitions, native queries) use this one.
+     */
+    public static ConfigurableApplicationContext startPostgres(String url, String username, String password) {
+        return new SpringApplicationBuilder(ExerciseApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--spring.datasource.url=" + url,
+                        "--spring.datasource.driverClassName=org.postgresql.Driver",
+                        "--spring.datasource.username=" + username,
+                        "--spring.datasource.password=" + password,
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQLDialect",
+                        "--spring.jpa.hibernate.ddl-auto=validate",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.flyway.enabled=true",
+                        "--app.ingest.directory=" + ingestDirectory());
+    }
+
+    // empty for every context, so that nothing a previous run left in its ingest log is replayed
+    private static Path ingestDirectory() {
+        try {
+            Path target = Files.createDirectories(Path.of("target"));
+            return Files.createTempDirectory(target, "observation-ingest").toAbsolutePath();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void seedPatients(ConfigurableApplicationContext context, int count) throws InterruptedException {
+        PatientService patientService = context.getBean(PatientService.class);
+        String[] givenNames = {"John", "Jane", "Joan", "Mary", "Peter", "Amina", "Wanjiru", "Otieno"};
+        String[] familyNames = {"Doe", "Smith", "Kamau", "Barasa", "Njoroge", "Achieng", "Mwangi", "Odhiambo"};
+        for (int i = 0; i < count; i++) {
+            patientService.createPatient(new PatientDTO(
+                    "MRN-" + i,
+                    givenNames[i % givenNames.length],
+                    familyNames[(i / givenNames.length) % familyNames.length] + (i / 64),
+                    LocalDate.of(1940, 1, 1).plusDays(i % 25_000),
+                    i % 2 == 0 ? "MALE" : "FEMALE"));
+        }
+        PatientNameIndex nameIndex = context.getBean(PatientNameIndex.class);
+        while (!nameIndex.isReady()) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.patient.benchmarks;
+
+import org.example.patient.models.BatchItemResult;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.repository.ObservationRepo;
+import org.example.patient.repository.PatientRepo;
+import org.example.patient.service.ObservationService;
+import org.example.patient.service.PatientService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-observation cost of ingest against H2, one request at a time and through the batch endpoint's service call.
+ * Warmed up as long as SearchDispatchBenchmark, for the same reason.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 30, time = 3)
+@Measurement(iterations = 10, time = 3)
+@Fork(3)
+public class ObservationIngestBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private ConfigurableApplicationContext context;
+    private ObservationService observationService;
+    private ObservationRepo observationRepository;
+    private ObservationDTO observation;
+    private List<ObservationDTO> batch;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        observationService = context.getBean(ObservationService.class);
+        observationRepository = context.getBean(ObservationRepo.class);
+
+        context.getBean(PatientService.class).createPatient(
+                new PatientDTO("MRN-1", "John", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+        Long patientId = context.getBean(PatientRepo.class).findByIdentifier("MRN-1").orElseThrow().getId();
+
+        LocalDateTime start = LocalDateTime.of(2025, 12, 1, 0, 0);
+        observation = new ObservationDTO(patientId, null, "8867-4", "72 bpm", start);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new ObservationDTO(patientId, null, "8867-4", (60 + i % 40) + " bpm", start.plusMinutes(i)));
+        }
+    }
+
+    // keeps the table from growing across iterations so every iteration inserts into the same state
+    @TearDown(Level.Iteration)
+    public void clearObservations() {
+        observationRepository.deleteAllInBatch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<ObservationDTO> createObservation() {
+        return observationService.createObservation(observation);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<BatchItemResult> createObservationsBatch() {
+        return observationService.createObservations(batch);
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.patient.benchmarks;
+
+import org.example.patient.models.CursorPage;
+import org.example.patient.models.ObservationBucket;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.ObservationStats;
+import org.example.patient.repository.ObservationPartitionRepo;
+import org.example.patient.service.ObservationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-bounded observation reads against a PostgreSQL database holding 10M to 500M observations spread evenly
+ * over the last two years, i.e. at a constant rate per monthly partition. The database is taken from
+ * -Dbenchmark.postgres.url (user and password from -Dbenchmark.postgres.username and .password) and is topped up
+ * or cut down to the row count of each run. JMH runs every size of one benchmark before the next benchmark, so
+ * give one size per invocation, smallest first; seeding 500M rows takes hours.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, time = 5)
+@Measurement(iterations = 10, time = 5)
+@Fork(3)
+public class ObservationPartitionBenchmark {
+
+    private static final int PATIENTS = 10_000;
+    private static final int MONTHS = 24;
+    private static final int SEED_CHUNK = 5_000_000;
+    private static final String[] CODES = {"8867-4", "8310-5", "9279-1", "2708-6"};
+
+    @Param({"10000000", "100000000", "500000000"})
+    public long observations;
+
+    private ConfigurableApplicationContext context;
+    private ObservationService observationService;
+    private long[] patientIds;
+    private LocalDateTime end;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.startPostgres(
+                System.getProperty("benchmark.postgres.url", "jdbc:postgresql://localhost:5432/benchmarks"),
+                System.getProperty("benchmark.postgres.username", "postgres"),
+                System.getProperty("benchmark.postgres.password", ""));
+        observationService = context.getBean(ObservationService.class);
+        end = YearMonth.now().atDay(1).atStartOfDay();
+        seed(context.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    // one patient's heart rate over a day, as a chart of the latest readings would ask for it
+    @Benchmark
+    public List<ObservationDTO> rangeOfOneDay() {
+        LocalDateTime from = end.minusDays(1 + next % 28);
+        return observationService.getObservationsInRange(
+                nextPatient(), CODES[0], from, from.plusDays(1), null, CursorPage.MAX_SIZE).getItems();
+    }
+
+    @Benchmark
+    public List<ObservationBucket> hourlyBucketsOfOneWeek() {
+        LocalDateTime from = end.minusDays(7 + next % 21);
+        return observationService.getObservationBuckets(nextPatient(), CODES[0], from, from.plusDays(7), Duration.ofHours(1));
+    }
+
+    @Benchmark
+    public List<ObservationStats> statsOfOneMonth() {
+        return observationService.getObservationStats(nextPatient(), CODES[0], end.minusMonths(1), end, false);
+    }
+
+    private long nextPatient() {
+        return patientIds[next++ % patientIds.length];
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("insert into patients (identifier, given_name, family_name, birth_date, gender) "
+                + "select 'BENCH-' || i, 'John', 'Doe', date '1940-01-01' + i % 25000, case when i % 2 = 0 then 'MALE' else 'FEMALE' end "
+                + "from generate_series(1, ?) i on conflict (identifier) do nothing", PATIENTS);
+        patientIds = jdbcTemplate.queryForList("select id from patients where identifier like 'BENCH-%' order by id", Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+
+        ObservationPartitionRepo partitionRepository = context.getBean(ObservationPartitionRepo.class);
+        new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            List<YearMonth> months = partitionRepository.findMonths();
+            for (YearMonth month = YearMonth.from(end).minusMonths(MONTHS); month.isBefore(YearMonth.from(end)); month = month.plusMonths(1)) {
+                if (!months.contains(month)) {
+                    partitionRepository.createPartition(month);
+                }
+            }
+        });
+
+        // row i lands at a fixed point of the two years, so topping up keeps every month equally full
+        long seconds = Duration.between(end.minusMonths(MONTHS), end).toSeconds();
+        long existing = jdbcTemplate.queryForObject("select count(*) from observations where patient_id between ? and ?",
+                Long.class, patientIds[0], patientIds[patientIds.length - 1]);
+        if (existing == observations) {
+            return;
+        }
+        long firstId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) + 1 from observations", Long.class);
+        if (existing > observations) {
+            // the rows past the count go; they are spread over the two years like the ones that stay
+            jdbcTemplate.update("delete from observations where patient_id between ? and ? and id >= ?",
+                    patientIds[0], patientIds[patientIds.length - 1], firstId - existing + observations);
+            jdbcTemplate.execute("analyze observations");
+            return;
+        }
+        for (long from = existing; from < observations; from += SEED_CHUNK) {
+            long to = Math.min(from + SEED_CHUNK, observations);
+            jdbcTemplate.update("insert into observations (id, patient_id, code, value, numeric_value, unit, effective_date_time) "
+                            + "select ?::bigint + i, ?::bigint + i % ?::bigint, (array['" + String.join("','", CODES) + "'])[1 + (i / ?::bigint) % 4], "
+                            + "(60 + i % 40) || ' bpm', 60 + i % 40, 'bpm', ?::timestamp + make_interval(secs => ((i * 7919) % ?::bigint)::float8) "
+                            + "from generate_series(?::bigint, ?::bigint - 1) i",
+                    firstId - existing, patientIds[0], patientIds.length, patientIds.length,
+                    Timestamp.valueOf(end.minusMonths(MONTHS)), seconds, from, to);
+        }
+        jdbcTemplate.queryForObject("select setval('observations_seq', (select max(id) from observations) + 100)", Long.class);
+        jdbcTemplate.execute("analyze observations");
+    }
+}
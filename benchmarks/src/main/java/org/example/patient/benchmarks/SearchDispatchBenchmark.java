@@ -0,0 +1,76 @@
+package org.example.patient.benchmarks;
+
+import org.example.patient.controller.PatientController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * GET /api/patients through the DispatcherServlet for each branch of PatientController.searchPatients,
+ * over 10k patients in H2. The JIT keeps compiling the booted application for a minute or more, hence the long
+ * warmup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 30, time = 3)
+@Measurement(iterations = 10, time = 3)
+@Fork(3)
+public class SearchDispatchBenchmark {
+
+    private static final int PATIENTS = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seedPatients(context, PATIENTS);
+        mockMvc = MockMvcBuilders.standaloneSetup(context.getBean(PatientController.class)).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] listFirstPage() throws Exception {
+        return search("/api/patients");
+    }
+
+    @Benchmark
+    public byte[] byIdentifier() throws Exception {
+        return search("/api/patients?identifier=MRN-4242");
+    }
+
+    @Benchmark
+    public byte[] byFamilyName() throws Exception {
+        return search("/api/patients?family=kamau1&size=20");
+    }
+
+    @Benchmark
+    public byte[] combinedFilters() throws Exception {
+        return search("/api/patients?family=smith&gender=FEMALE&birthDateFrom=1980-01-01&size=20");
+    }
+
+    private byte[] search(String uri) throws Exception {
+        return mockMvc.perform(get(uri)).andReturn().getResponse().getContentAsByteArray();
+    }
+}
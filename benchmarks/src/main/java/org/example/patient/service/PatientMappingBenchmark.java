@@ -0,0 +1,56 @@
+package org.example.patient.service;
+
+import org.example.patient.entity.Patient;
+import org.example.patient.models.PatientDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// lives in the service package because the converters are package-private
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class PatientMappingBenchmark {
+
+    private PatientService patientService;
+    private Patient patient;
+    private PatientDTO patientDTO;
+
+    @Setup
+    public void setUp() {
+        patientService = new PatientService();
+
+        patient = new Patient();
+        patient.setId(1L);
+        patient.setIdentifier("MRN-12345");
+        patient.setGivenName("John");
+        patient.setFamilyName("Doe");
+        patient.setBirthDate(LocalDate.of(1985, 6, 15));
+        patient.setGender(Patient.Gender.MALE);
+
+        patientDTO = new PatientDTO("MRN-12345", "John", "Doe", LocalDate.of(1985, 6, 15), "MALE");
+    }
+
+    @Benchmark
+    public PatientDTO convertToDTO() {
+        return patientService.convertToDTO(patient);
+    }
+
+    @Benchmark
+    public Patient convertToEntity() {
+        return patientService.convertToEntity(patientDTO);
+    }
+}
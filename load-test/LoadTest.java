@@ -0,0 +1,136 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop HTTP load generator, run straight from source on Java 21:
+ *
+ *   java LoadTest.java seed <baseUrl> <patients> <observationsPerPatient>
+ *   java LoadTest.java run  <baseUrl> <clients> <seconds> <patients>
+ *
+ * Each client is a virtual thread that reads GET /api/patients/{id}/observations for a random patient
+ * as fast as responses come back. Latencies from the first 10 seconds are discarded as warm-up.
+ */
+public class LoadTest {
+
+    private static final long WARMUP_NANOS = Duration.ofSeconds(10).toNanos();
+
+    public static void main(String[] args) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        switch (args[0]) {
+            case "seed" -> seed(client, args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            case "run" -> run(client, args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            default -> throw new IllegalArgumentException("Unknown command " + args[0]);
+        }
+    }
+
+    private static void seed(HttpClient client, String baseUrl, int patients, int observationsPerPatient) throws Exception {
+        for (int i = 1; i <= patients; i++) {
+            String patient = """
+                    {"identifier":"LOAD-%d","givenName":"Load","familyName":"Test%d","birthDate":"1980-01-01","gender":"MALE"}"""
+                    .formatted(i, i);
+            send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/api/patients"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(patient)).build());
+
+            StringBuilder batch = new StringBuilder("[");
+            for (int j = 0; j < observationsPerPatient; j++) {
+                batch.append(j == 0 ? "" : ",").append("""
+                        {"patientId":%d,"code":"8867-4","value":"%d bpm","effectiveDateTime":"2025-12-01T%02d:%02d:00"}"""
+                        .formatted(i, 60 + j % 40, (j / 60) % 24, j % 60));
+            }
+            send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/api/observations/batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(batch.append("]").toString())).build());
+        }
+        System.out.println("Seeded " + patients + " patients with " + observationsPerPatient + " observations each");
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(response.statusCode() + " " + response.body());
+        }
+    }
+
+    private static void run(HttpClient client, String baseUrl, int clients, int seconds, int patients) throws Exception {
+        long start = System.nanoTime();
+        long measureFrom = start + WARMUP_NANOS;
+        long end = measureFrom + Duration.ofSeconds(seconds).toNanos();
+
+        List<Future<long[]>> results = new ArrayList<>(clients);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                results.add(executor.submit(() -> clientLoop(client, baseUrl, patients, measureFrom, end)));
+            }
+        }
+
+        long errors = 0;
+        List<long[]> perClient = new ArrayList<>(clients);
+        int total = 0;
+        for (Future<long[]> result : results) {
+            long[] latencies = result.get();
+            errors += latencies[0];
+            perClient.add(latencies);
+            total += latencies.length - 1;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] latencies : perClient) {
+            System.arraycopy(latencies, 1, all, offset, latencies.length - 1);
+            offset += latencies.length - 1;
+        }
+        Arrays.sort(all);
+
+        System.out.printf("clients=%d seconds=%d requests=%d errors=%d throughput=%.0f req/s p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                clients, seconds, total, errors, total / (double) seconds,
+                percentile(all, 0.50), percentile(all, 0.99), all.length == 0 ? 0 : all[all.length - 1] / 1e6);
+    }
+
+    // element 0 carries the error count, the rest are latencies in nanoseconds of successful requests
+    private static long[] clientLoop(HttpClient client, String baseUrl, int patients, long measureFrom, long end) {
+        long[] latencies = new long[1024];
+        int count = 1;
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            long id = ThreadLocalRandom.current().nextLong(1, patients + 1);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/patients/" + id + "/observations"))
+                    .timeout(Duration.ofSeconds(60)).build();
+            boolean ok;
+            try {
+                ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+            } catch (Exception e) {
+                ok = false;
+            }
+            long finished = System.nanoTime();
+            if (now < measureFrom || finished > end) {
+                continue;
+            }
+            if (!ok) {
+                latencies[0]++;
+                continue;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = finished - now;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
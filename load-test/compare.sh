@@ -0,0 +1,42 @@
+#!/usr/bin/env bash
+# Compares the platform-thread and virtual-thread request models under the same load.
+#
+# Needs a JDK 21 on the PATH and the Postgres from application.properties (or SPRING_DATASOURCE_* overrides)
+# reachable and empty. Both models get the same connection pool, DB_POOL_SIZE (20) connections.
+# Usage: load-test/compare.sh [seconds] [patients] [observationsPerPatient]
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+SECONDS_PER_RUN=${1:-30}
+PATIENTS=${2:-1000}
+OBSERVATIONS=${3:-50}
+POOL_SIZE=${DB_POOL_SIZE:-20}
+BASE_URL=http://localhost:8080
+
+mvn -B -q -Pjava21 package -DskipTests
+JAR=$(ls target/*-exec.jar)
+
+start_app() {
+  java -jar "$JAR" --spring.jpa.show-sql=false --spring.datasource.hikari.maximum-pool-size="$POOL_SIZE" "$@" \
+    > "target/load-test-app.log" 2>&1 &
+  APP_PID=$!
+  until curl -sf "$BASE_URL/actuator/health" > /dev/null; do sleep 1; done
+}
+
+stop_app() {
+  kill "$APP_PID"
+  wait "$APP_PID" || true
+}
+
+start_app
+java load-test/LoadTest.java seed "$BASE_URL" "$PATIENTS" "$OBSERVATIONS"
+stop_app
+
+for mode in platform virtual-threads; do
+  if [ "$mode" = virtual-threads ]; then start_app --spring.profiles.active=virtual-threads; else start_app; fi
+  for clients in 1000 5000; do
+    echo -n "$mode: "
+    java load-test/LoadTest.java run "$BASE_URL" "$clients" "$SECONDS_PER_RUN" "$PATIENTS"
+  done
+  stop_app
+done
@@ -0,0 +1,16 @@
+package org.example.patient.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Caches are Caffeine-backed and sized by {@code spring.cache.caffeine.spec}.
+ * The caching advice runs outside the transactional one so a hit never opens a transaction.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+    public static final String PATIENTS = "patients";
+    public static final String PATIENTS_BY_IDENTIFIER = "patientsByIdentifier";
+}
@@ -0,0 +1,176 @@
+package org.example.patient.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Times every statement executed on a connection handed out by the application's data source, whichever
+ * layer issued it, as {@code jdbc.statements} tagged with the SQL verb. Only execution is timed: rows read
+ * from a result set afterwards are not. Statements slower than the threshold are counted and logged with
+ * their SQL, at most {@code slowLogLimit} per minute; the lines dropped in between are reported with the
+ * next one. The statements run on the current thread are also counted for the per-request statement metric.
+ */
+public class JdbcStatementMetrics {
+
+    private static final Logger slowLog = LoggerFactory.getLogger("org.example.patient.SLOW_SQL");
+
+    private static final int MAX_LOGGED_SQL = 2000;
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, Timer> timers;
+    private final Counter slowStatements;
+    private final long slowThresholdNanos;
+    private final int slowLogLimit;
+    private final ThreadLocal<int[]> threadStatements = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger loggedInWindow = new AtomicInteger();
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    public JdbcStatementMetrics(MeterRegistry registry, Duration slowThreshold, int slowLogLimit) {
+        this.timers = Map.of(
+                "select", timer(registry, "select"),
+                "insert", timer(registry, "insert"),
+                "update", timer(registry, "update"),
+                "delete", timer(registry, "delete"),
+                "other", timer(registry, "other"));
+        this.slowStatements = Counter.builder("jdbc.statements.slow")
+                .description("Statements slower than app.metrics.slow-query-threshold")
+                .register(registry);
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.slowLogLimit = slowLogLimit;
+    }
+
+    private static Timer timer(MeterRegistry registry, String operation) {
+        return Timer.builder("jdbc.statements")
+                .description("JDBC statement execution time")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public Connection wrap(Connection connection) {
+        return (Connection) proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = method.invoke(target, args);
+            if (result instanceof Statement statement && method.getReturnType().isInterface()) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                return proxy(method.getReturnType(), statement, new StatementHandler(sql));
+            }
+            return result;
+        });
+    }
+
+    // statements run on this thread since the last call
+    int takeThreadCount() {
+        int[] count = threadStatements.get();
+        int taken = count[0];
+        count[0] = 0;
+        return taken;
+    }
+
+    private void record(String sql, long nanos) {
+        timers.get(operation(sql)).record(nanos, TimeUnit.NANOSECONDS);
+        threadStatements.get()[0]++;
+        if (nanos >= slowThresholdNanos) {
+            slowStatements.increment();
+            logSlow(sql, nanos);
+        }
+    }
+
+    private void logSlow(String sql, long nanos) {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= MINUTE_NANOS && windowStart.compareAndSet(start, now)) {
+            loggedInWindow.set(0);
+        }
+        if (loggedInWindow.incrementAndGet() > slowLogLimit) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        int dropped = suppressed.getAndSet(0);
+        String text = sql == null ? "(batch)" : sql.length() <= MAX_LOGGED_SQL ? sql : sql.substring(0, MAX_LOGGED_SQL) + "...";
+        if (dropped > 0) {
+            slowLog.warn("{} ms: {} ({} slow statements not logged)", TimeUnit.NANOSECONDS.toMillis(nanos), text, dropped);
+        } else {
+            slowLog.warn("{} ms: {}", TimeUnit.NANOSECONDS.toMillis(nanos), text);
+        }
+    }
+
+    private static String operation(String sql) {
+        if (sql == null) {
+            return "other";
+        }
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        String verb = trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+        return switch (verb) {
+            case "select", "with" -> "select";
+            case "insert", "merge" -> "insert";
+            case "update" -> "update";
+            case "delete" -> "delete";
+            default -> "other";
+        };
+    }
+
+    private final class StatementHandler implements Handler {
+        // prepared statements carry their SQL from prepareStatement; plain ones name it on execute or addBatch
+        private String sql;
+
+        StatementHandler(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute") && !method.getName().equals("addBatch")) {
+                return method.invoke(target, args);
+            }
+            if (args != null && args.length > 0 && args[0] instanceof String text) {
+                sql = text;
+            }
+            if (method.getName().equals("addBatch")) {
+                return method.invoke(target, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return method.invoke(target, args);
+            } finally {
+                record(sql, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private interface Handler {
+        Object invoke(Object target, Method method, Object[] args) throws Throwable;
+    }
+
+    private static Object proxy(Class<?> type, Object target, Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            try {
+                return handler.invoke(target, method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return Proxy.newProxyInstance(JdbcStatementMetrics.class.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+}
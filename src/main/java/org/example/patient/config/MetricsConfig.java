@@ -0,0 +1,175 @@
+package org.example.patient.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.ResponseFacade;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Metrics the actuator does not collect on its own: the time of every JDBC statement, the statements each
+ * request runs, and the bytes each response writes. Service timings come from {@code @Timed}, repository
+ * timings, the Hikari pool and the Hibernate statistics from the actuator.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public JdbcStatementMetrics jdbcStatementMetrics(
+            MeterRegistry registry,
+            @Value("${app.metrics.slow-query-threshold:200ms}") Duration slowQueryThreshold,
+            @Value("${app.metrics.slow-query-log-limit:60}") int slowQueryLogLimit) {
+        return new JdbcStatementMetrics(registry, slowQueryThreshold, slowQueryLogLimit);
+    }
+
+    // static, and the metrics looked up on first use, so wrapping the data source does not pull the
+    // meter registry into existence ahead of the other post-processors
+    @Bean
+    public static BeanPostProcessor instrumentedDataSourcePostProcessor(ObjectProvider<JdbcStatementMetrics> metrics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+                    return new InstrumentedDataSource(dataSource, metrics);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> requestMetricsFilter(JdbcStatementMetrics statementMetrics,
+                                                                             MeterRegistry registry) {
+        OncePerRequestFilter filter = new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                statementMetrics.takeThreadCount();
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    // statements of an async request run on other threads and are left out
+                    Tags tags = tags(request, response);
+                    DistributionSummary.builder("http.server.requests.statements")
+                            .description("JDBC statements run by the request thread")
+                            .tags(tags)
+                            .publishPercentileHistogram()
+                            .register(registry)
+                            .record(statementMetrics.takeThreadCount());
+                    if (request.isAsyncStarted()) {
+                        request.getAsyncContext().addListener(new ResponseSizeListener(registry, request, response));
+                    } else {
+                        recordResponseSize(registry, tags, response);
+                    }
+                }
+            }
+        };
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    private static Tags tags(HttpServletRequest request, HttpServletResponse response) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return Tags.of(
+                "method", request.getMethod(),
+                "uri", pattern != null ? pattern.toString() : "UNKNOWN",
+                "status", String.valueOf(response.getStatus()));
+    }
+
+    private static void recordResponseSize(MeterRegistry registry, Tags tags, HttpServletResponse response) {
+        long bytes = bytesWritten(response);
+        if (bytes < 0) {
+            return;
+        }
+        DistributionSummary.builder("http.server.response.size")
+                .description("Response body bytes")
+                .baseUnit("bytes")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(bytes);
+    }
+
+    // Tomcat counts the bytes it wrote, compressed or chunked alike; elsewhere only a declared length is known
+    private static long bytesWritten(ServletResponse response) {
+        ServletResponse current = response;
+        while (current instanceof ServletResponseWrapper wrapper) {
+            current = wrapper.getResponse();
+        }
+        if (current instanceof ResponseFacade facade) {
+            return facade.getContentWritten();
+        }
+        String contentLength = response instanceof HttpServletResponse http ? http.getHeader(HttpHeaders.CONTENT_LENGTH) : null;
+        return contentLength != null ? Long.parseLong(contentLength) : -1;
+    }
+
+    private record ResponseSizeListener(MeterRegistry registry, HttpServletRequest request,
+                                        HttpServletResponse response) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            recordResponseSize(registry, tags(request, response), response);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    static class InstrumentedDataSource extends DelegatingDataSource {
+
+        private final ObjectProvider<JdbcStatementMetrics> metrics;
+
+        InstrumentedDataSource(DataSource target, ObjectProvider<JdbcStatementMetrics> metrics) {
+            super(target);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return wrap(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return wrap(super.getConnection(username, password));
+        }
+
+        private Connection wrap(Connection connection) {
+            JdbcStatementMetrics statementMetrics = metrics.getIfAvailable();
+            return statementMetrics != null ? statementMetrics.wrap(connection) : connection;
+        }
+    }
+}
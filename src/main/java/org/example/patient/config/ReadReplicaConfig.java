@@ -0,0 +1,122 @@
+package org.example.patient.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends read-only transactions to the replicas in {@code app.replicas.urls} and everything else to the primary.
+ * The pool is wrapped so a transaction only takes a connection at its first statement, by which time it is known
+ * to be read-only; reads that join a read-write transaction stay on its primary connection. What a replica
+ * returns may be older than what an eviction just removed, so caches are only filled from the primary.
+ */
+@Configuration
+@ConditionalOnProperty("app.replicas.urls")
+public class ReadReplicaConfig {
+
+    // seconds behind the primary; zero once everything received is replayed, since an idle primary sends nothing new
+    static final String POSTGRES_LAG_QUERY = "select case when not pg_is_in_recovery() "
+            + "or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 "
+            + "else extract(epoch from now() - pg_last_xact_replay_timestamp()) end";
+
+    // ordered, so it wraps the pool before the statement metrics wrap the result and replica statements are timed too.
+    // The declared type is what the order is read from, before the post-processor exists
+    @Bean
+    static ReadReplicaPostProcessor readReplicaPostProcessor(Environment environment) {
+        return new ReadReplicaPostProcessor(environment);
+    }
+
+    static final class ReadReplicaPostProcessor implements BeanPostProcessor, Ordered, DisposableBean {
+
+        private final Environment environment;
+        private final List<ReplicaDataSource> replicas = new ArrayList<>();
+
+        private ReadReplicaPostProcessor(Environment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            if (bean instanceof AbstractEntityManagerFactoryBean entityManagerFactory) {
+                entityManagerFactory.setJpaDialect(new PrimaryCachingJpaDialect());
+            }
+            return bean;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof HikariDataSource primary)) {
+                return bean;
+            }
+            ReplicaDataSource replica = new ReplicaDataSource(primary, primary,
+                    List.of(environment.getRequiredProperty("app.replicas.urls", String[].class)),
+                    environment.getProperty("app.replicas.username", primary.getUsername()),
+                    environment.getProperty("app.replicas.password", primary.getPassword()),
+                    environment.getProperty("app.replicas.lag-query", POSTGRES_LAG_QUERY),
+                    environment.getProperty("app.replicas.max-lag", Duration.class, Duration.ofSeconds(5)),
+                    environment.getProperty("app.replicas.lag-check-interval", Duration.class, Duration.ofSeconds(5)));
+            replicas.add(replica);
+            LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(primary);
+            routing.setReadOnlyDataSource(replica);
+            return routing;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void destroy() {
+            replicas.forEach(ReplicaDataSource::close);
+        }
+    }
+
+    // read-only transactions, which a replica serves, read the second-level cache but put nothing into it
+    private static final class PrimaryCachingJpaDialect extends HibernateJpaDialect {
+
+        private static final String STORE_MODE = "jakarta.persistence.cache.storeMode";
+
+        @Override
+        public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+                throws SQLException {
+            Object transactionData = super.beginTransaction(entityManager, definition);
+            if (!definition.isReadOnly()) {
+                return transactionData;
+            }
+            // the entity manager property, as find() goes by it rather than by the session's cache mode
+            Object previous = entityManager.getProperties().getOrDefault(STORE_MODE, CacheStoreMode.USE);
+            entityManager.setProperty(STORE_MODE, CacheStoreMode.BYPASS);
+            return new ReadOnlyTransactionData(transactionData, entityManager, previous);
+        }
+
+        // with open-in-view the session outlives the transaction
+        @Override
+        public void cleanupTransaction(Object transactionData) {
+            if (transactionData instanceof ReadOnlyTransactionData readOnly) {
+                readOnly.entityManager().setProperty(STORE_MODE, readOnly.previous());
+                transactionData = readOnly.transactionData();
+            }
+            super.cleanupTransaction(transactionData);
+        }
+    }
+
+    private record ReadOnlyTransactionData(Object transactionData, EntityManager entityManager, Object previous) {
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.patient.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections of the replica pools in turn, skipping a replica whose last lag check failed or found it
+ * further behind than the tolerance. With none left the primary serves the read. Replicas start out skipped
+ * until their first check has passed.
+ */
+final class ReplicaDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaDataSource.class);
+
+    private final DataSource primary;
+    private final List<HikariDataSource> replicas = new ArrayList<>();
+    // replaced as a whole by each check
+    private volatile boolean[] available;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-lag-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    ReplicaDataSource(DataSource primary, HikariConfig primaryConfig, List<String> urls, String username, String password,
+                      String lagQuery, Duration maxLag, Duration checkInterval) {
+        this.primary = primary;
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        for (String url : urls) {
+            HikariConfig config = new HikariConfig();
+            primaryConfig.copyStateTo(config);
+            config.setPoolName("replica-" + replicas.size());
+            config.setJdbcUrl(url);
+            config.setUsername(username);
+            config.setPassword(password);
+            config.setReadOnly(true);
+            // a replica that is down must not hold up startup; the lag check finds it when it comes back
+            config.setInitializationFailTimeout(-1);
+            replicas.add(new HikariDataSource(config));
+        }
+        available = new boolean[replicas.size()];
+        executor.scheduleWithFixedDelay(this::checkLag, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        boolean[] available = this.available;
+        int start = next.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = Math.floorMod(start + i, replicas.size());
+            if (available[replica]) {
+                return replicas.get(replica).getConnection();
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // the replica pools are bound to app.replicas.username
+        return primary.getConnection(username, password);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        replicas.forEach(HikariDataSource::close);
+    }
+
+    void checkLag() {
+        boolean[] checked = new boolean[replicas.size()];
+        for (int i = 0; i < replicas.size(); i++) {
+            double lag;
+            try (Connection connection = replicas.get(i).getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                resultSet.next();
+                lag = resultSet.getDouble(1);
+                // e.g. a replica that has not replayed anything yet
+                if (resultSet.wasNull()) {
+                    lag = Double.POSITIVE_INFINITY;
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.debug("Lag check of replica {} failed", replicas.get(i).getPoolName(), e);
+                lag = Double.POSITIVE_INFINITY;
+            }
+            checked[i] = lag <= maxLagSeconds;
+            if (checked[i] != available[i]) {
+                log.info("Replica {} {} reads (lag {}s)", replicas.get(i).getPoolName(),
+                        checked[i] ? "serves" : "no longer serves", lag);
+            }
+        }
+        available = checked;
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.patient.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * With virtual threads Tomcat stops bounding concurrency, and every request in flight competes for CPU and for
+ * the connection pool, whose waiters are served in no particular order. A fair semaphore in front of the
+ * dispatcher brings back first-come-first-served queueing; the queued requests only cost a parked virtual thread.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> concurrencyLimitFilter(
+            @Value("${app.requests.max-concurrent:0}") int maxConcurrent,
+            @Value("${app.requests.max-queue-time:30s}") Duration maxQueueTime,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        // two per pooled connection keeps the pool busy without a queue inside Hikari
+        Semaphore permits = new Semaphore(maxConcurrent > 0 ? maxConcurrent : 2 * poolSize, true);
+        OncePerRequestFilter filter = new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                boolean acquired;
+                try {
+                    acquired = permits.tryAcquire(maxQueueTime.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    acquired = false;
+                }
+                if (!acquired) {
+                    response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+                    return;
+                }
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    permits.release();
+                }
+            }
+        };
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
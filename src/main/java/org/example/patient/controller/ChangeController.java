@@ -0,0 +1,102 @@
+package org.example.patient.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.example.patient.models.ChangeFeed;
+import org.example.patient.service.ChangeFeedService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+@RestController
+@RequestMapping("/api/changes")
+@CrossOrigin(origins = "*")
+@Tag(name = "Change feed", description = "Created, updated and deleted patients, encounters and observations, in commit order")
+public class ChangeController {
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+
+    @GetMapping
+    @Operation(summary = "Read the change feed",
+            description = "Returns up to limit changes after the since cursor (omit it to start from the oldest change kept). "
+                    + "Pass the returned cursor as since on the next request. With wait (seconds, at most 60) the request "
+                    + "is held until a change arrives")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Changes fetched successfully"),
+            @ApiResponse(responseCode = "410", description = "The cursor is older than the feed's retention period"),
+            @ApiResponse(responseCode = "503", description = "Too many waiting requests, retry later")
+    })
+    public CompletableFuture<ResponseEntity<org.example.patient.models.ApiResponse<ChangeFeed>>> getChanges(
+            @RequestParam(required = false) Long since,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "0") int wait) {
+        if (wait <= 0) {
+            return CompletableFuture.completedFuture(ok(changeFeedService.getChanges(since, limit)));
+        }
+        return changeFeedService.awaitChanges(since, limit, Duration.ofSeconds(wait))
+                .map(feed -> feed.thenApply(ChangeController::ok))
+                .orElse(CompletableFuture.completedFuture(tooManyWaiters()));
+    }
+
+    @GetMapping("/stream")
+    @Operation(summary = "Stream the change feed",
+            description = "Server-sent events: each event carries a JSON array of changes and the cursor as its id, so a "
+                    + "reconnecting client resumes through Last-Event-ID. A comment is sent after 15 idle seconds")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Change stream opened"),
+            @ApiResponse(responseCode = "410", description = "The cursor is older than the feed's retention period"),
+            @ApiResponse(responseCode = "503", description = "Too many open streams, retry later")
+    })
+    public ResponseEntity<SseEmitter> streamChanges(
+            @RequestParam(required = false) Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = new SseEmitter();
+        return changeFeedService.stream(since != null ? since : lastEventId, feed -> {
+                    if (feed.getChanges().isEmpty()) {
+                        emitter.send(SseEmitter.event().comment("keep-alive"));
+                    } else {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(feed.getCursor()))
+                                .name("changes")
+                                .data(feed.getChanges(), MediaType.APPLICATION_JSON));
+                    }
+                })
+                .map(subscription -> {
+                    cancelWhenClosed(emitter, subscription);
+                    return ResponseEntity.ok().body(emitter);
+                })
+                .orElse(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build());
+    }
+
+    private static void cancelWhenClosed(SseEmitter emitter, Future<?> subscription) {
+        emitter.onCompletion(() -> subscription.cancel(true));
+        emitter.onTimeout(() -> subscription.cancel(true));
+        emitter.onError(error -> subscription.cancel(true));
+    }
+
+    private static ResponseEntity<org.example.patient.models.ApiResponse<ChangeFeed>> ok(ChangeFeed feed) {
+        return new ResponseEntity<>(
+                org.example.patient.models.ApiResponse.success("Changes fetched successfully", feed),
+                HttpStatus.OK
+        );
+    }
+
+    private static ResponseEntity<org.example.patient.models.ApiResponse<ChangeFeed>> tooManyWaiters() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new org.example.patient.models.ApiResponse<>("Service unavailable - Too many waiting requests",
+                        HttpStatus.SERVICE_UNAVAILABLE.value(), null));
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.patient.controller;
+
+import org.example.patient.exceptions.PreconditionFailedException;
+import org.example.patient.models.ResourceVersion;
+import org.springframework.http.HttpHeaders;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Entity tags are the row's {@code @Version}, quoted: {@code "3"}.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static HttpHeaders headers(Long version, LocalDateTime lastModified) {
+        HttpHeaders headers = new HttpHeaders();
+        if (version != null) {
+            headers.setETag(tag(version));
+        }
+        if (lastModified != null) {
+            headers.setLastModified(lastModified.atZone(ZoneId.systemDefault()));
+        }
+        return headers;
+    }
+
+    static HttpHeaders headers(ResourceVersion version) {
+        return headers(version.getVersion(), version.getLastModified());
+    }
+
+    // If-None-Match compares weakly, so W/"3" matches "3" as well
+    static boolean noneMatch(String ifNoneMatch, Long version) {
+        String current = tag(version);
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.equals("*") || candidate.equals(current) || candidate.equals("W/" + current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // null when there is no precondition; anything but a single strong tag of ours can never match
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (!tag.matches("\"\\d{1,18}\"")) {
+            throw new PreconditionFailedException("Precondition failed - If-Match does not name a current version");
+        }
+        return Long.valueOf(tag.substring(1, tag.length() - 1));
+    }
+
+    private static String tag(Long version) {
+        return "\"" + version + "\"";
+    }
+}
@@ -1,18 +1,26 @@
 package org.example.patient.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.example.patient.models.CursorPage;
 import org.example.patient.models.EncounterDTO;
+import org.example.patient.models.ResourceVersion;
 import org.example.patient.service.EncounterService;
+import org.example.patient.service.PatientTimelineService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/encounters")
@@ -23,6 +31,12 @@ public class EncounterController {
     @Autowired
     private EncounterService encounterService;
 
+    @Autowired
+    private PatientTimelineService timelineService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
 
     @PostMapping
     @Operation(summary = "Create new patient encounter record", description = "Create new patient encounter record")
@@ -46,12 +60,23 @@ public class EncounterController {
     @Operation(summary = "Fetch patient encounter record by id", description = "Fetch patient encounter record by id")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Patient encounter fetched successfully"),
+            @ApiResponse(responseCode = "304", description = "Encounter not modified since the version in If-None-Match"),
             @ApiResponse(responseCode = "404", description = "Encounter not found")
     })
-    public ResponseEntity<org.example.patient.models.ApiResponse<EncounterDTO>> getEncounterById(@PathVariable Long id) {
+    public ResponseEntity<org.example.patient.models.ApiResponse<EncounterDTO>> getEncounterById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Optional<ResourceVersion> current = encounterService.getEncounterVersion(id);
+            if (current.isPresent() && ETags.noneMatch(ifNoneMatch, current.get().getVersion())) {
+                return new ResponseEntity<>(ETags.headers(current.get()), HttpStatus.NOT_MODIFIED);
+            }
+        }
+
         return encounterService.getEncounterById(id)
                 .map(encounter -> new ResponseEntity<>(
                         org.example.patient.models.ApiResponse.success("Encounter fetched successfully", encounter),
+                        ETags.headers(encounter.getVersion(), encounter.getLastModified()),
                         HttpStatus.OK
                 ))
                 .orElse(new ResponseEntity<>(
@@ -66,14 +91,37 @@ public class EncounterController {
             @ApiResponse(responseCode = "200", description = "Patient encounters fetched successfully"),
             @ApiResponse(responseCode = "400", description = "Bad request")
     })
-    public ResponseEntity<org.example.patient.models.ApiResponse<List<EncounterDTO>>> getAllEncounters() {
-        List<EncounterDTO> encounters = encounterService.getAllEncounters();
+    public ResponseEntity<org.example.patient.models.ApiResponse<List<EncounterDTO>>> getAllEncounters(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") int size) {
+        CursorPage<EncounterDTO> page = encounterService.getEncountersPage(after, size);
         return new ResponseEntity<>(
-                org.example.patient.models.ApiResponse.success("Encounters fetched successfully", encounters),
+                org.example.patient.models.ApiResponse.success("Encounters fetched successfully", page.getItems()),
+                PageLinks.nextPage(page.getNextCursor()),
                 HttpStatus.OK
         );
     }
 
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    @Operation(summary = "Stream all patient encounters records", description = "Streams every encounter record as newline-delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patient encounters streamed successfully")
+    })
+    public ResponseEntity<StreamingResponseBody> streamEncounters() {
+        return NdjsonResponses.stream(objectMapper, encounterService::streamAllEncounters);
+    }
+
+
+    @GetMapping(value = "/reactive", produces = "application/x-ndjson")
+    @Operation(summary = "Stream all encounters page by page", description = "Streams every encounter record as newline-delimited JSON, "
+            + "one keyset page at a time as the client reads, without holding a connection in between")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patient encounters streamed successfully")
+    })
+    public Flux<EncounterDTO> streamEncountersReactive() {
+        return timelineService.encounters();
+    }
+
 
     @GetMapping("/patient/{patientId}")
     @Operation(summary = "Fetch patient encounter by patientId", description = "Fetch patient encounter by patientId")
@@ -94,14 +142,18 @@ public class EncounterController {
     @Operation(summary = "Update patient encounter by id", description = "Update patient encounter by id")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Patient encounter updated successfully"),
-            @ApiResponse(responseCode = "404", description = "Encounter not found")
+            @ApiResponse(responseCode = "404", description = "Encounter not found"),
+            @ApiResponse(responseCode = "409", description = "Encounter was modified concurrently"),
+            @ApiResponse(responseCode = "412", description = "Encounter no longer has the version in If-Match")
     })
     public ResponseEntity<org.example.patient.models.ApiResponse<EncounterDTO>> updateEncounter(
             @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody EncounterDTO encounterDTO) {
-        return encounterService.updateEncounter(id, encounterDTO)
+        return encounterService.updateEncounter(id, encounterDTO, ETags.expectedVersion(ifMatch))
                 .map(encounter -> new ResponseEntity<>(
                         org.example.patient.models.ApiResponse.success("Encounter updated successfully", encounter),
+                        ETags.headers(encounter.getVersion(), encounter.getLastModified()),
                         HttpStatus.OK
                 ))
                 .orElse(new ResponseEntity<>(
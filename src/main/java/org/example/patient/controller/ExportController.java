@@ -0,0 +1,101 @@
+package org.example.patient.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.example.patient.models.ExportStatus;
+import org.example.patient.service.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/export")
+@CrossOrigin(origins = "*")
+@Tag(name = "Export", description = "Bulk export endpoints")
+public class ExportController {
+
+    @Autowired
+    private ExportService exportService;
+
+
+    @PostMapping
+    @Operation(summary = "Start a bulk export",
+            description = "Starts an asynchronous export of the given resource types (patients, encounters, observations; "
+                    + "default all) into gzip-compressed ndjson or csv files. Poll the returned location for progress")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Export started"),
+            @ApiResponse(responseCode = "400", description = "Unknown resource type or format")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<ExportStatus>> startExport(
+            @RequestParam(required = false) List<String> types,
+            @RequestParam(required = false) String format) {
+        ExportStatus status = exportService.start(ExportService.parseTypes(types), ExportService.parseFormat(format));
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/export/" + status.getId()))
+                .body(org.example.patient.models.ApiResponse.accepted("Export started", status));
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get bulk export status", description = "Reports the export state and rows written per file")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export status fetched successfully"),
+            @ApiResponse(responseCode = "404", description = "Export not found")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<ExportStatus>> getExportStatus(@PathVariable String id) {
+        return exportService.getStatus(id)
+                .map(status -> new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.success("Export status fetched successfully", status),
+                        HttpStatus.OK
+                ))
+                .orElse(new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.notFound("Export not found"),
+                        HttpStatus.NOT_FOUND
+                ));
+    }
+
+    @GetMapping("/{id}/files/{type}")
+    @Operation(summary = "Download an exported file", description = "Downloads one completed, gzip-compressed export file")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export file downloaded"),
+            @ApiResponse(responseCode = "404", description = "Export or file not found, or not complete yet")
+    })
+    public ResponseEntity<Resource> downloadExportFile(@PathVariable String id, @PathVariable String type) {
+        return exportService.getFile(id, ExportService.parseTypes(List.of(type)).iterator().next())
+                .<ResponseEntity<Resource>>map(path -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType("application/gzip"))
+                        .header(HttpHeaders.CONTENT_DISPOSITION,
+                                ContentDisposition.attachment().filename(path.getFileName().toString()).build().toString())
+                        .body(new FileSystemResource(path)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete a bulk export", description = "Cancels the export if it is still running and deletes its files")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export deleted successfully"),
+            @ApiResponse(responseCode = "404", description = "Export not found")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<Void>> deleteExport(@PathVariable String id) {
+        if (exportService.delete(id)) {
+            return new ResponseEntity<>(
+                    org.example.patient.models.ApiResponse.success("Export deleted successfully", null),
+                    HttpStatus.OK
+            );
+        }
+        return new ResponseEntity<>(
+                org.example.patient.models.ApiResponse.notFound("Export not found"),
+                HttpStatus.NOT_FOUND
+        );
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.patient.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.example.patient.models.ImportRejectionDTO;
+import org.example.patient.models.ImportStatus;
+import org.example.patient.service.PatientImportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/import")
+@CrossOrigin(origins = "*")
+@Tag(name = "Import", description = "Bulk import endpoints")
+public class ImportController {
+
+    @Autowired
+    private PatientImportService importService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+
+    @PostMapping("/patients")
+    @Operation(summary = "Start a patient import",
+            description = "Uploads a csv (header row with the patient field names) or ndjson file as the raw request body "
+                    + "and imports it in the background, upserting patients by identifier. Poll the returned location for progress")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Import started"),
+            @ApiResponse(responseCode = "400", description = "Unknown format")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<ImportStatus>> startImport(
+            @RequestParam(required = false) String format,
+            InputStream body) throws IOException {
+        ImportStatus status = importService.start(body, PatientImportService.parseFormat(format));
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/import/" + status.getId()))
+                .body(org.example.patient.models.ApiResponse.accepted("Import started", status));
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get patient import status", description = "Reports records processed, loaded and rejected so far")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import status fetched successfully"),
+            @ApiResponse(responseCode = "404", description = "Import not found")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<ImportStatus>> getImportStatus(@PathVariable String id) {
+        return importService.getStatus(id)
+                .map(status -> new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.success("Import status fetched successfully", status),
+                        HttpStatus.OK
+                ))
+                .orElse(new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.notFound("Import not found"),
+                        HttpStatus.NOT_FOUND
+                ));
+    }
+
+    @GetMapping(value = "/{id}/rejections", produces = "application/x-ndjson")
+    @Operation(summary = "Stream rejected records", description = "Streams the rejected records of an import, with their errors, as newline-delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rejected records streamed successfully"),
+            @ApiResponse(responseCode = "404", description = "Import not found")
+    })
+    public ResponseEntity<StreamingResponseBody> streamRejections(@PathVariable String id) {
+        if (importService.getStatus(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return NdjsonResponses.<ImportRejectionDTO>stream(objectMapper, consumer -> importService.streamRejections(id, consumer));
+    }
+
+    @PostMapping("/{id}/resume")
+    @Operation(summary = "Resume a failed patient import", description = "Continues a failed import after its last committed batch")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Import resumed"),
+            @ApiResponse(responseCode = "404", description = "No failed import with this id")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<ImportStatus>> resumeImport(@PathVariable String id) {
+        return importService.resume(id)
+                .map(status -> new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.accepted("Import resumed", status),
+                        HttpStatus.ACCEPTED
+                ))
+                .orElse(new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.notFound("No failed import with this id"),
+                        HttpStatus.NOT_FOUND
+                ));
+    }
+}
@@ -1,4 +1,227 @@
 package org.example.patient.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.example.patient.models.BatchItemResult;
+import org.example.patient.models.CursorPage;
+import org.example.patient.models.IngestStatus;
+import org.example.patient.models.ObservationBucket;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.ObservationStats;
+import org.example.patient.service.ObservationIngestService;
+import org.example.patient.service.ObservationService;
+import org.example.patient.service.PatientTimelineService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/observations")
+@CrossOrigin(origins = "*")
+@Tag(name = "Observation", description = "Observation management endpoints")
 public class ObservationController {
+
+    @Autowired
+    private ObservationService observationService;
+
+    @Autowired
+    private ObservationIngestService ingestService;
+
+    @Autowired
+    private PatientTimelineService timelineService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+
+    @PostMapping("/batch")
+    @Operation(summary = "Create observation records in bulk", description = "Create up to 10000 observation records with one result per item")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Observation batch processed"),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<List<BatchItemResult>>> createObservations(
+            @RequestBody List<ObservationDTO> observationDTOs) {
+        if (observationDTOs.isEmpty() || observationDTOs.size() > ObservationService.MAX_BATCH_SIZE) {
+            return new ResponseEntity<>(
+                    org.example.patient.models.ApiResponse.badRequest(
+                            "Bad request - Batch must contain between 1 and " + ObservationService.MAX_BATCH_SIZE + " observations"),
+                    HttpStatus.BAD_REQUEST
+            );
+        }
+
+        List<BatchItemResult> results = observationService.createObservations(observationDTOs);
+        long created = results.stream().filter(result -> result.getStatus() == 201).count();
+        return new ResponseEntity<>(
+                org.example.patient.models.ApiResponse.success(
+                        "Observation batch processed: " + created + " created, " + (results.size() - created) + " rejected",
+                        results),
+                HttpStatus.OK
+        );
+    }
+
+    @PostMapping("/ingest")
+    @Operation(summary = "Queue observation records for ingestion",
+            description = "Appends up to 10000 observation records to a durable log and acknowledges them before they are "
+                    + "written to the database. Poll the returned location for the outcome of each record")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Observations queued"),
+            @ApiResponse(responseCode = "400", description = "Bad request"),
+            @ApiResponse(responseCode = "503", description = "Ingest backlog is full, retry later")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<IngestStatus>> ingestObservations(
+            @RequestBody List<ObservationDTO> observationDTOs) throws IOException {
+        if (observationDTOs.isEmpty() || observationDTOs.size() > ObservationService.MAX_BATCH_SIZE) {
+            return new ResponseEntity<>(
+                    org.example.patient.models.ApiResponse.badRequest(
+                            "Bad request - Batch must contain between 1 and " + ObservationService.MAX_BATCH_SIZE + " observations"),
+                    HttpStatus.BAD_REQUEST
+            );
+        }
+
+        return ingestService.submit(observationDTOs)
+                .map(status -> ResponseEntity.accepted()
+                        .location(URI.create("/api/observations/ingest/" + status.getId()))
+                        .body(org.example.patient.models.ApiResponse.accepted("Observations queued", status)))
+                .orElse(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(new org.example.patient.models.ApiResponse<>("Service unavailable - Ingest backlog is full",
+                                HttpStatus.SERVICE_UNAVAILABLE.value(), null)));
+    }
+
+    @GetMapping("/ingest/{id}")
+    @Operation(summary = "Get observation ingest status",
+            description = "Reports whether a submission is still queued and, once written, the result of each rejected record")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Ingest status fetched successfully"),
+            @ApiResponse(responseCode = "404", description = "Submission not found")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<IngestStatus>> getIngestStatus(@PathVariable String id) {
+        return ingestService.getStatus(id)
+                .map(status -> new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.success("Ingest status fetched successfully", status),
+                        HttpStatus.OK
+                ))
+                .orElse(new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.notFound("Submission not found"),
+                        HttpStatus.NOT_FOUND
+                ));
+    }
+
+    @GetMapping
+    @Operation(summary = "Fetch all observation records", description = "Fetch observation records one keyset page at a time")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Observations fetched successfully"),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<List<ObservationDTO>>> getAllObservations(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") int size) {
+        CursorPage<ObservationDTO> page = observationService.getObservationsPage(after, size);
+        return new ResponseEntity<>(
+                org.example.patient.models.ApiResponse.success("Observations fetched successfully", page.getItems()),
+                PageLinks.nextPage(page.getNextCursor()),
+                HttpStatus.OK
+        );
+    }
+
+    @GetMapping("/range")
+    @Operation(summary = "Fetch a patient's observations for one code in a time range",
+            description = "Returns the observations with from <= effectiveDateTime < to, oldest first, one keyset page at a time; "
+                    + "follow the Link header for the next page")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Observations fetched successfully"),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<List<ObservationDTO>>> getObservationsInRange(
+            @RequestParam Long patientId,
+            @RequestParam String code,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") int size) {
+        CursorPage<ObservationDTO> page = observationService.getObservationsInRange(patientId, code, from, to, after, size);
+        List<ObservationDTO> observations = page.getItems();
+        return new ResponseEntity<>(
+                org.example.patient.models.ApiResponse.success("Observations fetched successfully", observations),
+                PageLinks.nextPage(page.getNextCursor(), "from", observations.isEmpty()
+                        ? null : observations.get(observations.size() - 1).getEffectiveDateTime()),
+                HttpStatus.OK
+        );
+    }
+
+    @GetMapping("/buckets")
+    @Operation(summary = "Downsample a patient's observations for one code",
+            description = "Aggregates numeric values in a time range into min/max/avg/last buckets of the given ISO-8601 interval, e.g. PT1H")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Observation buckets fetched successfully"),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<List<ObservationBucket>>> getObservationBuckets(
+            @RequestParam Long patientId,
+            @RequestParam String code,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam Duration interval) {
+        List<ObservationBucket> buckets = observationService.getObservationBuckets(patientId, code, from, to, interval);
+        return new ResponseEntity<>(
+                org.example.patient.models.ApiResponse.success("Observation buckets fetched successfully", buckets),
+                HttpStatus.OK
+        );
+    }
+
+    @GetMapping("/stats")
+    @Operation(summary = "Aggregate numeric observation values",
+            description = "Count, min, max, avg and p50/p90/p99 per code and unit, optionally per patient, "
+                    + "over the observations matching the given filters")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Observation statistics fetched successfully"),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<List<ObservationStats>>> getObservationStats(
+            @RequestParam(required = false) Long patientId,
+            @RequestParam(required = false) String code,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "false") boolean byPatient) {
+        List<ObservationStats> stats = observationService.getObservationStats(patientId, code, from, to, byPatient);
+        return new ResponseEntity<>(
+                org.example.patient.models.ApiResponse.success("Observation statistics fetched successfully", stats),
+                HttpStatus.OK
+        );
+    }
+
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    @Operation(summary = "Stream all observation records", description = "Streams every observation record as newline-delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Observations streamed successfully")
+    })
+    public ResponseEntity<StreamingResponseBody> streamObservations() {
+        return NdjsonResponses.stream(objectMapper, observationService::streamAllObservations);
+    }
+
+
+    @GetMapping(value = "/reactive", produces = "application/x-ndjson")
+    @Operation(summary = "Stream all observations page by page", description = "Streams every observation record as newline-delimited JSON, "
+            + "one keyset page at a time as the client reads, without holding a connection in between")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Observations streamed successfully")
+    })
+    public Flux<ObservationDTO> streamObservationsReactive() {
+        return timelineService.observations();
+    }
 }
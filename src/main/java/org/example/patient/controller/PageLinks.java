@@ -0,0 +1,48 @@
+package org.example.patient.controller;
+
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+final class PageLinks {
+
+    private PageLinks() {
+    }
+
+    static HttpHeaders nextPage(Long nextCursor) {
+        return nextPage(nextCursor, null, null);
+    }
+
+    // for a keyset that leads with another column, whose value the next page starts from
+    static HttpHeaders nextPage(Long nextCursor, String name, Object value) {
+        HttpHeaders headers = new HttpHeaders();
+        if (nextCursor != null) {
+            ServletUriComponentsBuilder next = ServletUriComponentsBuilder.fromCurrentRequest();
+            if (name != null) {
+                next.replaceQueryParam(name, value);
+            }
+            next.replaceQueryParam("after", nextCursor);
+            headers.add(HttpHeaders.LINK, "<" + next.toUriString() + ">; rel=\"next\"");
+        }
+        return headers;
+    }
+
+    static HttpHeaders pages(Page<?> page) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-Total-Count", String.valueOf(page.getTotalElements()));
+        if (page.hasNext()) {
+            headers.add(HttpHeaders.LINK, pageLink(page.getNumber() + 1, "next"));
+        }
+        if (page.hasPrevious()) {
+            headers.add(HttpHeaders.LINK, pageLink(page.getNumber() - 1, "prev"));
+        }
+        return headers;
+    }
+
+    private static String pageLink(int page, String rel) {
+        String uri = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("page", page)
+                .toUriString();
+        return "<" + uri + ">; rel=\"" + rel + "\"";
+    }
+}
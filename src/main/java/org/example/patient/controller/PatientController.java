@@ -1,24 +1,43 @@
 package org.example.patient.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.example.patient.models.BatchItemResult;
+import org.example.patient.models.CursorPage;
 import org.example.patient.models.EncounterDTO;
 import org.example.patient.models.ObservationDTO;
 import org.example.patient.models.PatientDTO;
+import org.example.patient.models.PatientEverythingDTO;
+import org.example.patient.models.PatientSearchCriteria;
+import org.example.patient.models.RecentVitals;
+import org.example.patient.models.ResourceVersion;
+import org.example.patient.repository.PatientUpsertRepo;
 import org.example.patient.service.EncounterService;
 import org.example.patient.service.ObservationService;
+import org.example.patient.service.PatientEverythingService;
 import org.example.patient.service.PatientService;
+import org.example.patient.service.PatientTimelineService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/patients")
@@ -35,6 +54,15 @@ public class PatientController {
     @Autowired
     private ObservationService observationService;
 
+    @Autowired
+    private PatientTimelineService timelineService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PatientEverythingService everythingService;
+
     @PostMapping
     @Operation(summary = "Create a new patient", description = "Creates a new patient record")
     @ApiResponses(value = {
@@ -54,12 +82,23 @@ public class PatientController {
     @Operation(summary = "Get patient by id", description = "Get patient record by id")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Patient fetched successfully"),
+            @ApiResponse(responseCode = "304", description = "Patient not modified since the version in If-None-Match"),
             @ApiResponse(responseCode = "404", description = "Patient not found")
     })
-    public ResponseEntity<org.example.patient.models.ApiResponse<PatientDTO>> getPatientById(@PathVariable Long id) {
+    public ResponseEntity<org.example.patient.models.ApiResponse<PatientDTO>> getPatientById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Optional<ResourceVersion> current = patientService.getPatientVersion(id);
+            if (current.isPresent() && ETags.noneMatch(ifNoneMatch, current.get().getVersion())) {
+                return new ResponseEntity<>(ETags.headers(current.get()), HttpStatus.NOT_MODIFIED);
+            }
+        }
+
         return patientService.getPatientById(id)
                 .map(patient -> new ResponseEntity<>(
                         org.example.patient.models.ApiResponse.success("Patient fetched successfully", patient),
+                        ETags.headers(patient.getVersion(), patient.getLastModified()),
                         HttpStatus.OK
                 ))
                 .orElse(new ResponseEntity<>(
@@ -70,7 +109,9 @@ public class PatientController {
 
 
     @GetMapping
-    @Operation(summary = "Search patients by different filters", description = "Search patients by different filters")
+    @Operation(summary = "Search patients by different filters",
+            description = "Search patients by any combination of filters. Name-only searches are fuzzy and ranked; "
+                    + "other combinations run as one query paged with page/size and sorted with sort=family,-birthDate")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Patients fetched successfully"),
             @ApiResponse(responseCode = "400", description = "Bad request")
@@ -79,50 +120,92 @@ public class PatientController {
             @RequestParam(required = false) String family,
             @RequestParam(required = false) String given,
             @RequestParam(required = false) String identifier,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate birthDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate birthDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate birthDateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate birthDateTo,
+            @RequestParam(required = false) String gender,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) List<String> sort,
+            @RequestParam(defaultValue = "100") int size) {
 
-        List<PatientDTO> patients;
+        PatientSearchCriteria criteria = new PatientSearchCriteria(
+                family, given, identifier, birthDate, birthDateFrom, birthDateTo, gender);
+        boolean paged = page != null || sort != null;
 
-        if (family == null && given == null && identifier == null && birthDate == null) {
-            patients = patientService.getAllPatients();
+        if (!criteria.hasFilters() && !paged) {
+            CursorPage<PatientDTO> cursorPage = patientService.getPatientsPage(after, size);
+            return new ResponseEntity<>(
+                    org.example.patient.models.ApiResponse.success("Patients fetched successfully", cursorPage.getItems()),
+                    PageLinks.nextPage(cursorPage.getNextCursor()),
+                    HttpStatus.OK
+            );
         }
-        else if (identifier != null) {
-            patients = patientService.searchByIdentifier(identifier)
+
+        if (criteria.isIdentifierOnly() && !paged) {
+            List<PatientDTO> patients = patientService.searchByIdentifier(identifier)
                     .map(List::of)
                     .orElse(List.of());
+            return new ResponseEntity<>(
+                    org.example.patient.models.ApiResponse.success("Patients fetched successfully", patients),
+                    HttpStatus.OK
+            );
         }
-        else if (birthDate != null) {
-            patients = patientService.searchByBirthDate(birthDate);
-        }
-        else if (family != null) {
-            patients = patientService.searchByFamilyName(family);
-        }
-        else if (given != null) {
-            patients = patientService.searchByGivenName(given);
-        }
-        else {
-            patients = patientService.getAllPatients();
+
+        if (criteria.isNameOnly() && !paged) {
+            List<PatientDTO> patients = patientService.searchByName(family, given, CursorPage.clampSize(size));
+            return new ResponseEntity<>(
+                    org.example.patient.models.ApiResponse.success("Patients fetched successfully", patients),
+                    HttpStatus.OK
+            );
         }
 
+        Page<PatientDTO> patients = patientService.searchPatients(criteria, page == null ? 0 : page, size, sort);
         return new ResponseEntity<>(
-                org.example.patient.models.ApiResponse.success("Patients fetched successfully", patients),
+                org.example.patient.models.ApiResponse.success("Patients fetched successfully", patients.getContent()),
+                PageLinks.pages(patients),
                 HttpStatus.OK
         );
     }
 
 
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    @Operation(summary = "Stream all patients", description = "Streams every patient record as newline-delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patients streamed successfully")
+    })
+    public ResponseEntity<StreamingResponseBody> streamPatients() {
+        return NdjsonResponses.stream(objectMapper, patientService::streamAllPatients);
+    }
+
+
+    @GetMapping(value = "/reactive", produces = "application/x-ndjson")
+    @Operation(summary = "Stream all patients page by page", description = "Streams every patient record as newline-delimited JSON, "
+            + "one keyset page at a time as the client reads, without holding a connection in between")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patients streamed successfully")
+    })
+    public Flux<PatientDTO> streamPatientsReactive() {
+        return timelineService.patients();
+    }
+
+
     @PutMapping("/{id}")
     @Operation(summary = "Update patient by id", description = "Update patient record by id")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Patient updated successfully"),
-            @ApiResponse(responseCode = "404", description = "Patient not found")
+            @ApiResponse(responseCode = "404", description = "Patient not found"),
+            @ApiResponse(responseCode = "409", description = "Patient was modified concurrently"),
+            @ApiResponse(responseCode = "412", description = "Patient no longer has the version in If-Match")
     })
     public ResponseEntity<org.example.patient.models.ApiResponse<PatientDTO>> updatePatient(
             @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody PatientDTO patientDTO) {
-        return patientService.updatePatient(id, patientDTO)
+        return patientService.updatePatient(id, patientDTO, ETags.expectedVersion(ifMatch))
                 .map(patient -> new ResponseEntity<>(
                         org.example.patient.models.ApiResponse.success("Patient updated successfully", patient),
+                        ETags.headers(patient.getVersion(), patient.getLastModified()),
                         HttpStatus.OK
                 ))
                 .orElse(new ResponseEntity<>(
@@ -132,6 +215,66 @@ public class PatientController {
     }
 
 
+    @PutMapping("/identifier/{identifier}")
+    @Operation(summary = "Create or update patient by identifier",
+            description = "Inserts the patient, or updates the one with the same identifier, in a single statement")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Patient created successfully"),
+            @ApiResponse(responseCode = "200", description = "Patient updated successfully"),
+            @ApiResponse(responseCode = "400", description = "Bad request"),
+            @ApiResponse(responseCode = "409", description = "Identifier belongs to a deleted patient still being purged")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<PatientDTO>> upsertPatient(
+            @PathVariable String identifier,
+            @Valid @RequestBody PatientDTO patientDTO) {
+        if (!identifier.equals(patientDTO.getIdentifier())) {
+            return new ResponseEntity<>(
+                    org.example.patient.models.ApiResponse.badRequest("Bad request - Identifier does not match the path"),
+                    HttpStatus.BAD_REQUEST
+            );
+        }
+
+        return patientService.upsertPatient(patientDTO)
+                .filter(PatientUpsertRepo.Upserted::isInserted)
+                .map(patient -> ResponseEntity.created(URI.create("/api/patients/" + patient.getId()))
+                        .body(org.example.patient.models.ApiResponse.created("Patient created successfully", patientDTO)))
+                .orElse(new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.success("Patient updated successfully", patientDTO),
+                        HttpStatus.OK
+                ));
+    }
+
+
+    @PutMapping("/identifier")
+    @Operation(summary = "Create or update patients by identifier in bulk",
+            description = "Upserts up to 10000 patients by identifier in one statement with one result per item")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patient batch processed"),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<List<BatchItemResult>>> upsertPatients(
+            @RequestBody List<PatientDTO> patientDTOs) {
+        if (patientDTOs.isEmpty() || patientDTOs.size() > PatientService.MAX_BATCH_SIZE) {
+            return new ResponseEntity<>(
+                    org.example.patient.models.ApiResponse.badRequest(
+                            "Bad request - Batch must contain between 1 and " + PatientService.MAX_BATCH_SIZE + " patients"),
+                    HttpStatus.BAD_REQUEST
+            );
+        }
+
+        List<BatchItemResult> results = patientService.upsertPatientBatch(patientDTOs);
+        long created = results.stream().filter(result -> result.getStatus() == 201).count();
+        long updated = results.stream().filter(result -> result.getStatus() == 200).count();
+        return new ResponseEntity<>(
+                org.example.patient.models.ApiResponse.success(
+                        "Patient batch processed: " + created + " created, " + updated + " updated, "
+                                + (results.size() - created - updated) + " rejected",
+                        results),
+                HttpStatus.OK
+        );
+    }
+
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete patient by id", description = "Delete patient record by id")
     @ApiResponses(value = {
@@ -152,6 +295,29 @@ public class PatientController {
     }
 
 
+    @GetMapping("/{id}/$everything")
+    @Operation(summary = "Get patient with encounters and observations",
+            description = "Returns the patient, its encounters and their nested observations in one response; "
+                    + "'include' limits the response (and the queries run) to patient, encounters and/or observations")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patient record fetched successfully"),
+            @ApiResponse(responseCode = "400", description = "Unknown section in include"),
+            @ApiResponse(responseCode = "404", description = "Patient not found")
+    })
+    public Mono<ResponseEntity<org.example.patient.models.ApiResponse<PatientEverythingDTO>>> getPatientEverything(
+            @PathVariable Long id,
+            @RequestParam(required = false) List<String> include) {
+        return everythingService.getEverything(id, PatientEverythingService.parseSections(include))
+                .map(everything -> new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.success("Patient record fetched successfully", everything),
+                        HttpStatus.OK
+                ))
+                .defaultIfEmpty(new ResponseEntity<>(
+                        org.example.patient.models.ApiResponse.notFound("Patient not found"),
+                        HttpStatus.NOT_FOUND
+                ));
+    }
+
     @GetMapping("/{id}/encounters")
     @Operation(summary = "Get patient encounters by id", description = "Get patient encounters by id")
     @ApiResponses(value = {
@@ -193,4 +359,55 @@ public class PatientController {
                 HttpStatus.OK
         );
     }
-}
\ No newline at end of file
+
+    @GetMapping("/{id}/observations/recent")
+    @Operation(summary = "Get a patient's recent vitals",
+            description = "Numeric observations of the last 'within' (ISO-8601, e.g. PT6H, at most the configured window), "
+                    + "per code as parallel lists of times and values, oldest first. Served from memory, for dashboards that poll")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Recent vitals fetched successfully"),
+            @ApiResponse(responseCode = "400", description = "Bad request - within must be positive"),
+            @ApiResponse(responseCode = "404", description = "Patient not found")
+    })
+    public ResponseEntity<org.example.patient.models.ApiResponse<List<RecentVitals>>> getRecentVitals(
+            @PathVariable Long id,
+            @RequestParam(required = false) String code,
+            @RequestParam(required = false) Duration within) {
+        if (patientService.getPatientById(id).isEmpty()) {
+            return new ResponseEntity<>(
+                    org.example.patient.models.ApiResponse.notFound("Patient not found"),
+                    HttpStatus.NOT_FOUND
+            );
+        }
+
+        List<RecentVitals> vitals = observationService.getRecentVitals(id, code, within);
+        return new ResponseEntity<>(
+                org.example.patient.models.ApiResponse.success("Recent vitals fetched successfully", vitals),
+                HttpStatus.OK
+        );
+    }
+
+    @GetMapping(value = "/{id}/encounters/stream", produces = "application/x-ndjson")
+    @Operation(summary = "Stream patient encounters by id", description = "Streams a patient's encounters as newline-delimited JSON, one page at a time as the client reads")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patient encounters streamed successfully"),
+            @ApiResponse(responseCode = "404", description = "Patient not found")
+    })
+    public Mono<ResponseEntity<Flux<EncounterDTO>>> streamPatientEncounters(@PathVariable Long id) {
+        return timelineService.encounters(id)
+                .map(encounters -> ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(encounters))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/{id}/observations/stream", produces = "application/x-ndjson")
+    @Operation(summary = "Stream patient observations by id", description = "Streams a patient's observations as newline-delimited JSON, one page at a time as the client reads")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patient observations streamed successfully"),
+            @ApiResponse(responseCode = "404", description = "Patient not found")
+    })
+    public Mono<ResponseEntity<Flux<ObservationDTO>>> streamPatientObservations(@PathVariable Long id) {
+        return timelineService.observations(id)
+                .map(observations -> ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(observations))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.patient.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+// rows are written and read with plain SQL (ChangeFeedRepo); the mapping defines the table for schema validation and H2
+@Entity
+@Table(name = "change_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // id of the writing transaction on PostgreSQL, filled in by the column default; 0 elsewhere
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Long txid;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ResourceType resourceType;
+
+    @Column(nullable = false)
+    private Long resourceId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Operation operation;
+
+    @ColumnDefault("localtimestamp")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private LocalDateTime occurredAt;
+
+    public enum ResourceType {
+        PATIENT, ENCOUNTER, OBSERVATION
+    }
+
+    public enum Operation {
+        CREATE, UPDATE, DELETE
+    }
+}
@@ -4,6 +4,12 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -11,6 +17,8 @@ import java.util.List;
 
 @Entity
 @Table(name = "encounters")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "encounters")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,6 +30,7 @@ public class Encounter {
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "patient_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
     private Patient patient;
 
     @Column(nullable = false)
@@ -34,7 +43,17 @@ public class Encounter {
     @Column(nullable = false)
     private EncounterClass encounterClass;
 
-    @OneToMany(mappedBy = "encounter", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    @UpdateTimestamp
+    @ColumnDefault("localtimestamp")
+    @Column(nullable = false)
+    private LocalDateTime lastModified;
+
+    @OneToMany(mappedBy = "encounter", fetch = FetchType.LAZY)
     private List<Observation> observations;
 
     public enum EncounterClass {
@@ -0,0 +1,30 @@
+package org.example.patient.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "import_rejections")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRejection {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "import_rejections_seq")
+    @SequenceGenerator(name = "import_rejections_seq", sequenceName = "import_rejections_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 36)
+    private String jobId;
+
+    private long recordNumber;
+
+    @Column(length = 4000)
+    private String content;
+
+    @Column(nullable = false, length = 4000)
+    private String errors;
+}
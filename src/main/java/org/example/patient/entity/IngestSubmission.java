@@ -0,0 +1,47 @@
+package org.example.patient.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "ingest_submissions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestSubmission {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    private int observationCount;
+
+    private int createdCount;
+
+    private int rejectedCount;
+
+    // JSON array of the BatchItemResults of the rejected observations
+    @Column(columnDefinition = "text")
+    private String rejections;
+
+    @Column(length = 4000)
+    private String error;
+
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime completedAt;
+
+    public enum Status {
+        COMPLETED, FAILED
+    }
+}
@@ -4,6 +4,11 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.PartitionKey;
+import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
@@ -14,15 +19,18 @@ import java.time.LocalDateTime;
 public class Observation {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "observations_seq")
+    @SequenceGenerator(name = "observations_seq", sequenceName = "observations_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "patient_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
     private Patient patient;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "encounter_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
     private Encounter encounter;
 
     @Column(nullable = false)
@@ -31,6 +39,23 @@ public class Observation {
     @Column(nullable = false)
     private String value;
 
+    // parsed from value on write; null when value is not a plain quantity such as "72 bpm"
+    private Double numericValue;
+
+    private String unit;
+
+    // observations are range-partitioned on this column; naming it in updates and deletes lets them skip the other partitions
+    @PartitionKey
     @Column(nullable = false)
     private LocalDateTime effectiveDateTime;
+
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    @UpdateTimestamp
+    @ColumnDefault("localtimestamp")
+    @Column(nullable = false)
+    private LocalDateTime lastModified;
 }
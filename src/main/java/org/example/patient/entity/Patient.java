@@ -4,11 +4,20 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.SQLRestriction;
+import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
 @Table(name = "patients")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "patients")
+@SQLRestriction("deleted_at is null")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -34,10 +43,24 @@ public class Patient {
     @Column(nullable = false)
     private Gender gender;
 
-    @OneToMany(mappedBy = "patient", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    @UpdateTimestamp
+    @ColumnDefault("localtimestamp")
+    @Column(nullable = false)
+    private LocalDateTime lastModified;
+
+    // set while PatientPurgeService removes the patient's rows; the restriction above hides the patient meanwhile
+    private LocalDateTime deletedAt;
+
+    // encounters and observations go with the patient through ON DELETE CASCADE, never through these
+    @OneToMany(mappedBy = "patient", fetch = FetchType.LAZY)
     private List<Encounter> encounters;
 
-    @OneToMany(mappedBy = "patient", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "patient", fetch = FetchType.LAZY)
     private List<Observation> observations;
 
     public enum Gender {
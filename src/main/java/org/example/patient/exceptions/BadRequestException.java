@@ -0,0 +1,8 @@
+package org.example.patient.exceptions;
+
+public class BadRequestException extends RuntimeException {
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
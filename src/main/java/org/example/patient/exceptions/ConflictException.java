@@ -0,0 +1,8 @@
+package org.example.patient.exceptions;
+
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
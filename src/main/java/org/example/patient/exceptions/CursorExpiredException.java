@@ -0,0 +1,8 @@
+package org.example.patient.exceptions;
+
+public class CursorExpiredException extends RuntimeException {
+
+    public CursorExpiredException(String message) {
+        super(message);
+    }
+}
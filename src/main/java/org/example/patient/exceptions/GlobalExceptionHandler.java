@@ -1,6 +1,7 @@
 package org.example.patient.exceptions;
 
 import org.example.patient.models.ApiResponse;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -30,4 +31,36 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(response);
     }
 
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<ApiResponse<Void>> handleBadRequest(BadRequestException ex) {
+        return ResponseEntity.badRequest().body(ApiResponse.badRequest(ex.getMessage()));
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ApiResponse<Void>> handlePreconditionFailed(PreconditionFailedException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(new ApiResponse<>(ex.getMessage(), HttpStatus.PRECONDITION_FAILED.value(), null));
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ApiResponse<Void>> handleConflict(ConflictException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiResponse<>(ex.getMessage(), HttpStatus.CONFLICT.value(), null));
+    }
+
+    // the cursor's event is past the feed's retention period (or was never issued)
+    @ExceptionHandler(CursorExpiredException.class)
+    public ResponseEntity<ApiResponse<Void>> handleCursorExpired(CursorExpiredException ex) {
+        return ResponseEntity.status(HttpStatus.GONE)
+                .body(new ApiResponse<>(ex.getMessage(), HttpStatus.GONE.value(), null));
+    }
+
+    // another request updated the row between our read and write
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ApiResponse<Void>> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiResponse<>("Conflict - The record was modified concurrently, retry the request",
+                        HttpStatus.CONFLICT.value(), null));
+    }
+
 }
@@ -20,6 +20,10 @@ public class ApiResponse<T> {
         return new ApiResponse<>(message, 201, data);
     }
 
+    public static <T> ApiResponse<T> accepted(String message, T data) {
+        return new ApiResponse<>(message, 202, data);
+    }
+
     public static <T> ApiResponse<T> notFound(String message) {
         return new ApiResponse<>(message, 404, null);
     }
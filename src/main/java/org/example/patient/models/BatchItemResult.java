@@ -0,0 +1,38 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+    private int index;
+    private int status;
+    private String message;
+
+    public static BatchItemResult created(int index) {
+        return new BatchItemResult(index, 201, "Created");
+    }
+
+    public static BatchItemResult updated(int index) {
+        return new BatchItemResult(index, 200, "Updated");
+    }
+
+    public static BatchItemResult unchanged(int index) {
+        return new BatchItemResult(index, 200, "Unchanged");
+    }
+
+    public static BatchItemResult notFound(int index, String message) {
+        return new BatchItemResult(index, 404, message);
+    }
+
+    public static BatchItemResult badRequest(int index, String message) {
+        return new BatchItemResult(index, 400, message);
+    }
+
+    public static BatchItemResult conflict(int index, String message) {
+        return new BatchItemResult(index, 409, message);
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.patient.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeEventDTO {
+    // the feed cursor; events are served in (txid, id) order
+    private Long id;
+    private String resourceType;
+    private Long resourceId;
+    private String operation;
+    private LocalDateTime occurredAt;
+
+    @JsonIgnore
+    private Long txid;
+}
@@ -0,0 +1,18 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeFeed {
+    private List<ChangeEventDTO> changes;
+    // pass as since= on the next request; unchanged when there were no changes
+    private Long cursor;
+    // more changes are available right away
+    private boolean hasMore;
+}
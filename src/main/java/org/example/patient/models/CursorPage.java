@@ -0,0 +1,31 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    public static final int MAX_SIZE = 1000;
+
+    private List<T> items;
+    private Long nextCursor;
+
+    public static int clampSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_SIZE);
+    }
+
+    // rows are expected to be fetched with a limit of pageSize + 1 so the extra row signals another page
+    public static <E, T> CursorPage<T> of(List<E> rows, int pageSize, Function<E, Long> idOf, Function<E, T> mapper) {
+        boolean hasMore = rows.size() > pageSize;
+        List<E> page = hasMore ? rows.subList(0, pageSize) : rows;
+        Long nextCursor = hasMore ? idOf.apply(page.get(page.size() - 1)) : null;
+        return new CursorPage<>(page.stream().map(mapper).collect(Collectors.toList()), nextCursor);
+    }
+}
@@ -1,4 +1,5 @@
 package org.example.patient.models;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -25,4 +26,15 @@ public class EncounterDTO {
 
     @NotBlank(message = "Encounter class is required")
     private String encounterClass;
+
+    // sent as the ETag and Last-Modified headers rather than in the body
+    @JsonIgnore
+    private Long version;
+
+    @JsonIgnore
+    private LocalDateTime lastModified;
+
+    public EncounterDTO(Long patientId, LocalDate startDate, LocalDate endDate, String encounterClass) {
+        this(patientId, startDate, endDate, encounterClass, null, null);
+    }
 }
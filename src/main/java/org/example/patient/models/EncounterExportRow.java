@@ -0,0 +1,20 @@
+package org.example.patient.models;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonPropertyOrder({"id", "patientId", "startDate", "endDate", "encounterClass"})
+public class EncounterExportRow {
+    private Long id;
+    private Long patientId;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private String encounterClass;
+}
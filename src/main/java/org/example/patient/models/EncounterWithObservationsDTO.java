@@ -0,0 +1,27 @@
+package org.example.patient.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EncounterWithObservationsDTO {
+    private Long id;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private String encounterClass;
+    private List<ObservationDTO> observations = new ArrayList<>();
+
+    // used by the JPQL constructor expression; observations are attached afterwards
+    public EncounterWithObservationsDTO(Long id, LocalDate startDate, LocalDate endDate, String encounterClass) {
+        this(id, startDate, endDate, encounterClass, new ArrayList<>());
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportStatus {
+    private String id;
+    private String status;
+    private String format;
+    private LocalDateTime requestedAt;
+    private LocalDateTime completedAt;
+    private String error;
+    private List<File> files;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class File {
+        private String type;
+        private String status;
+        private long rows;
+        private long bytes;
+        private String url;
+    }
+}
@@ -0,0 +1,14 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRejectionDTO {
+    private long recordNumber;
+    private String content;
+    private String errors;
+}
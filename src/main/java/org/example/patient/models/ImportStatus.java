@@ -0,0 +1,23 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportStatus {
+    private String id;
+    private String status;
+    private String format;
+    private long processedRecords;
+    private long loadedRecords;
+    private long rejectedRecords;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private String rejectionsUrl;
+}
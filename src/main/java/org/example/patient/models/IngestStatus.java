@@ -0,0 +1,23 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestStatus {
+    private String id;
+    private String status;
+    private int observations;
+    private int created;
+    private int rejected;
+    private String error;
+    private LocalDateTime receivedAt;
+    private LocalDateTime completedAt;
+    private List<BatchItemResult> rejections;
+}
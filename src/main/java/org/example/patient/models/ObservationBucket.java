@@ -0,0 +1,19 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObservationBucket {
+    private LocalDateTime start;
+    private long count;
+    private double min;
+    private double max;
+    private double avg;
+    private double last;
+}
@@ -0,0 +1,23 @@
+package org.example.patient.models;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonPropertyOrder({"id", "patientId", "encounterId", "code", "value", "numericValue", "unit", "effectiveDateTime"})
+public class ObservationExportRow {
+    private Long id;
+    private Long patientId;
+    private Long encounterId;
+    private String code;
+    private String value;
+    private Double numericValue;
+    private String unit;
+    private LocalDateTime effectiveDateTime;
+}
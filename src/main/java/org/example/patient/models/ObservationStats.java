@@ -0,0 +1,21 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObservationStats {
+    private String code;
+    private String unit;
+    private Long patientId;
+    private long count;
+    private double min;
+    private double max;
+    private double avg;
+    private double p50;
+    private double p90;
+    private double p99;
+}
@@ -1,11 +1,13 @@
 package org.example.patient.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.*;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Data
 @NoArgsConstructor
@@ -13,12 +15,15 @@ import java.time.LocalDate;
 public class PatientDTO {
 
     @NotBlank(message = "Identifier is required")
+    @Size(max = 255, message = "Identifier must be at most 255 characters")
     private String identifier;
 
     @NotBlank(message = "Given name is required")
+    @Size(max = 255, message = "Given name must be at most 255 characters")
     private String givenName;
 
     @NotBlank(message = "Family name is required")
+    @Size(max = 255, message = "Family name must be at most 255 characters")
     private String familyName;
 
     @NotNull(message = "Birth date is required")
@@ -28,4 +33,15 @@ public class PatientDTO {
     @NotBlank(message = "Gender is required")
     @Pattern(regexp = "MALE|FEMALE", message = "Invalid gender value")
     private String gender;
+
+    // sent as the ETag and Last-Modified headers rather than in the body
+    @JsonIgnore
+    private Long version;
+
+    @JsonIgnore
+    private LocalDateTime lastModified;
+
+    public PatientDTO(String identifier, String givenName, String familyName, LocalDate birthDate, String gender) {
+        this(identifier, givenName, familyName, birthDate, gender, null, null);
+    }
 }
@@ -0,0 +1,20 @@
+package org.example.patient.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// sections that were not requested stay null and are left out of the response
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PatientEverythingDTO {
+    private PatientDTO patient;
+    private List<EncounterWithObservationsDTO> encounters;
+    // observations not recorded against an encounter, or all of them when encounters were not requested
+    private List<ObservationDTO> observations;
+}
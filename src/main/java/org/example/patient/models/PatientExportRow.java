@@ -0,0 +1,21 @@
+package org.example.patient.models;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonPropertyOrder({"id", "identifier", "givenName", "familyName", "birthDate", "gender"})
+public class PatientExportRow {
+    private Long id;
+    private String identifier;
+    private String givenName;
+    private String familyName;
+    private LocalDate birthDate;
+    private String gender;
+}
@@ -0,0 +1,37 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatientSearchCriteria {
+    private String family;
+    private String given;
+    private String identifier;
+    private LocalDate birthDate;
+    private LocalDate birthDateFrom;
+    private LocalDate birthDateTo;
+    private String gender;
+
+    public boolean hasFilters() {
+        return family != null || given != null || hasExactFilters();
+    }
+
+    public boolean isNameOnly() {
+        return (family != null || given != null) && !hasExactFilters();
+    }
+
+    public boolean isIdentifierOnly() {
+        return identifier != null && family == null && given == null
+                && birthDate == null && birthDateFrom == null && birthDateTo == null && gender == null;
+    }
+
+    private boolean hasExactFilters() {
+        return identifier != null || birthDate != null || birthDateFrom != null || birthDateTo != null || gender != null;
+    }
+}
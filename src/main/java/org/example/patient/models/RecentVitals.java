@@ -0,0 +1,21 @@
+package org.example.patient.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One code's recent numeric samples for a patient, oldest first, as parallel lists.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecentVitals {
+    private String code;
+    private String unit;
+    private List<LocalDateTime> effectiveDateTimes;
+    private double[] values;
+}
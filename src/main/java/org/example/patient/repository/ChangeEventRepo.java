@@ -0,0 +1,36 @@
+package org.example.patient.repository;
+
+import jakarta.persistence.QueryHint;
+import org.example.patient.entity.ChangeEvent;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChangeEventRepo extends JpaRepository<ChangeEvent, Long>, ChangeFeedRepo {
+
+    // the rows that deleting a patient or an encounter removes through its cascades, recorded before they are gone.
+    // Naming the table written keeps Hibernate from clearing every second-level cache region on each of these.
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "change_events"))
+    @Query(value = "insert into change_events (resource_type, resource_id, operation) "
+            + "select 'ENCOUNTER', id, 'DELETE' from encounters where patient_id = :patientId", nativeQuery = true)
+    int recordEncounterDeletesByPatientId(@Param("patientId") Long patientId);
+
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "change_events"))
+    @Query(value = "insert into change_events (resource_type, resource_id, operation) "
+            + "select 'OBSERVATION', id, 'DELETE' from observations where patient_id = :patientId "
+            + "or encounter_id in (select id from encounters where patient_id = :patientId)", nativeQuery = true)
+    int recordObservationDeletesByPatientId(@Param("patientId") Long patientId);
+
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "change_events"))
+    @Query(value = "insert into change_events (resource_type, resource_id, operation) "
+            + "select 'OBSERVATION', id, 'DELETE' from observations where encounter_id = :encounterId", nativeQuery = true)
+    int recordObservationDeletesByEncounterId(@Param("encounterId") Long encounterId);
+}
@@ -0,0 +1,40 @@
+package org.example.patient.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.patient.entity.ChangeEvent;
+import org.example.patient.models.ChangeEventDTO;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ChangeFeedRepo {
+
+    /**
+     * Appends one event per resource id in a single statement. Must run inside the transaction that
+     * made the change, so the events commit or roll back with it.
+     */
+    void record(ChangeEvent.ResourceType resourceType, ChangeEvent.Operation operation, Collection<Long> resourceIds);
+
+    Optional<Position> findPosition(long id);
+
+    /**
+     * The events after the given position in feed order. On PostgreSQL events written by a transaction that
+     * is still running, or by any transaction newer than the oldest one still running, are held back until
+     * it ends: a later read can then only find events after the last position returned.
+     */
+    List<ChangeEventDTO> findAfter(Position after, int limit);
+
+    int deleteOccurredBefore(LocalDateTime cutoff, int limit);
+
+    @Data
+    @AllArgsConstructor
+    class Position {
+        public static final Position START = new Position(0, 0);
+
+        private long txid;
+        private long id;
+    }
+}
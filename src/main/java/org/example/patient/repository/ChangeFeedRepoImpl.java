@@ -0,0 +1,95 @@
+package org.example.patient.repository;
+
+import org.example.patient.entity.ChangeEvent;
+import org.example.patient.models.ChangeEventDTO;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Plain JDBC access to {@code change_events}, so recording a bulk write costs one statement and no entities in
+ * the persistence context: on PostgreSQL the resource ids are bound as one array and unnested, elsewhere
+ * they are sent as a JDBC batch. On PostgreSQL the {@code txid} column defaults to the id of the
+ * inserting transaction and reads stop at the xmin of the current snapshot; other databases (H2 in tests)
+ * leave it at 0, which orders the feed by id alone.
+ */
+class ChangeFeedRepoImpl implements ChangeFeedRepo {
+
+    private static final String INSERT = "insert into change_events (resource_type, resource_id, operation) values (?, ?, ?)";
+
+    private static final String INSERT_ARRAY = "insert into change_events (resource_type, resource_id, operation) "
+            + "select ?, unnest(?::bigint[]), ?";
+
+    private static final String SELECT_AFTER = "select id, txid, resource_type, resource_id, operation, occurred_at "
+            + "from change_events where (txid, id) > (?, ?)";
+
+    private static final String BEFORE_OLDEST_RUNNING = " and txid < pg_snapshot_xmin(pg_current_snapshot())::text::bigint";
+
+    private static final String ORDER = " order by txid, id limit ?";
+
+    private static final RowMapper<ChangeEventDTO> EVENT = (rs, rowNum) -> new ChangeEventDTO(
+            rs.getLong("id"), rs.getString("resource_type"), rs.getLong("resource_id"), rs.getString("operation"),
+            rs.getTimestamp("occurred_at").toLocalDateTime(), rs.getLong("txid"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    @Override
+    public void record(ChangeEvent.ResourceType resourceType, ChangeEvent.Operation operation, Collection<Long> resourceIds) {
+        if (resourceIds.isEmpty()) {
+            return;
+        }
+        if (isPostgres()) {
+            jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_ARRAY)) {
+                    insert.setString(1, resourceType.name());
+                    insert.setArray(2, connection.createArrayOf("bigint", resourceIds.toArray()));
+                    insert.setString(3, operation.name());
+                    return insert.executeUpdate();
+                }
+            });
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT, resourceIds, resourceIds.size(), (statement, resourceId) -> {
+            statement.setString(1, resourceType.name());
+            statement.setLong(2, resourceId);
+            statement.setString(3, operation.name());
+        });
+    }
+
+    @Override
+    public Optional<Position> findPosition(long id) {
+        return jdbcTemplate.query("select txid, id from change_events where id = ?",
+                (rs, rowNum) -> new Position(rs.getLong("txid"), rs.getLong("id")), id).stream().findFirst();
+    }
+
+    @Override
+    public List<ChangeEventDTO> findAfter(Position after, int limit) {
+        String sql = SELECT_AFTER + (isPostgres() ? BEFORE_OLDEST_RUNNING : "") + ORDER;
+        return jdbcTemplate.query(sql, EVENT, after.getTxid(), after.getId(), limit);
+    }
+
+    @Override
+    public int deleteOccurredBefore(LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.update("delete from change_events where id in "
+                + "(select id from change_events where occurred_at < ? limit ?)", Timestamp.valueOf(cutoff), limit);
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class));
+        }
+        return postgres;
+    }
+}
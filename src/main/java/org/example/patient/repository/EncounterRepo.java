@@ -1,13 +1,67 @@
 package org.example.patient.repository;
 
 
+import jakarta.persistence.QueryHint;
 import org.example.patient.entity.Encounter;
+import org.example.patient.models.EncounterDTO;
+import org.example.patient.models.EncounterExportRow;
+import org.example.patient.models.EncounterWithObservationsDTO;
+import org.example.patient.models.ResourceVersion;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
 public interface EncounterRepo extends JpaRepository<Encounter, Long> {
+    String SELECT_DTO = "select new org.example.patient.models.EncounterDTO("
+            + "e.patient.id, e.startDate, e.endDate, cast(e.encounterClass as String)) "
+            + "from Encounter e";
+    String QUERY_REGION = "encounter-queries";
+
+    @QueryHints({@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     List<Encounter> findByPatientId(Long patientId);
+
+    @Query("select new org.example.patient.models.ResourceVersion(e.version, e.lastModified) from Encounter e where e.id = :id")
+    Optional<ResourceVersion> findVersionById(@Param("id") Long id);
+
+    @Query(SELECT_DTO + " order by e.id")
+    List<EncounterDTO> findAllDtos();
+
+    @Query(SELECT_DTO + " where e.patient.id = :patientId order by e.id")
+    List<EncounterDTO> findDtosByPatientId(@Param("patientId") Long patientId);
+
+    @Query("select new org.example.patient.models.EncounterWithObservationsDTO("
+            + "e.id, e.startDate, e.endDate, cast(e.encounterClass as String)) "
+            + "from Encounter e where e.patient.id = :patientId order by e.id")
+    List<EncounterWithObservationsDTO> findNestedDtosByPatientId(@Param("patientId") Long patientId);
+
+    @Query("select e.id from Encounter e where e.id in :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select e.id from Encounter e where e.patient.id = :patientId")
+    List<Long> findIdsByPatientId(@Param("patientId") Long patientId);
+
+    List<Encounter> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    List<Encounter> findByPatientIdAndIdGreaterThanOrderByIdAsc(Long patientId, Long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Encounter> streamAllByOrderByIdAsc();
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new org.example.patient.models.EncounterExportRow("
+            + "e.id, e.patient.id, e.startDate, e.endDate, cast(e.encounterClass as String)) "
+            + "from Encounter e join e.patient p where p.deletedAt is null order by e.id")
+    Stream<EncounterExportRow> streamExportRows();
 }
@@ -0,0 +1,14 @@
+package org.example.patient.repository;
+
+import org.example.patient.entity.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImportJobRepo extends JpaRepository<ImportJob, String> {
+
+    List<ImportJob> findByStatusInOrderByCreatedAtAsc(Collection<ImportJob.Status> statuses);
+}
@@ -0,0 +1,22 @@
+package org.example.patient.repository;
+
+import jakarta.persistence.QueryHint;
+import org.example.patient.entity.ImportRejection;
+import org.example.patient.models.ImportRejectionDTO;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.stream.Stream;
+
+@Repository
+public interface ImportRejectionRepo extends JpaRepository<ImportRejection, Long> {
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new org.example.patient.models.ImportRejectionDTO(r.recordNumber, r.content, r.errors) "
+            + "from ImportRejection r where r.jobId = :jobId order by r.recordNumber")
+    Stream<ImportRejectionDTO> streamDtosByJobId(@Param("jobId") String jobId);
+}
@@ -0,0 +1,17 @@
+package org.example.patient.repository;
+
+import org.example.patient.entity.IngestSubmission;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Set;
+
+@Repository
+public interface IngestSubmissionRepo extends JpaRepository<IngestSubmission, String> {
+
+    @Query("select s.id from IngestSubmission s where s.id in :ids")
+    Set<String> findExistingIds(@Param("ids") Collection<String> ids);
+}
@@ -0,0 +1,121 @@
+package org.example.patient.repository;
+
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * DDL on the monthly partitions of {@code observations} (see V10__partition_observations.sql). PostgreSQL
+ * only; every method expects to run inside a transaction that holds {@link #tryLock()}.
+ */
+@Repository
+public class ObservationPartitionRepo {
+
+    public static final String DEFAULT_PARTITION = "observations_default";
+
+    private static final String PREFIX = "observations_p";
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // false on H2, where the schema comes from the entities
+    public boolean isPartitioned() {
+        if (!Boolean.TRUE.equals(jdbcTemplate.execute(
+                (ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class)))) {
+            return false;
+        }
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from pg_partitioned_table where partrelid = to_regclass('observations'))",
+                Boolean.class));
+    }
+
+    // serialises maintenance across instances; released when the transaction ends
+    public boolean tryLock() {
+        jdbcTemplate.execute("set local lock_timeout = '5s'");
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select pg_try_advisory_xact_lock(hashtext('observations_partitions'))", Boolean.class));
+    }
+
+    /**
+     * The months with a partition of their own, oldest first. Partitions not named by this class are left out.
+     */
+    public List<YearMonth> findMonths() {
+        return jdbcTemplate.queryForList("select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid "
+                        + "where i.inhparent = 'observations'::regclass", String.class).stream()
+                .map(ObservationPartitionRepo::month)
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Creates the month's partition. Rows of that month already in the default partition are moved into it,
+     * since PostgreSQL refuses to add a partition whose range the default partition still holds rows of.
+     */
+    public void createPartition(YearMonth month) {
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        String partition = partitionName(month);
+        boolean inDefault = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from " + DEFAULT_PARTITION + " where effective_date_time >= ? and effective_date_time < ?)",
+                Boolean.class, from, to));
+        if (!inDefault) {
+            jdbcTemplate.execute("create table " + partition + " partition of observations for values from ('"
+                    + from + "') to ('" + to + "')");
+            return;
+        }
+        jdbcTemplate.execute("alter table observations detach partition " + DEFAULT_PARTITION);
+        jdbcTemplate.execute("create table " + partition + " partition of observations for values from ('"
+                + from + "') to ('" + to + "')");
+        jdbcTemplate.update("insert into " + partition + " select * from " + DEFAULT_PARTITION
+                + " where effective_date_time >= ? and effective_date_time < ?", from, to);
+        jdbcTemplate.update("delete from " + DEFAULT_PARTITION
+                + " where effective_date_time >= ? and effective_date_time < ?", from, to);
+        jdbcTemplate.execute("alter table observations attach partition " + DEFAULT_PARTITION + " default");
+    }
+
+    /**
+     * Detaches the month's partition and keeps it as a plain table named {@code observations_archive_yyyy_MM}.
+     * Its foreign keys are dropped, so deleting a patient or encounter is not blocked by archived rows.
+     */
+    public String archivePartition(YearMonth month) {
+        String partition = partitionName(month);
+        String archive = "observations_archive_" + MONTH.format(month);
+        jdbcTemplate.execute("alter table observations detach partition " + partition);
+        jdbcTemplate.queryForList("select conname from pg_constraint where conrelid = ?::regclass and contype = 'f'",
+                        String.class, partition)
+                .forEach(constraint -> jdbcTemplate.execute(
+                        "alter table " + partition + " drop constraint \"" + constraint + "\""));
+        jdbcTemplate.execute("alter table " + partition + " rename to " + archive);
+        return archive;
+    }
+
+    public void dropPartition(YearMonth month) {
+        jdbcTemplate.execute("drop table " + partitionName(month));
+    }
+
+    static String partitionName(YearMonth month) {
+        return PREFIX + MONTH.format(month);
+    }
+
+    private static YearMonth month(String partition) {
+        if (!partition.startsWith(PREFIX)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(PREFIX.length()), MONTH);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -1,14 +1,102 @@
 package org.example.patient.repository;
 
+import jakarta.persistence.QueryHint;
 import org.example.patient.entity.Observation;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.ObservationExportRow;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface ObservationRepo extends JpaRepository<Observation, Long> {
+public interface ObservationRepo extends JpaRepository<Observation, Long>, ObservationStatsRepo {
+    String SELECT_DTO = "select new org.example.patient.models.ObservationDTO("
+            + "o.patient.id, e.id, o.code, o.value, o.effectiveDateTime) "
+            + "from Observation o left join o.encounter e";
+
     List<Observation> findByPatientId(Long patientId);
     List<Observation> findByEncounterId(Long encounterId);
     List<Observation> findByCode(String code);
+
+    @Query(SELECT_DTO + " order by o.id")
+    List<ObservationDTO> findAllDtos();
+
+    @Query(SELECT_DTO + " where o.patient.id = :patientId order by o.id")
+    List<ObservationDTO> findDtosByPatientId(@Param("patientId") Long patientId);
+
+    @Query(SELECT_DTO + " where e.id = :encounterId order by o.id")
+    List<ObservationDTO> findDtosByEncounterId(@Param("encounterId") Long encounterId);
+
+    String IN_RANGE = " where o.patient.id = :patientId and o.code = :code"
+            + " and o.effectiveDateTime >= :from and o.effectiveDateTime < :to";
+
+    // keyset pages in time order: the next page starts from the last row's time, after its id among rows of that time
+    @Query("select o from Observation o" + IN_RANGE + " and (o.effectiveDateTime > :from or o.id > :afterId)"
+            + " order by o.effectiveDateTime, o.id")
+    List<Observation> findInRange(@Param("patientId") Long patientId, @Param("code") String code,
+                                  @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                  @Param("afterId") Long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select o.effectiveDateTime as effectiveDateTime, o.numericValue as numericValue from Observation o"
+            + IN_RANGE + " and o.numericValue is not null order by o.effectiveDateTime")
+    Stream<SampleView> streamSamples(@Param("patientId") Long patientId, @Param("code") String code,
+                                     @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    String SELECT_RECENT = "select o.patient.id as patientId, o.code as code, o.unit as unit,"
+            + " o.effectiveDateTime as effectiveDateTime, o.numericValue as numericValue from Observation o"
+            + " where o.effectiveDateTime >= :from and o.numericValue is not null";
+
+    @Query(SELECT_RECENT + " and o.patient.id = :patientId order by o.effectiveDateTime")
+    List<RecentSampleView> findRecentSamples(@Param("patientId") Long patientId, @Param("from") LocalDateTime from);
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(SELECT_RECENT + " order by o.patient.id, o.effectiveDateTime")
+    Stream<RecentSampleView> streamRecentSamples(@Param("from") LocalDateTime from);
+
+    @Query("select o.patient.id from Observation o where o.id = :id")
+    Optional<Long> findPatientIdById(@Param("id") Long id);
+
+    @Query("select distinct o.patient.id from Observation o where o.encounter.id = :encounterId")
+    List<Long> findPatientIdsByEncounterId(@Param("encounterId") Long encounterId);
+
+    // stops at the limit, so it costs the same for a patient with millions of observations
+    @Query(value = "select count(*) from (select 1 from observations where patient_id = :patientId limit :limit) o",
+            nativeQuery = true)
+    long countByPatientIdUpTo(@Param("patientId") Long patientId, @Param("limit") int limit);
+
+    List<Observation> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    List<Observation> findByPatientIdAndIdGreaterThanOrderByIdAsc(Long patientId, Long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Observation> streamAllByOrderByIdAsc();
+
+    // without a soft-deleted patient's observations, nor those in its encounters, which the purge removes with it
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new org.example.patient.models.ObservationExportRow("
+            + "o.id, o.patient.id, e.id, o.code, o.value, o.numericValue, o.unit, o.effectiveDateTime) "
+            + "from Observation o join o.patient p left join o.encounter e where p.deletedAt is null "
+            + "and (e is null or e.patient.id in (select ep.id from Patient ep where ep.deletedAt is null)) order by o.id")
+    Stream<ObservationExportRow> streamExportRows();
+
+    interface SampleView {
+        LocalDateTime getEffectiveDateTime();
+        double getNumericValue();
+    }
+
+    interface RecentSampleView extends SampleView {
+        Long getPatientId();
+        String getCode();
+        String getUnit();
+    }
 }
@@ -0,0 +1,10 @@
+package org.example.patient.repository;
+
+import org.example.patient.models.ObservationStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ObservationStatsRepo {
+    List<ObservationStats> aggregate(Long patientId, String code, LocalDateTime from, LocalDateTime to, boolean byPatient);
+}
@@ -0,0 +1,77 @@
+package org.example.patient.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import org.example.patient.models.ObservationStats;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregates the numeric observation values in the database, grouped by code and unit (and optionally
+ * patient) so values recorded in different units are never mixed. Like {@link PatientSearchRepoImpl}
+ * the query text only depends on which filters are present.
+ */
+class ObservationStatsRepoImpl implements ObservationStatsRepo {
+
+    private static final String AGGREGATES = "count(o.numericValue), min(o.numericValue), max(o.numericValue), "
+            + "avg(o.numericValue), "
+            + "percentile_cont(0.5) within group (order by o.numericValue), "
+            + "percentile_cont(0.9) within group (order by o.numericValue), "
+            + "percentile_cont(0.99) within group (order by o.numericValue)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ObservationStats> aggregate(Long patientId, String code, LocalDateTime from, LocalDateTime to, boolean byPatient) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        StringBuilder where = new StringBuilder(" where o.numericValue is not null");
+        if (patientId != null) {
+            where.append(" and o.patient.id = :patientId");
+            parameters.put("patientId", patientId);
+        }
+        if (code != null) {
+            where.append(" and o.code = :code");
+            parameters.put("code", code);
+        }
+        if (from != null) {
+            where.append(" and o.effectiveDateTime >= :from");
+            parameters.put("from", from);
+        }
+        if (to != null) {
+            where.append(" and o.effectiveDateTime < :to");
+            parameters.put("to", to);
+        }
+
+        String groupBy = byPatient ? "o.code, o.unit, o.patient.id" : "o.code, o.unit";
+        TypedQuery<Tuple> query = entityManager.createQuery(
+                "select " + groupBy + ", " + AGGREGATES + " from Observation o" + where
+                        + " group by " + groupBy + " order by " + groupBy, Tuple.class);
+        parameters.forEach(query::setParameter);
+
+        int offset = byPatient ? 3 : 2;
+        return query.getResultList().stream()
+                .map(row -> new ObservationStats(
+                        row.get(0, String.class),
+                        row.get(1, String.class),
+                        byPatient ? row.get(2, Long.class) : null,
+                        row.get(offset, Long.class),
+                        number(row, offset + 1),
+                        number(row, offset + 2),
+                        number(row, offset + 3),
+                        number(row, offset + 4),
+                        number(row, offset + 5),
+                        number(row, offset + 6)))
+                .collect(Collectors.toList());
+    }
+
+    private static double number(Tuple row, int index) {
+        return ((Number) row.get(index)).doubleValue();
+    }
+}
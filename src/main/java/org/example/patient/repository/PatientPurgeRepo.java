@@ -0,0 +1,59 @@
+package org.example.patient.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes soft-deleted patients (see V11__patient_delete_cascade.sql) a bounded number of rows at a time, so
+ * that each call can run in a short transaction of its own. The statements bypass Hibernate; callers evict
+ * what the second-level cache holds of the removed encounters, and record the deletes in the change feed.
+ */
+@Repository
+public class PatientPurgeRepo {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // oldest deletion first
+    public List<Long> findDeleted(int limit) {
+        return jdbcTemplate.queryForList("select id from patients where deleted_at is not null order by deleted_at limit ?",
+                Long.class, limit);
+    }
+
+    // the other patients with observations in the patient's encounters, which are deleted along with the patient's own
+    public List<Long> findPatientsInEncounters(Long patientId) {
+        return jdbcTemplate.queryForList("select distinct patient_id from observations where encounter_id in "
+                + "(select id from encounters where patient_id = ?) and patient_id <> ?", Long.class, patientId, patientId);
+    }
+
+    // the ids of the deleted observations: the patient's and those in its encounters, as the cascade would take them
+    public List<Long> deleteObservations(Long patientId, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList("select id from observations where patient_id = ? union "
+                + "select id from observations where encounter_id in (select id from encounters where patient_id = ?) limit ?",
+                Long.class, patientId, patientId, limit);
+        if (!ids.isEmpty()) {
+            new NamedParameterJdbcTemplate(jdbcTemplate).update("delete from observations where id in (:ids)", Map.of("ids", ids));
+        }
+        return ids;
+    }
+
+    // the ids of the deleted encounters, once their observations are gone
+    public List<Long> deleteEncounters(Long patientId, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList("select id from encounters where patient_id = ? limit ?",
+                Long.class, patientId, limit);
+        if (!ids.isEmpty()) {
+            new NamedParameterJdbcTemplate(jdbcTemplate).update("delete from encounters where id in (:ids)", Map.of("ids", ids));
+        }
+        return ids;
+    }
+
+    // whatever was added to the patient since its last chunk goes with it through ON DELETE CASCADE
+    public boolean deletePatient(Long patientId) {
+        return jdbcTemplate.update("delete from patients where id = ? and deleted_at is not null", patientId) > 0;
+    }
+}
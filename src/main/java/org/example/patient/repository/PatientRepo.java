@@ -1,18 +1,70 @@
 package org.example.patient.repository;
 
+import jakarta.persistence.QueryHint;
 import org.example.patient.entity.Patient;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.models.PatientExportRow;
+import org.example.patient.models.ResourceVersion;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
-public interface PatientRepo extends JpaRepository<Patient, Long> {
+public interface PatientRepo extends JpaRepository<Patient, Long>, PatientSearchRepo, PatientUpsertRepo {
+    String SELECT_DTO = "select new org.example.patient.models.PatientDTO("
+            + "p.identifier, p.givenName, p.familyName, p.birthDate, cast(p.gender as String)) "
+            + "from Patient p";
+    // second-level cache region of the cacheable patient queries; see application.conf
+    String QUERY_REGION = "patient-queries";
+
+    @QueryHints({@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = QUERY_REGION)})
     Optional<Patient> findByIdentifier(String identifier);
     List<Patient> findByFamilyNameContainingIgnoreCase(String familyName);
     List<Patient> findByGivenNameContainingIgnoreCase(String givenName);
     List<Patient> findByBirthDate(LocalDate birthDate);
     List<Patient> findByBirthDateBetween(LocalDate startDate, LocalDate endDate);
+
+    @Query(SELECT_DTO + " order by p.id")
+    List<PatientDTO> findAllDtos();
+
+    @Query("select new org.example.patient.models.ResourceVersion(p.version, p.lastModified) from Patient p where p.id = :id")
+    Optional<ResourceVersion> findVersionById(@Param("id") Long id);
+
+    @Query("select p.identifier from Patient p where p.id = :id")
+    Optional<String> findIdentifierById(@Param("id") Long id);
+
+    @Query("select p.id from Patient p where p.id in :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    List<Patient> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Patient> streamAllByOrderByIdAsc();
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<NameView> streamNamesBy();
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new org.example.patient.models.PatientExportRow("
+            + "p.id, p.identifier, p.givenName, p.familyName, p.birthDate, cast(p.gender as String)) "
+            + "from Patient p order by p.id")
+    Stream<PatientExportRow> streamExportRows();
+
+    interface NameView {
+        Long getId();
+        String getGivenName();
+        String getFamilyName();
+    }
 }
@@ -0,0 +1,10 @@
+package org.example.patient.repository;
+
+import org.example.patient.models.PatientDTO;
+import org.example.patient.models.PatientSearchCriteria;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface PatientSearchRepo {
+    Page<PatientDTO> search(PatientSearchCriteria criteria, Pageable pageable);
+}
@@ -0,0 +1,110 @@
+package org.example.patient.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.example.patient.entity.Patient;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.models.PatientSearchCriteria;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiles any combination of search filters into one JPQL query. The query text only depends on which
+ * filters and sort orders are present, never on their values, so each shape is parsed and translated once
+ * and then served from Hibernate's query plan cache (and PostgreSQL's prepared statement cache).
+ */
+class PatientSearchRepoImpl implements PatientSearchRepo {
+
+    private static final Map<String, String> SORTABLE = Map.of(
+            "id", "p.id",
+            "identifier", "p.identifier",
+            "givenName", "p.givenName",
+            "familyName", "p.familyName",
+            "birthDate", "p.birthDate",
+            "gender", "p.gender");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<PatientDTO> search(PatientSearchCriteria criteria, Pageable pageable) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        String where = where(criteria, parameters);
+
+        TypedQuery<PatientDTO> query = entityManager.createQuery(
+                PatientRepo.SELECT_DTO + where + orderBy(pageable.getSort()), PatientDTO.class);
+        parameters.forEach(query::setParameter);
+        query.setFirstResult((int) pageable.getOffset());
+        query.setMaxResults(pageable.getPageSize());
+
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> {
+            TypedQuery<Long> count = entityManager.createQuery("select count(p) from Patient p" + where, Long.class);
+            parameters.forEach(count::setParameter);
+            return count.getSingleResult();
+        });
+    }
+
+    // name filters keep the ContainingIgnoreCase semantics so they can use the upper(...) trigram indexes
+    private static String where(PatientSearchCriteria criteria, Map<String, Object> parameters) {
+        StringBuilder where = new StringBuilder();
+        if (criteria.getFamily() != null) {
+            where.append(" and upper(p.familyName) like :family escape '\\'");
+            parameters.put("family", containing(criteria.getFamily()));
+        }
+        if (criteria.getGiven() != null) {
+            where.append(" and upper(p.givenName) like :given escape '\\'");
+            parameters.put("given", containing(criteria.getGiven()));
+        }
+        if (criteria.getIdentifier() != null) {
+            where.append(" and p.identifier = :identifier");
+            parameters.put("identifier", criteria.getIdentifier());
+        }
+        if (criteria.getBirthDate() != null) {
+            where.append(" and p.birthDate = :birthDate");
+            parameters.put("birthDate", criteria.getBirthDate());
+        }
+        if (criteria.getBirthDateFrom() != null) {
+            where.append(" and p.birthDate >= :birthDateFrom");
+            parameters.put("birthDateFrom", criteria.getBirthDateFrom());
+        }
+        if (criteria.getBirthDateTo() != null) {
+            where.append(" and p.birthDate <= :birthDateTo");
+            parameters.put("birthDateTo", criteria.getBirthDateTo());
+        }
+        if (criteria.getGender() != null) {
+            where.append(" and p.gender = :gender");
+            parameters.put("gender", Patient.Gender.valueOf(criteria.getGender().toUpperCase(Locale.ROOT)));
+        }
+        return where.isEmpty() ? "" : " where" + where.substring(" and".length());
+    }
+
+    // id is always the last sort key so offset pages stay stable between requests
+    private static String orderBy(Sort sort) {
+        StringBuilder orderBy = new StringBuilder(" order by ");
+        boolean byId = false;
+        for (Sort.Order order : sort) {
+            String path = SORTABLE.get(order.getProperty());
+            if (path == null) {
+                throw new IllegalArgumentException("Unsupported sort property: " + order.getProperty());
+            }
+            orderBy.append(path).append(order.isDescending() ? " desc, " : ", ");
+            byId |= path.equals("p.id");
+        }
+        return byId ? orderBy.substring(0, orderBy.length() - 2) : orderBy.append("p.id").toString();
+    }
+
+    private static String containing(String value) {
+        String escaped = value.toUpperCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.patient.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.patient.models.PatientDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface PatientUpsertRepo {
+
+    /**
+     * Inserts or updates the patients by identifier in one set-based statement; when an identifier occurs
+     * more than once the last occurrence wins. Returns the rows that were inserted or changed: an update that
+     * would not change anything is skipped, on PostgreSQL, and its identifier is missing from the result.
+     * Must run inside a transaction.
+     */
+    List<Upserted> upsertByIdentifier(List<PatientDTO> patients);
+
+    /**
+     * The identifiers among these that belong to a deleted patient whose purge has not finished: the upsert
+     * leaves such a patient alone, as the identifier stays taken until it is gone.
+     */
+    Set<String> findPurgingIdentifiers(Collection<String> identifiers);
+
+    @Data
+    @AllArgsConstructor
+    class Upserted {
+        private Long id;
+        private String identifier;
+        private String givenName;
+        private String familyName;
+        private boolean inserted;
+    }
+}
@@ -0,0 +1,200 @@
+package org.example.patient.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.example.patient.models.PatientDTO;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On PostgreSQL a batch of up to {@link #UNNEST_LIMIT} patients is bound as column arrays and upserted by a
+ * single {@code INSERT ... SELECT FROM unnest(...) ON CONFLICT (identifier) DO UPDATE}. Larger batches are
+ * streamed with {@code COPY} into a session-local staging table and merged by the same statement reading
+ * from it. Other databases (H2 in tests) fall back to a JDBC-batched {@code MERGE ... USING}.
+ */
+class PatientUpsertRepoImpl implements PatientUpsertRepo {
+
+    static final int UNNEST_LIMIT = 1000;
+
+    private static final String CREATE_STAGING = "create temp table if not exists patient_upsert_staging ("
+            + "line int, identifier text, given_name text, family_name text, birth_date date, gender text) "
+            + "on commit delete rows";
+
+    private static final String COPY_STAGING = "copy patient_upsert_staging "
+            + "(line, identifier, given_name, family_name, birth_date, gender) from stdin (format csv)";
+
+    // xmax is only zero on a freshly inserted row version; a patient being purged keeps its identifier until it
+    // is gone and is left alone (see findPurgingIdentifiers)
+    private static final String ON_CONFLICT = " on conflict (identifier) do update set given_name = excluded.given_name, "
+            + "family_name = excluded.family_name, birth_date = excluded.birth_date, gender = excluded.gender, "
+            + "version = patients.version + 1, last_modified = localtimestamp "
+            + "where patients.deleted_at is null "
+            + "and (patients.given_name, patients.family_name, patients.birth_date, patients.gender) "
+            + "is distinct from (excluded.given_name, excluded.family_name, excluded.birth_date, excluded.gender) "
+            + "returning id, identifier, given_name, family_name, xmax = 0 as inserted";
+
+    private static final String INSERT_LAST_PER_IDENTIFIER = "insert into patients (identifier, given_name, family_name, birth_date, gender) "
+            + "select distinct on (identifier) identifier, given_name, family_name, birth_date, gender from ";
+
+    private static final String MERGE_STAGING = INSERT_LAST_PER_IDENTIFIER
+            + "patient_upsert_staging order by identifier, line desc" + ON_CONFLICT;
+
+    private static final String MERGE_ARRAYS = INSERT_LAST_PER_IDENTIFIER
+            + "unnest(?::text[], ?::text[], ?::text[], ?::date[], ?::text[]) with ordinality "
+            + "as t (identifier, given_name, family_name, birth_date, gender, line) "
+            + "order by identifier, line desc" + ON_CONFLICT;
+
+    private static final String MERGE_ROW = "merge into patients p using (select cast(? as varchar) identifier, "
+            + "cast(? as varchar) given_name, cast(? as varchar) family_name, cast(? as date) birth_date, cast(? as varchar) gender) s "
+            + "on p.identifier = s.identifier "
+            + "when matched and p.deleted_at is null then update set given_name = s.given_name, family_name = s.family_name, "
+            + "birth_date = s.birth_date, gender = s.gender, version = p.version + 1, last_modified = localtimestamp "
+            + "when not matched then insert (identifier, given_name, family_name, birth_date, gender) "
+            + "values (s.identifier, s.given_name, s.family_name, s.birth_date, s.gender)";
+
+    private static final RowMapper<Upserted> UPSERTED = (rs, rowNum) -> new Upserted(
+            rs.getLong("id"), rs.getString("identifier"), rs.getString("given_name"), rs.getString("family_name"),
+            rs.getBoolean("inserted"));
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    @Override
+    public List<Upserted> upsertByIdentifier(List<PatientDTO> patients) {
+        if (patients.isEmpty()) {
+            return List.of();
+        }
+        // the statements below bypass Hibernate, so pending entity changes have to reach the database first
+        entityManager.flush();
+        if (!isPostgres()) {
+            return mergeRows(patients);
+        }
+        return patients.size() <= UNNEST_LIMIT ? mergeArrays(patients) : copyAndMerge(patients);
+    }
+
+    @Override
+    public Set<String> findPurgingIdentifiers(Collection<String> identifiers) {
+        if (identifiers.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(new NamedParameterJdbcTemplate(jdbcTemplate).queryForList(
+                "select identifier from patients where identifier in (:identifiers) and deleted_at is not null",
+                Map.of("identifiers", identifiers), String.class));
+    }
+
+    private List<Upserted> mergeArrays(List<PatientDTO> patients) {
+        int size = patients.size();
+        String[] identifiers = new String[size];
+        String[] givenNames = new String[size];
+        String[] familyNames = new String[size];
+        Date[] birthDates = new Date[size];
+        String[] genders = new String[size];
+        for (int i = 0; i < size; i++) {
+            PatientDTO patient = patients.get(i);
+            identifiers[i] = patient.getIdentifier();
+            givenNames[i] = patient.getGivenName();
+            familyNames[i] = patient.getFamilyName();
+            birthDates[i] = Date.valueOf(patient.getBirthDate());
+            genders[i] = patient.getGender();
+        }
+        return jdbcTemplate.execute((ConnectionCallback<List<Upserted>>) connection -> {
+            try (PreparedStatement merge = connection.prepareStatement(MERGE_ARRAYS)) {
+                merge.setArray(1, connection.createArrayOf("text", identifiers));
+                merge.setArray(2, connection.createArrayOf("text", givenNames));
+                merge.setArray(3, connection.createArrayOf("text", familyNames));
+                merge.setArray(4, connection.createArrayOf("date", birthDates));
+                merge.setArray(5, connection.createArrayOf("text", genders));
+                return collect(merge, size);
+            }
+        });
+    }
+
+    private List<Upserted> copyAndMerge(List<PatientDTO> patients) {
+        StringBuilder csv = new StringBuilder(patients.size() * 96);
+        for (int i = 0; i < patients.size(); i++) {
+            PatientDTO patient = patients.get(i);
+            csv.append(i).append(',')
+                    .append(quote(patient.getIdentifier())).append(',')
+                    .append(quote(patient.getGivenName())).append(',')
+                    .append(quote(patient.getFamilyName())).append(',')
+                    .append(patient.getBirthDate()).append(',')
+                    .append(quote(patient.getGender())).append('\n');
+        }
+        return jdbcTemplate.execute((ConnectionCallback<List<Upserted>>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING);
+            }
+            try {
+                connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING, new StringReader(csv.toString()));
+            } catch (IOException e) {
+                throw new SQLException("COPY into patient_upsert_staging failed", e);
+            }
+            try (PreparedStatement merge = connection.prepareStatement(MERGE_STAGING)) {
+                return collect(merge, patients.size());
+            }
+        });
+    }
+
+    private static List<Upserted> collect(PreparedStatement merge, int expected) throws SQLException {
+        List<Upserted> upserted = new ArrayList<>(expected);
+        try (ResultSet rows = merge.executeQuery()) {
+            while (rows.next()) {
+                upserted.add(UPSERTED.mapRow(rows, upserted.size()));
+            }
+        }
+        return upserted;
+    }
+
+    private List<Upserted> mergeRows(List<PatientDTO> patients) {
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(jdbcTemplate);
+        List<String> identifiers = patients.stream().map(PatientDTO::getIdentifier).distinct().toList();
+        Set<String> existing = new HashSet<>(named.queryForList(
+                "select identifier from patients where identifier in (:identifiers) and deleted_at is null",
+                Map.of("identifiers", identifiers), String.class));
+        jdbcTemplate.batchUpdate(MERGE_ROW, patients, patients.size(), (statement, patient) -> {
+            statement.setString(1, patient.getIdentifier());
+            statement.setString(2, patient.getGivenName());
+            statement.setString(3, patient.getFamilyName());
+            statement.setDate(4, Date.valueOf(patient.getBirthDate()));
+            statement.setString(5, patient.getGender());
+        });
+        return named.query("select id, identifier, given_name, family_name from patients "
+                        + "where identifier in (:identifiers) and deleted_at is null",
+                Map.of("identifiers", identifiers), (rs, rowNum) -> new Upserted(rs.getLong("id"), rs.getString("identifier"),
+                        rs.getString("given_name"), rs.getString("family_name"), !existing.contains(rs.getString("identifier"))));
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class));
+        }
+        return postgres;
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
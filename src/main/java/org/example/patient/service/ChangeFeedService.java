@@ -0,0 +1,270 @@
+package org.example.patient.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.patient.entity.ChangeEvent;
+import org.example.patient.exceptions.CursorExpiredException;
+import org.example.patient.models.ChangeEventDTO;
+import org.example.patient.models.ChangeFeed;
+import org.example.patient.repository.ChangeEventRepo;
+import org.example.patient.repository.ChangeFeedRepo.Position;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Change-data feed over the {@code change_events} outbox. The patient, encounter and observation services
+ * record every create, update and delete here inside their own transaction, so an event exists exactly when
+ * its change committed. Consumers page through the feed with the id of the last event they processed, or
+ * wait for the next change by long poll or server-sent events. A commit that recorded events wakes this
+ * instance's waiters; they also re-read every second, which picks up writes made through other instances and
+ * events that were held back behind a transaction still running.
+ */
+@Service
+public class ChangeFeedService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeedService.class);
+
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final Duration MAX_WAIT = Duration.ofSeconds(60);
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+    private static final int RETENTION_BATCH = 10_000;
+
+    /** Receives each non-empty page of a stream, and an empty one after 15 idle seconds. */
+    public interface ChangeListener {
+        void onChanges(ChangeFeed feed) throws IOException;
+    }
+
+    @Autowired
+    private ChangeEventRepo changeEventRepository;
+
+    @Value("${app.changes.retention:P7D}")
+    private Duration retention;
+
+    @Value("${app.changes.max-waiters:100}")
+    private int maxWaiters;
+
+    private final Object commits = new Object();
+    // guarded by commits
+    private long commitCount;
+    private Semaphore waiters;
+    private volatile boolean running = true;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService retentionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "change-feed-retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void start() {
+        waiters = new Semaphore(maxWaiters);
+        retentionExecutor.scheduleWithFixedDelay(this::deleteExpired, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        executor.shutdownNow();
+        retentionExecutor.shutdownNow();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(ChangeEvent.ResourceType resourceType, ChangeEvent.Operation operation, Long resourceId) {
+        record(resourceType, operation, List.of(resourceId));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(ChangeEvent.ResourceType resourceType, ChangeEvent.Operation operation, Collection<Long> resourceIds) {
+        if (resourceIds.isEmpty()) {
+            return;
+        }
+        changeEventRepository.record(resourceType, operation, resourceIds);
+        wakeWaitersAfterCommit();
+    }
+
+    // covers the encounters and observations removed with the patient
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordPatientDelete(Long patientId) {
+        recordChildDeletes(patientId);
+        record(ChangeEvent.ResourceType.PATIENT, ChangeEvent.Operation.DELETE, patientId);
+    }
+
+    // the encounters and observations the patient still has, which go with it
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordChildDeletes(Long patientId) {
+        changeEventRepository.recordObservationDeletesByPatientId(patientId);
+        changeEventRepository.recordEncounterDeletesByPatientId(patientId);
+        wakeWaitersAfterCommit();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordEncounterDelete(Long encounterId) {
+        changeEventRepository.recordObservationDeletesByEncounterId(encounterId);
+        record(ChangeEvent.ResourceType.ENCOUNTER, ChangeEvent.Operation.DELETE, encounterId);
+    }
+
+    public ChangeFeed getChanges(Long since, int limit) {
+        Position position = position(since);
+        return toFeed(since, changeEventRepository.findAfter(position, clamp(limit) + 1), clamp(limit));
+    }
+
+    /**
+     * Long poll: completes as soon as there are changes after the cursor, or with an empty page once the wait
+     * is over. Empty when the limit on concurrent waiters is reached.
+     */
+    public Optional<CompletableFuture<ChangeFeed>> awaitChanges(Long since, int limit, Duration wait) {
+        Position position = position(since);
+        if (!waiters.tryAcquire()) {
+            return Optional.empty();
+        }
+        long deadline = System.nanoTime() + Math.min(wait.toNanos(), MAX_WAIT.toNanos());
+        try {
+            return Optional.of(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return toFeed(since, await(position, clamp(limit) + 1, deadline), clamp(limit));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                } finally {
+                    waiters.release();
+                }
+            }, executor));
+        } catch (RuntimeException e) {
+            waiters.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Pushes every page after the cursor to the listener until the listener fails (the client went away) or
+     * the returned future is cancelled. Empty when the limit on concurrent waiters is reached.
+     */
+    public Optional<Future<?>> stream(Long since, ChangeListener listener) {
+        Position start = position(since);
+        if (!waiters.tryAcquire()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(executor.submit(() -> {
+                Position position = start;
+                Long cursor = since;
+                try {
+                    while (running) {
+                        List<ChangeEventDTO> changes = await(position, MAX_PAGE_SIZE + 1, System.nanoTime() + HEARTBEAT_NANOS);
+                        ChangeFeed feed = toFeed(cursor, changes, MAX_PAGE_SIZE);
+                        listener.onChanges(feed);
+                        if (!feed.getChanges().isEmpty()) {
+                            ChangeEventDTO last = feed.getChanges().get(feed.getChanges().size() - 1);
+                            position = new Position(last.getTxid(), last.getId());
+                            cursor = last.getId();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    log.debug("Change stream closed", e);
+                } finally {
+                    waiters.release();
+                }
+            }));
+        } catch (RuntimeException e) {
+            waiters.release();
+            throw e;
+        }
+    }
+
+    private List<ChangeEventDTO> await(Position position, int limit, long deadline) throws InterruptedException {
+        while (true) {
+            long seen;
+            synchronized (commits) {
+                seen = commitCount;
+            }
+            List<ChangeEventDTO> changes = changeEventRepository.findAfter(position, limit);
+            long remaining = deadline - System.nanoTime();
+            if (!changes.isEmpty() || remaining <= 0 || !running) {
+                return changes;
+            }
+            long waitNanos = Math.min(remaining, POLL_INTERVAL_NANOS);
+            synchronized (commits) {
+                if (commitCount == seen) {
+                    TimeUnit.NANOSECONDS.timedWait(commits, waitNanos);
+                }
+            }
+        }
+    }
+
+    private void wakeWaitersAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                synchronized (commits) {
+                    commitCount++;
+                    commits.notifyAll();
+                }
+            }
+        });
+    }
+
+    // no cursor (or 0) starts at the oldest event still kept
+    private Position position(Long since) {
+        if (since == null || since == 0) {
+            return Position.START;
+        }
+        return changeEventRepository.findPosition(since)
+                .orElseThrow(() -> new CursorExpiredException(
+                        "Gone - Change " + since + " is no longer in the feed, reload the resources and read the feed from the start"));
+    }
+
+    private static ChangeFeed toFeed(Long since, List<ChangeEventDTO> rows, int pageSize) {
+        boolean hasMore = rows.size() > pageSize;
+        List<ChangeEventDTO> changes = hasMore ? rows.subList(0, pageSize) : rows;
+        Long cursor = changes.isEmpty() ? (since == null ? 0L : since) : changes.get(changes.size() - 1).getId();
+        return new ChangeFeed(changes, cursor, hasMore);
+    }
+
+    private static int clamp(int limit) {
+        return Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+    }
+
+    void deleteExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        try {
+            int deleted;
+            do {
+                deleted = changeEventRepository.deleteOccurredBefore(cutoff, RETENTION_BATCH);
+            } while (deleted == RETENTION_BATCH && running);
+        } catch (RuntimeException e) {
+            log.warn("Could not delete expired change events", e);
+        }
+    }
+}
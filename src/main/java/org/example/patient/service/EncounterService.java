@@ -1,19 +1,31 @@
 package org.example.patient.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.example.patient.entity.ChangeEvent;
 import org.example.patient.entity.Encounter;
 import org.example.patient.entity.Patient;
+import org.example.patient.exceptions.PreconditionFailedException;
+import org.example.patient.models.CursorPage;
 import org.example.patient.models.EncounterDTO;
+import org.example.patient.models.EncounterExportRow;
+import org.example.patient.models.ResourceVersion;
 import org.example.patient.repository.EncounterRepo;
+import org.example.patient.repository.ObservationRepo;
 import org.example.patient.repository.PatientRepo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "app.service", histogram = true)
 @Transactional
 public class EncounterService {
 
@@ -23,6 +35,18 @@ public class EncounterService {
     @Autowired
     private PatientRepo patientRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ChangeFeedService changeFeed;
+
+    @Autowired
+    private ObservationRepo observationRepository;
+
+    @Autowired
+    private RecentVitalsCache recentVitals;
+
 
     public Optional<EncounterDTO> createEncounter(EncounterDTO encounterDTO) {
         Optional<Patient> patientOpt = patientRepository.findById(encounterDTO.getPatientId());
@@ -33,31 +57,75 @@ public class EncounterService {
 
         Encounter encounter = convertToEntity(encounterDTO, patientOpt.get());
         Encounter savedEncounter = encounterRepository.save(encounter);
+        changeFeed.record(ChangeEvent.ResourceType.ENCOUNTER, ChangeEvent.Operation.CREATE, savedEncounter.getId());
         return Optional.of(convertToDTO(savedEncounter));
     }
 
 
+    @Transactional(readOnly = true)
     public Optional<EncounterDTO> getEncounterById(Long id) {
         return encounterRepository.findById(id)
                 .map(this::convertToDTO);
     }
 
+    @Transactional(readOnly = true)
     public List<EncounterDTO> getAllEncounters() {
-        return encounterRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return encounterRepository.findAllDtos();
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<EncounterDTO> getEncountersPage(Long after, int size) {
+        int pageSize = CursorPage.clampSize(size);
+        List<Encounter> encounters = encounterRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, Limit.of(pageSize + 1));
+        return CursorPage.of(encounters, pageSize, Encounter::getId, this::convertToDTO);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<EncounterDTO> getPatientEncountersPage(Long patientId, Long after, int size) {
+        int pageSize = CursorPage.clampSize(size);
+        List<Encounter> encounters = encounterRepository.findByPatientIdAndIdGreaterThanOrderByIdAsc(
+                patientId, after == null ? 0L : after, Limit.of(pageSize + 1));
+        return CursorPage.of(encounters, pageSize, Encounter::getId, this::convertToDTO);
     }
 
+    @Transactional(readOnly = true)
+    public void streamAllEncounters(Consumer<EncounterDTO> consumer) {
+        try (Stream<Encounter> encounters = encounterRepository.streamAllByOrderByIdAsc()) {
+            encounters.forEach(encounter -> {
+                consumer.accept(convertToDTO(encounter));
+                entityManager.detach(encounter);
+            });
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void streamExportRows(Consumer<EncounterExportRow> consumer) {
+        try (Stream<EncounterExportRow> rows = encounterRepository.streamExportRows()) {
+            rows.forEach(consumer);
+        }
+    }
+
+    @Transactional(readOnly = true)
     public List<EncounterDTO> getEncountersByPatientId(Long patientId) {
-        return encounterRepository.findByPatientId(patientId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return encounterRepository.findDtosByPatientId(patientId);
     }
 
 
+    public Optional<ResourceVersion> getEncounterVersion(Long id) {
+        return encounterRepository.findVersionById(id);
+    }
+
     public Optional<EncounterDTO> updateEncounter(Long id, EncounterDTO encounterDTO) {
+        return updateEncounter(id, encounterDTO, null);
+    }
+
+    public Optional<EncounterDTO> updateEncounter(Long id, EncounterDTO encounterDTO, Long expectedVersion) {
         return encounterRepository.findById(id)
                 .flatMap(encounter -> {
+                    if (expectedVersion != null && !expectedVersion.equals(encounter.getVersion())) {
+                        throw new PreconditionFailedException("Precondition failed - Encounter has been modified");
+                    }
                     encounter.setStartDate(encounterDTO.getStartDate());
                     encounter.setEndDate(encounterDTO.getEndDate());
                     encounter.setEncounterClass(
@@ -72,13 +140,16 @@ public class EncounterService {
                         encounter.setPatient(newPatient.get());
                     }
 
-                    Encounter updatedEncounter = encounterRepository.save(encounter);
+                    Encounter updatedEncounter = encounterRepository.saveAndFlush(encounter);
+                    changeFeed.record(ChangeEvent.ResourceType.ENCOUNTER, ChangeEvent.Operation.UPDATE, id);
                     return Optional.of(convertToDTO(updatedEncounter));
                 });
     }
 
     public boolean deleteEncounter(Long id) {
         if (encounterRepository.existsById(id)) {
+            changeFeed.recordEncounterDelete(id);
+            recentVitals.invalidateAfterCommit(observationRepository.findPatientIdsByEncounterId(id));
             encounterRepository.deleteById(id);
             return true;
         }
@@ -90,7 +161,9 @@ public class EncounterService {
                 encounter.getPatient().getId(),
                 encounter.getStartDate(),
                 encounter.getEndDate(),
-                encounter.getEncounterClass().name()
+                encounter.getEncounterClass().name(),
+                encounter.getVersion(),
+                encounter.getLastModified()
         );
     }
 
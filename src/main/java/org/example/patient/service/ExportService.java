@@ -0,0 +1,360 @@
+package org.example.patient.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.models.EncounterExportRow;
+import org.example.patient.models.ExportStatus;
+import org.example.patient.models.ObservationExportRow;
+import org.example.patient.models.PatientExportRow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Asynchronous bulk export in the spirit of FHIR {@code $export}. Each resource type is read through a
+ * server-side cursor and written row by row into a gzip-compressed NDJSON or CSV file under
+ * {@code app.export.directory}, so heap use does not depend on table size. Jobs run one at a time and
+ * their state lives in memory only. A finished job and its files are removed {@code app.export.retention}
+ * after it finished; so are the files of jobs that a restart forgot.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportService.class);
+
+    public enum Format { NDJSON, CSV }
+
+    public enum ResourceType { PATIENTS, ENCOUNTERS, OBSERVATIONS }
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private EncounterService encounterService;
+
+    @Autowired
+    private ObservationService observationService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.export.directory:${java.io.tmpdir}/patient-exports}")
+    private Path directory;
+
+    @Value("${app.export.retention:PT24H}")
+    private Duration retention;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "export");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService retentionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "export-retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void start() {
+        retentionExecutor.scheduleWithFixedDelay(this::deleteExpired, 1, 10, TimeUnit.MINUTES);
+    }
+
+    public ExportStatus start(Set<ResourceType> types, Format format) {
+        Job job = new Job(UUID.randomUUID().toString(), format, types);
+        jobs.put(job.id, job);
+        job.future = executor.submit(() -> run(job));
+        return job.toStatus();
+    }
+
+    public Optional<ExportStatus> getStatus(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::toStatus);
+    }
+
+    // empty when the job is unknown or the file is not complete yet
+    public Optional<Path> getFile(String id, ResourceType type) {
+        return Optional.ofNullable(jobs.get(id))
+                .map(job -> job.files.get(type))
+                .filter(file -> file.status == Status.COMPLETED)
+                .map(file -> file.path);
+    }
+
+    public boolean delete(String id) {
+        Job job = jobs.remove(id);
+        if (job == null) {
+            return false;
+        }
+        job.cancelled = true;
+        if (job.future != null) {
+            job.future.cancel(false);
+        }
+        if (job.status != Status.RUNNING) {
+            deleteFiles(job.id);
+        }
+        return true;
+    }
+
+    public static Set<ResourceType> parseTypes(Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return EnumSet.allOf(ResourceType.class);
+        }
+        Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+        for (String name : names) {
+            types.add(parse(ResourceType.class, name, "patients, encounters or observations"));
+        }
+        return types;
+    }
+
+    public static Format parseFormat(String name) {
+        return name == null ? Format.NDJSON : parse(Format.class, name, "ndjson or csv");
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name, String expected) {
+        try {
+            return Enum.valueOf(type, name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown value: " + name + " (expected " + expected + ")");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        retentionExecutor.shutdownNow();
+    }
+
+    void deleteExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        for (Job job : jobs.values()) {
+            if (job.completedAt != null && job.completedAt.isBefore(cutoff) && jobs.remove(job.id, job)) {
+                deleteFiles(job.id);
+            }
+        }
+        // directories of jobs from before a restart
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.filter(entry -> !jobs.containsKey(entry.getFileName().toString()))
+                    .filter(entry -> modifiedBefore(entry, cutoff))
+                    .forEach(entry -> deleteFiles(entry.getFileName().toString()));
+        } catch (IOException e) {
+            log.warn("Could not list expired exports", e);
+        }
+    }
+
+    private static boolean modifiedBefore(Path entry, LocalDateTime cutoff) {
+        try {
+            return LocalDateTime.ofInstant(Files.getLastModifiedTime(entry).toInstant(), ZoneId.systemDefault()).isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void run(Job job) {
+        job.status = Status.RUNNING;
+        try {
+            Files.createDirectories(directory.resolve(job.id));
+            for (FileState file : job.files.values()) {
+                export(job, file);
+            }
+            job.status = Status.COMPLETED;
+        } catch (CancellationException e) {
+            job.status = Status.CANCELLED;
+        } catch (Exception e) {
+            log.error("Export {} failed", job.id, e);
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+        } finally {
+            job.completedAt = LocalDateTime.now();
+            if (job.cancelled) {
+                deleteFiles(job.id);
+            }
+        }
+    }
+
+    private void export(Job job, FileState file) throws IOException {
+        file.status = Status.RUNNING;
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file.path)), 64 * 1024);
+             RowWriter writer = job.format == Format.CSV ? csvWriter(out, file.type) : ndjsonWriter(out)) {
+            Consumer<Object> sink = row -> {
+                if (job.cancelled) {
+                    throw new CancellationException();
+                }
+                writer.write(row);
+                file.rows.incrementAndGet();
+            };
+            switch (file.type) {
+                case PATIENTS -> patientService.streamExportRows(sink::accept);
+                case ENCOUNTERS -> encounterService.streamExportRows(sink::accept);
+                case OBSERVATIONS -> observationService.streamExportRows(sink::accept);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.status = job.cancelled ? Status.CANCELLED : Status.FAILED;
+            throw e;
+        }
+        file.status = Status.COMPLETED;
+    }
+
+    private RowWriter ndjsonWriter(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(null);
+        return new RowWriter() {
+            @Override
+            void writeRow(Object row) throws IOException {
+                generator.writeObject(row);
+                generator.writeRaw('\n');
+            }
+
+            @Override
+            public void close() throws IOException {
+                generator.close();
+            }
+        };
+    }
+
+    private static RowWriter csvWriter(OutputStream out, ResourceType type) throws IOException {
+        Class<?> rowType = switch (type) {
+            case PATIENTS -> PatientExportRow.class;
+            case ENCOUNTERS -> EncounterExportRow.class;
+            case OBSERVATIONS -> ObservationExportRow.class;
+        };
+        SequenceWriter sequence = CSV_MAPPER.writer(CSV_MAPPER.schemaFor(rowType).withHeader()).writeValues(out);
+        return new RowWriter() {
+            @Override
+            void writeRow(Object row) throws IOException {
+                sequence.write(row);
+            }
+
+            @Override
+            public void close() throws IOException {
+                sequence.close();
+            }
+        };
+    }
+
+    private void deleteFiles(String id) {
+        try {
+            FileSystemUtils.deleteRecursively(directory.resolve(id));
+        } catch (IOException e) {
+            log.warn("Could not delete export {}", id, e);
+        }
+    }
+
+    private abstract static class RowWriter implements AutoCloseable {
+        abstract void writeRow(Object row) throws IOException;
+
+        void write(Object row) {
+            try {
+                writeRow(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public abstract void close() throws IOException;
+    }
+
+    private final class Job {
+        final String id;
+        final Format format;
+        final LocalDateTime requestedAt = LocalDateTime.now();
+        final Map<ResourceType, FileState> files = new LinkedHashMap<>();
+        volatile Status status = Status.QUEUED;
+        volatile LocalDateTime completedAt;
+        volatile String error;
+        volatile boolean cancelled;
+        volatile Future<?> future;
+
+        Job(String id, Format format, Set<ResourceType> types) {
+            this.id = id;
+            this.format = format;
+            String extension = format == Format.CSV ? ".csv.gz" : ".ndjson.gz";
+            for (ResourceType type : EnumSet.copyOf(types)) {
+                String name = type.name().toLowerCase(Locale.ROOT);
+                files.put(type, new FileState(type, directory.resolve(id).resolve(name + extension)));
+            }
+        }
+
+        ExportStatus toStatus() {
+            List<ExportStatus.File> fileStatuses = new ArrayList<>();
+            for (FileState file : files.values()) {
+                String name = file.type.name().toLowerCase(Locale.ROOT);
+                fileStatuses.add(new ExportStatus.File(name, file.status.name(), file.rows.get(), file.size(),
+                        file.status == Status.COMPLETED ? "/api/export/" + id + "/files/" + name : null));
+            }
+            return new ExportStatus(id, status.name(), format.name().toLowerCase(Locale.ROOT),
+                    requestedAt, completedAt, error, fileStatuses);
+        }
+    }
+
+    private static final class FileState {
+        final ResourceType type;
+        final Path path;
+        final AtomicLong rows = new AtomicLong();
+        volatile Status status = Status.QUEUED;
+
+        FileState(ResourceType type, Path path) {
+            this.type = type;
+            this.path = path;
+        }
+
+        long size() {
+            try {
+                return Files.exists(path) ? Files.size(path) : 0;
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+}
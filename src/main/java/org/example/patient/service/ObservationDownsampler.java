@@ -0,0 +1,61 @@
+package org.example.patient.service;
+
+import org.example.patient.models.ObservationBucket;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds a time-ordered series into fixed buckets aligned to the start of the requested range, so only
+ * the bucket being filled is held in memory. Buckets without samples are left out.
+ */
+final class ObservationDownsampler {
+
+    private final LocalDateTime from;
+    private final long intervalMillis;
+    private final List<ObservationBucket> buckets = new ArrayList<>();
+
+    private long bucket = -1;
+    private long count;
+    private double min;
+    private double max;
+    private double sum;
+    private double last;
+
+    ObservationDownsampler(LocalDateTime from, Duration interval) {
+        this.from = from;
+        this.intervalMillis = interval.toMillis();
+    }
+
+    void add(LocalDateTime time, double value) {
+        long index = ChronoUnit.MILLIS.between(from, time) / intervalMillis;
+        if (index != bucket) {
+            flush();
+            bucket = index;
+            min = value;
+            max = value;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        last = value;
+    }
+
+    List<ObservationBucket> buckets() {
+        flush();
+        return buckets;
+    }
+
+    private void flush() {
+        if (count > 0) {
+            buckets.add(new ObservationBucket(from.plus(bucket * intervalMillis, ChronoUnit.MILLIS),
+                    count, min, max, sum / count, last));
+        }
+        count = 0;
+        sum = 0;
+    }
+}
@@ -0,0 +1,278 @@
+package org.example.patient.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.patient.entity.IngestSubmission;
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.models.BatchItemResult;
+import org.example.patient.models.IngestStatus;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.repository.IngestSubmissionRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind observation ingestion. A submission is acknowledged once it is appended to a
+ * {@link WriteAheadLog} under {@code app.ingest.directory}; no transaction or connection is held for it.
+ * A single writer drains the log in batches, each in one transaction that also records every submission's
+ * outcome, and checkpoints the log after the commit. Submissions still in the log after a restart are
+ * replayed, and those whose outcome was already committed are skipped. Appends are refused once the
+ * undrained backlog exceeds {@code app.ingest.max-backlog}.
+ */
+@Service
+public class ObservationIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(ObservationIngestService.class);
+
+    // log bytes drained per transaction, roughly 5000 observations
+    static final int BATCH_BYTES = 1024 * 1024;
+    private static final int MAX_TEXT = 4000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    @Autowired
+    private ObservationService observationService;
+
+    @Autowired
+    private IngestSubmissionRepo submissionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // submissions are confirmed once they are in here, so it must outlive a reboot, unlike the temp directory
+    @Value("${app.ingest.directory:data/observation-ingest}")
+    private Path directory;
+
+    @Value("${app.ingest.segment-size:67108864}")
+    private int segmentSize;
+
+    @Value("${app.ingest.max-backlog:268435456}")
+    private long maxBacklog;
+
+    private WriteAheadLog writeAheadLog;
+    private final Map<String, IngestStatus> queued = new ConcurrentHashMap<>();
+    private final Semaphore appended = new Semaphore(0);
+    private volatile boolean running = true;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "observation-ingest");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void open() throws IOException {
+        log.info("Observation ingest log in {}", directory.toAbsolutePath());
+        writeAheadLog = new WriteAheadLog(directory, segmentSize);
+        List<WriteAheadLog.Entry> entries = writeAheadLog.open();
+        for (WriteAheadLog.Entry entry : entries) {
+            Submission submission = parse(entry);
+            queued.put(submission.id, queuedStatus(submission));
+        }
+        if (!entries.isEmpty()) {
+            log.info("Replaying {} observation submission(s) from the ingest log", entries.size());
+        }
+        executor.submit(this::drain);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        executor.shutdownNow();
+    }
+
+    // empty when the backlog is full and the caller should retry later
+    public Optional<IngestStatus> submit(List<ObservationDTO> observations) throws IOException {
+        if (writeAheadLog.backlog() >= maxBacklog) {
+            return Optional.empty();
+        }
+        Submission submission = new Submission(UUID.randomUUID().toString(), LocalDateTime.now(), observations);
+        IngestStatus status = queuedStatus(submission);
+        queued.put(submission.id, status);
+        try {
+            writeAheadLog.append(objectMapper.writeValueAsBytes(submission));
+        } catch (IllegalArgumentException e) {
+            queued.remove(submission.id);
+            throw new BadRequestException("Submission is too large: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            queued.remove(submission.id);
+            throw e;
+        }
+        appended.release();
+        return Optional.of(status);
+    }
+
+    public Optional<IngestStatus> getStatus(String id) {
+        IngestStatus status = queued.get(id);
+        if (status != null) {
+            return Optional.of(status);
+        }
+        return submissionRepository.findById(id).map(this::toStatus);
+    }
+
+    private void drain() {
+        long position = writeAheadLog.checkpointPosition();
+        long backoff = 100;
+        while (running) {
+            try {
+                List<WriteAheadLog.Entry> entries = writeAheadLog.read(position, BATCH_BYTES);
+                if (entries.isEmpty()) {
+                    appended.tryAcquire(1, TimeUnit.SECONDS);
+                    continue;
+                }
+                List<Submission> submissions = entries.stream().map(this::parse).toList();
+                try {
+                    write(submissions);
+                } catch (DataIntegrityViolationException e) {
+                    // one bad submission must not block the others behind it
+                    for (Submission submission : submissions) {
+                        writeOrFail(submission);
+                    }
+                }
+                position = entries.get(entries.size() - 1).end;
+                writeAheadLog.checkpoint(position);
+                submissions.forEach(submission -> queued.remove(submission.id));
+                appended.drainPermits();
+                backoff = 100;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // the database is unavailable: keep the batch in the log and retry it
+                log.warn("Observation ingest batch failed, retrying in {} ms", backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void writeOrFail(Submission submission) {
+        try {
+            write(List.of(submission));
+        } catch (DataIntegrityViolationException e) {
+            log.error("Observation submission {} failed", submission.id, e);
+            String error = String.valueOf(e.getMostSpecificCause().getMessage());
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                if (!submissionRepository.existsById(submission.id)) {
+                    entityManager.persist(new IngestSubmission(submission.id, IngestSubmission.Status.FAILED,
+                            submission.observations.size(), 0, 0, null,
+                            error.length() <= MAX_TEXT ? error : error.substring(0, MAX_TEXT),
+                            submission.receivedAt, LocalDateTime.now()));
+                }
+            });
+        }
+    }
+
+    // all observations of the batch go through one createObservations call; results are split back per submission
+    private void write(List<Submission> submissions) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Set<String> done = submissionRepository.findExistingIds(submissions.stream().map(s -> s.id).toList());
+            List<Submission> pending = submissions.stream().filter(s -> !done.contains(s.id)).toList();
+            List<ObservationDTO> observations = new ArrayList<>();
+            pending.forEach(submission -> observations.addAll(submission.observations));
+            List<BatchItemResult> results = observations.isEmpty()
+                    ? List.of()
+                    : observationService.createObservations(observations);
+
+            LocalDateTime completedAt = LocalDateTime.now();
+            int offset = 0;
+            for (Submission submission : pending) {
+                int size = submission.observations.size();
+                List<BatchItemResult> rejections = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    BatchItemResult result = results.get(offset + i);
+                    if (result.getStatus() != 201) {
+                        rejections.add(new BatchItemResult(i, result.getStatus(), result.getMessage()));
+                    }
+                }
+                offset += size;
+                entityManager.persist(new IngestSubmission(submission.id, IngestSubmission.Status.COMPLETED, size,
+                        size - rejections.size(), rejections.size(), rejections.isEmpty() ? null : toJson(rejections),
+                        null, submission.receivedAt, completedAt));
+            }
+        });
+    }
+
+    private Submission parse(WriteAheadLog.Entry entry) {
+        try {
+            return objectMapper.readValue(entry.payload, Submission.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable record in the observation ingest log", e);
+        }
+    }
+
+    private String toJson(List<BatchItemResult> rejections) {
+        try {
+            return objectMapper.writeValueAsString(rejections);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private IngestStatus queuedStatus(Submission submission) {
+        return new IngestStatus(submission.id, "QUEUED", submission.observations.size(), 0, 0, null,
+                submission.receivedAt, null, null);
+    }
+
+    private IngestStatus toStatus(IngestSubmission submission) {
+        List<BatchItemResult> rejections = List.of();
+        if (submission.getRejections() != null) {
+            try {
+                rejections = objectMapper.readValue(submission.getRejections(), new TypeReference<>() {
+                });
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return new IngestStatus(submission.getId(), submission.getStatus().name(), submission.getObservationCount(),
+                submission.getCreatedCount(), submission.getRejectedCount(), submission.getError(),
+                submission.getReceivedAt(), submission.getCompletedAt(), rejections);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Submission {
+        private String id;
+        private LocalDateTime receivedAt;
+        private List<ObservationDTO> observations;
+    }
+}
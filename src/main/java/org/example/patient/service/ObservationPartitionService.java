@@ -0,0 +1,110 @@
+package org.example.patient.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.patient.repository.ObservationPartitionRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the monthly partitions of {@code observations} in step with the clock: at startup and every hour it
+ * creates the partitions of the coming months and, when a retention is configured, takes the months that
+ * ended before it out of the table. Does nothing unless the table is partitioned (PostgreSQL after V10).
+ */
+@Service
+public class ObservationPartitionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ObservationPartitionService.class);
+
+    public enum ExpiredPartitions { DETACH, DROP }
+
+    @Autowired
+    private ObservationPartitionRepo partitionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.observations.partitions-ahead:3}")
+    private int partitionsAhead;
+
+    // null keeps every month
+    @Value("${app.observations.retention:}")
+    private Period retention;
+
+    @Value("${app.observations.expired-partitions:DETACH}")
+    private ExpiredPartitions expiredPartitions;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "observation-partitions");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void start() {
+        executor.scheduleWithFixedDelay(this::maintainQuietly, 0, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs one round of maintenance and returns false when the table is not partitioned or another instance
+     * holds the maintenance lock.
+     */
+    public boolean maintain() {
+        return Boolean.TRUE.equals(new TransactionTemplate(transactionManager).execute(status -> {
+            if (!partitionRepository.isPartitioned() || !partitionRepository.tryLock()) {
+                return false;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            List<YearMonth> months = partitionRepository.findMonths();
+            YearMonth current = YearMonth.from(now);
+            for (YearMonth month = current; !month.isAfter(current.plusMonths(partitionsAhead)); month = month.plusMonths(1)) {
+                if (!months.contains(month)) {
+                    partitionRepository.createPartition(month);
+                    log.info("Created observations partition for {}", month);
+                }
+            }
+            if (retention != null) {
+                LocalDateTime cutoff = now.minus(retention);
+                for (YearMonth month : months) {
+                    // a month goes once all of it is older than the retention
+                    if (month.plusMonths(1).atDay(1).atStartOfDay().isAfter(cutoff)) {
+                        break;
+                    }
+                    if (expiredPartitions == ExpiredPartitions.DROP) {
+                        partitionRepository.dropPartition(month);
+                        log.info("Dropped observations partition for {}", month);
+                    } else {
+                        log.info("Detached observations partition for {} as {}", month, partitionRepository.archivePartition(month));
+                    }
+                }
+            }
+            return true;
+        }));
+    }
+
+    private void maintainQuietly() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            log.warn("Could not maintain observations partitions", e);
+        }
+    }
+}
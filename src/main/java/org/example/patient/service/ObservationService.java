@@ -1,24 +1,53 @@
 package org.example.patient.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.example.patient.entity.ChangeEvent;
 import org.example.patient.entity.Encounter;
 import org.example.patient.entity.Observation;
 import org.example.patient.entity.Patient;
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.models.BatchItemResult;
+import org.example.patient.models.CursorPage;
+import org.example.patient.models.ObservationBucket;
 import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.ObservationExportRow;
+import org.example.patient.models.ObservationStats;
+import org.example.patient.models.RecentVitals;
 import org.example.patient.repository.EncounterRepo;
 import org.example.patient.repository.ObservationRepo;
 import org.example.patient.repository.PatientRepo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "app.service", histogram = true)
 @Transactional
 public class ObservationService {
 
+    public static final int MAX_BATCH_SIZE = 10_000;
+
+    public static final int MAX_BUCKETS = 10_000;
+
+    private static final int FLUSH_SIZE = 500;
+
     @Autowired
     private ObservationRepo observationRepository;
 
@@ -28,6 +57,18 @@ public class ObservationService {
     @Autowired
     private EncounterRepo encounterRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ChangeFeedService changeFeed;
+
+    @Autowired
+    private RecentVitalsCache recentVitals;
+
 
     public Optional<ObservationDTO> createObservation(ObservationDTO observationDTO) {
         Optional<Patient> patientOpt = patientRepository.findById(observationDTO.getPatientId());
@@ -46,43 +87,205 @@ public class ObservationService {
         }
 
         observation.setCode(observationDTO.getCode());
-        observation.setValue(observationDTO.getValue());
+        ObservationValues.setValue(observation, observationDTO.getValue());
         observation.setEffectiveDateTime(observationDTO.getEffectiveDateTime());
 
         Observation savedObservation = observationRepository.save(observation);
+        changeFeed.record(ChangeEvent.ResourceType.OBSERVATION, ChangeEvent.Operation.CREATE, savedObservation.getId());
+        recentVitals.addAfterCommit(List.of(savedObservation));
         return Optional.of(convertToDTO(savedObservation));
     }
 
 
+    public List<BatchItemResult> createObservations(List<ObservationDTO> observationDTOs) {
+        Set<Long> patientIdsToCheck = observationDTOs.stream()
+                .filter(Objects::nonNull)
+                .map(ObservationDTO::getPatientId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<Long> patientIds = patientIdsToCheck.isEmpty()
+                ? Set.of()
+                : patientRepository.findExistingIds(patientIdsToCheck);
+        Set<Long> encounterIdsToCheck = observationDTOs.stream()
+                .filter(Objects::nonNull)
+                .map(ObservationDTO::getEncounterId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<Long> encounterIds = encounterIdsToCheck.isEmpty()
+                ? Set.of()
+                : encounterRepository.findExistingIds(encounterIdsToCheck);
+
+        List<BatchItemResult> results = new ArrayList<>(observationDTOs.size());
+        List<Observation> created = new ArrayList<>();
+        int pending = 0;
+        for (int i = 0; i < observationDTOs.size(); i++) {
+            ObservationDTO observationDTO = observationDTOs.get(i);
+            if (observationDTO == null) {
+                results.add(BatchItemResult.badRequest(i, "Observation is required"));
+                continue;
+            }
+
+            Set<ConstraintViolation<ObservationDTO>> violations = validator.validate(observationDTO);
+            if (!violations.isEmpty()) {
+                results.add(BatchItemResult.badRequest(i, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", "))));
+                continue;
+            }
+            if (!patientIds.contains(observationDTO.getPatientId())) {
+                results.add(BatchItemResult.notFound(i, "Patient not found"));
+                continue;
+            }
+            if (observationDTO.getEncounterId() != null && !encounterIds.contains(observationDTO.getEncounterId())) {
+                results.add(BatchItemResult.notFound(i, "Encounter not found"));
+                continue;
+            }
+
+            Observation observation = new Observation();
+            observation.setPatient(patientRepository.getReferenceById(observationDTO.getPatientId()));
+            if (observationDTO.getEncounterId() != null) {
+                observation.setEncounter(encounterRepository.getReferenceById(observationDTO.getEncounterId()));
+            }
+            observation.setCode(observationDTO.getCode());
+            ObservationValues.setValue(observation, observationDTO.getValue());
+            observation.setEffectiveDateTime(observationDTO.getEffectiveDateTime());
+            entityManager.persist(observation);
+            created.add(observation);
+            results.add(BatchItemResult.created(i));
+
+            if (++pending % FLUSH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        changeFeed.record(ChangeEvent.ResourceType.OBSERVATION, ChangeEvent.Operation.CREATE,
+                created.stream().map(Observation::getId).toList());
+        recentVitals.addAfterCommit(created);
+        return results;
+    }
+
+
+    @Transactional(readOnly = true)
     public Optional<ObservationDTO> getObservationById(Long id) {
         return observationRepository.findById(id)
                 .map(this::convertToDTO);
     }
 
+    @Transactional(readOnly = true)
     public List<ObservationDTO> getAllObservations() {
-        return observationRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return observationRepository.findAllDtos();
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<ObservationDTO> getObservationsPage(Long after, int size) {
+        int pageSize = CursorPage.clampSize(size);
+        List<Observation> observations = observationRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, Limit.of(pageSize + 1));
+        return CursorPage.of(observations, pageSize, Observation::getId, this::convertToDTO);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<ObservationDTO> getPatientObservationsPage(Long patientId, Long after, int size) {
+        int pageSize = CursorPage.clampSize(size);
+        List<Observation> observations = observationRepository.findByPatientIdAndIdGreaterThanOrderByIdAsc(
+                patientId, after == null ? 0L : after, Limit.of(pageSize + 1));
+        return CursorPage.of(observations, pageSize, Observation::getId, this::convertToDTO);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllObservations(Consumer<ObservationDTO> consumer) {
+        try (Stream<Observation> observations = observationRepository.streamAllByOrderByIdAsc()) {
+            observations.forEach(observation -> {
+                consumer.accept(convertToDTO(observation));
+                entityManager.detach(observation);
+            });
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void streamExportRows(Consumer<ObservationExportRow> consumer) {
+        try (Stream<ObservationExportRow> rows = observationRepository.streamExportRows()) {
+            rows.forEach(consumer);
+        }
     }
 
+    @Transactional(readOnly = true)
     public List<ObservationDTO> getObservationsByPatientId(Long patientId) {
-        return observationRepository.findByPatientId(patientId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return observationRepository.findDtosByPatientId(patientId);
+    }
+
+    // served from memory once the patient is held, so no transaction is started for it
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<RecentVitals> getRecentVitals(Long patientId, String code, Duration within) {
+        if (within == null) {
+            return recentVitals.getRecent(patientId, code, recentVitals.getWindow());
+        }
+        if (within.isNegative() || within.isZero()) {
+            throw new BadRequestException("within must be positive");
+        }
+        return recentVitals.getRecent(patientId, code, within);
     }
 
+    @Transactional(readOnly = true)
     public List<ObservationDTO> getObservationsByEncounterId(Long encounterId) {
-        return observationRepository.findByEncounterId(encounterId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return observationRepository.findDtosByEncounterId(encounterId);
+    }
+
+    // a page continues from the time of the previous page's last observation, after its id
+    @Transactional(readOnly = true)
+    public CursorPage<ObservationDTO> getObservationsInRange(Long patientId, String code, LocalDateTime from,
+                                                             LocalDateTime to, Long after, int size) {
+        checkRange(from, to);
+        int pageSize = CursorPage.clampSize(size);
+        List<Observation> observations = observationRepository.findInRange(
+                patientId, code, from, to, after == null ? 0L : after, Limit.of(pageSize + 1));
+        return CursorPage.of(observations, pageSize, Observation::getId, this::convertToDTO);
+    }
+
+    // values that are not numeric (e.g. "positive") cannot be aggregated and are skipped
+    @Transactional(readOnly = true)
+    public List<ObservationBucket> getObservationBuckets(Long patientId, String code,
+                                                        LocalDateTime from, LocalDateTime to, Duration interval) {
+        checkRange(from, to);
+        if (interval.toMillis() <= 0) {
+            throw new BadRequestException("Interval must be at least one millisecond");
+        }
+        if (Duration.between(from, to).toMillis() / interval.toMillis() >= MAX_BUCKETS) {
+            throw new BadRequestException("Interval is too small for the range, at most " + MAX_BUCKETS + " buckets are allowed");
+        }
+
+        ObservationDownsampler downsampler = new ObservationDownsampler(from, interval);
+        try (Stream<ObservationRepo.SampleView> samples = observationRepository.streamSamples(patientId, code, from, to)) {
+            samples.forEach(sample -> downsampler.add(sample.getEffectiveDateTime(), sample.getNumericValue()));
+        }
+        return downsampler.buckets();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ObservationStats> getObservationStats(Long patientId, String code,
+                                                      LocalDateTime from, LocalDateTime to, boolean byPatient) {
+        if (from != null && to != null) {
+            checkRange(from, to);
+        }
+        return observationRepository.aggregate(patientId, code, from, to, byPatient);
+    }
+
+    private static void checkRange(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new BadRequestException("from must be before to");
+        }
     }
 
 
     public Optional<ObservationDTO> updateObservation(Long id, ObservationDTO observationDTO) {
         return observationRepository.findById(id)
                 .flatMap(observation -> {
+                    Long previousPatientId = observation.getPatient().getId();
                     observation.setCode(observationDTO.getCode());
-                    observation.setValue(observationDTO.getValue());
+                    ObservationValues.setValue(observation, observationDTO.getValue());
                     observation.setEffectiveDateTime(observationDTO.getEffectiveDateTime());
 
 
@@ -103,17 +306,22 @@ public class ObservationService {
                     }
 
                     Observation updatedObservation = observationRepository.save(observation);
+                    changeFeed.record(ChangeEvent.ResourceType.OBSERVATION, ChangeEvent.Operation.UPDATE, id);
+                    recentVitals.invalidateAfterCommit(List.of(previousPatientId, updatedObservation.getPatient().getId()));
                     return Optional.of(convertToDTO(updatedObservation));
                 });
     }
 
 
     public boolean deleteObservation(Long id) {
-        if (observationRepository.existsById(id)) {
-            observationRepository.deleteById(id);
-            return true;
+        Optional<Long> patientId = observationRepository.findPatientIdById(id);
+        if (patientId.isEmpty()) {
+            return false;
         }
-        return false;
+        observationRepository.deleteById(id);
+        changeFeed.record(ChangeEvent.ResourceType.OBSERVATION, ChangeEvent.Operation.DELETE, id);
+        recentVitals.invalidateAfterCommit(List.of(patientId.get()));
+        return true;
     }
 
     private ObservationDTO convertToDTO(Observation observation) {
@@ -0,0 +1,31 @@
+package org.example.patient.service;
+
+import org.example.patient.entity.Observation;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a textual observation value such as "72", "98.6 F" or "5.4 mmol/L" into a number and a unit.
+ * Anything else ("positive", "120/80 mmHg") keeps only its text. V4__observation_numeric_value.sql
+ * applies the same rule to rows written before the numeric column existed.
+ */
+final class ObservationValues {
+
+    private static final Pattern QUANTITY = Pattern.compile("\\s*([-+]?\\d+(?:\\.\\d+)?)\\s*([^\\d\\s/.+-].*?)?\\s*");
+
+    private ObservationValues() {
+    }
+
+    static void setValue(Observation observation, String value) {
+        observation.setValue(value);
+        Matcher matcher = value == null ? null : QUANTITY.matcher(value);
+        if (matcher != null && matcher.matches()) {
+            observation.setNumericValue(Double.parseDouble(matcher.group(1)));
+            observation.setUnit(matcher.group(2));
+        } else {
+            observation.setNumericValue(null);
+            observation.setUnit(null);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.patient.service;
+
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.models.EncounterWithObservationsDTO;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.models.PatientEverythingDTO;
+import org.example.patient.repository.EncounterRepo;
+import org.example.patient.repository.ObservationRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Assembles a patient with its encounters and their observations from three set-based reads run
+ * concurrently: the (cached) patient lookup, the patient's encounters and the patient's observations.
+ * Observations are nested under their encounter in memory.
+ */
+@Service
+public class PatientEverythingService {
+
+    public enum Section { PATIENT, ENCOUNTERS, OBSERVATIONS }
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private EncounterRepo encounterRepository;
+
+    @Autowired
+    private ObservationRepo observationRepository;
+
+    // empty when the patient does not exist; sections left out of the selection are not queried
+    public Mono<PatientEverythingDTO> getEverything(Long patientId, Set<Section> sections) {
+        Mono<Optional<PatientDTO>> patient = blocking(() -> patientService.getPatientById(patientId));
+        Mono<List<EncounterWithObservationsDTO>> encounters = sections.contains(Section.ENCOUNTERS)
+                ? blocking(() -> encounterRepository.findNestedDtosByPatientId(patientId))
+                : Mono.just(List.of());
+        Mono<List<ObservationDTO>> observations = sections.contains(Section.OBSERVATIONS)
+                ? blocking(() -> observationRepository.findDtosByPatientId(patientId))
+                : Mono.just(List.of());
+
+        return Mono.zip(patient, encounters, observations)
+                .filter(result -> result.getT1().isPresent())
+                .map(result -> assemble(result.getT1().get(), result.getT2(), result.getT3(), sections));
+    }
+
+    public static Set<Section> parseSections(Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return EnumSet.allOf(Section.class);
+        }
+        Set<Section> sections = EnumSet.noneOf(Section.class);
+        for (String name : names) {
+            try {
+                sections.add(Section.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unknown section: " + name
+                        + " (expected patient, encounters or observations)");
+            }
+        }
+        return sections;
+    }
+
+    static PatientEverythingDTO assemble(PatientDTO patient, List<EncounterWithObservationsDTO> encounters,
+                                         List<ObservationDTO> observations, Set<Section> sections) {
+        PatientEverythingDTO everything = new PatientEverythingDTO();
+        if (sections.contains(Section.PATIENT)) {
+            everything.setPatient(patient);
+        }
+        if (!sections.contains(Section.ENCOUNTERS)) {
+            everything.setObservations(sections.contains(Section.OBSERVATIONS) ? observations : null);
+            return everything;
+        }
+
+        Map<Long, EncounterWithObservationsDTO> byId = encounters.stream()
+                .collect(Collectors.toMap(EncounterWithObservationsDTO::getId, Function.identity()));
+        List<ObservationDTO> unattached = new ArrayList<>();
+        for (ObservationDTO observation : observations) {
+            EncounterWithObservationsDTO encounter = observation.getEncounterId() == null
+                    ? null : byId.get(observation.getEncounterId());
+            if (encounter != null) {
+                encounter.getObservations().add(observation);
+            } else {
+                unattached.add(observation);
+            }
+        }
+        everything.setEncounters(encounters);
+        if (sections.contains(Section.OBSERVATIONS)) {
+            everything.setObservations(unattached);
+        } else {
+            encounters.forEach(encounter -> encounter.setObservations(null));
+        }
+        return everything;
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
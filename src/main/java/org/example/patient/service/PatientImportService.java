@@ -0,0 +1,346 @@
+package org.example.patient.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.example.patient.entity.ImportJob;
+import org.example.patient.entity.ImportRejection;
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.models.ImportRejectionDTO;
+import org.example.patient.models.ImportStatus;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.repository.ImportJobRepo;
+import org.example.patient.repository.ImportRejectionRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * File-based patient import. The upload is spooled to disk and then processed in the background: records
+ * are parsed one at a time, validated in parallel per batch against the {@link PatientDTO} constraints,
+ * and each batch is upserted by identifier in one set-based statement. The batch's rejections and the
+ * job checkpoint commit in the same transaction, so a job interrupted by a crash resumes on the next
+ * start from the last committed batch without loading or reporting any record twice.
+ */
+@Service
+public class PatientImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientImportService.class);
+
+    static final int BATCH_SIZE = 5000;
+    private static final int MAX_TEXT = 4000;
+
+    public enum Format { CSV, NDJSON }
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private ImportJobRepo jobRepository;
+
+    @Autowired
+    private ImportRejectionRepo rejectionRepository;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.import.directory:${java.io.tmpdir}/patient-imports}")
+    private Path directory;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "patient-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ImportStatus start(InputStream body, Format format) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Path source = directory.resolve(id).resolve("source." + format.name().toLowerCase(Locale.ROOT));
+        Files.createDirectories(source.getParent());
+        Files.copy(body, source);
+
+        LocalDateTime now = LocalDateTime.now();
+        ImportJob job = jobRepository.save(new ImportJob(id, ImportJob.Status.QUEUED, format.name(), source.toString(),
+                0, 0, 0, null, now, now));
+        executor.submit(() -> run(id));
+        return toStatus(job);
+    }
+
+    // jobs are read on the primary, which has the one just started
+    @Transactional
+    public Optional<ImportStatus> getStatus(String id) {
+        return jobRepository.findById(id).map(this::toStatus);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamRejections(String id, Consumer<ImportRejectionDTO> consumer) {
+        try (Stream<ImportRejectionDTO> rejections = rejectionRepository.streamDtosByJobId(id)) {
+            rejections.forEach(consumer);
+        }
+    }
+
+    public static Format parseFormat(String name) {
+        try {
+            return name == null ? Format.NDJSON : Format.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown value: " + name + " (expected ndjson or csv)");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void resumeUnfinished() {
+        for (ImportJob job : jobRepository.findByStatusInOrderByCreatedAtAsc(
+                List.of(ImportJob.Status.QUEUED, ImportJob.Status.RUNNING))) {
+            log.info("Resuming patient import {} after record {}", job.getId(), job.getProcessedRecords());
+            executor.submit(() -> run(job.getId()));
+        }
+    }
+
+    // failed jobs are not resumed automatically: the cause (a full disk, the database going away) may need fixing first.
+    // One read-write transaction, so the job is read and saved on the primary, and run once it is committed
+    @Transactional
+    public Optional<ImportStatus> resume(String id) {
+        return jobRepository.findById(id)
+                .filter(job -> job.getStatus() == ImportJob.Status.FAILED)
+                .map(job -> {
+                    job.setStatus(ImportJob.Status.QUEUED);
+                    job.setError(null);
+                    job.setUpdatedAt(LocalDateTime.now());
+                    ImportJob queued = jobRepository.save(job);
+                    AfterCommit.run(() -> executor.submit(() -> run(id)));
+                    return toStatus(queued);
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void run(String id) {
+        ImportJob job = update(id, running -> running.setStatus(ImportJob.Status.RUNNING));
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(job.getSourcePath()), StandardCharsets.UTF_8)) {
+            Iterator<ParsedRecord> records = Format.valueOf(job.getFormat()) == Format.CSV ? csvRecords(reader) : ndjsonRecords(reader);
+            long skip = job.getProcessedRecords();
+            List<ParsedRecord> batch = new ArrayList<>(BATCH_SIZE);
+            while (records.hasNext()) {
+                ParsedRecord record = records.next();
+                if (record.number <= skip) {
+                    continue;
+                }
+                batch.add(record);
+                if (batch.size() == BATCH_SIZE) {
+                    job = load(job, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                job = load(job, batch);
+            }
+            job.setStatus(ImportJob.Status.COMPLETED);
+            deleteSource(job);
+        } catch (Exception e) {
+            // counters are re-read so a batch that did not commit is not counted
+            log.error("Patient import {} failed", id, e);
+            String error = truncate(String.valueOf(e.getMessage()));
+            job = update(id, failed -> {
+                failed.setStatus(ImportJob.Status.FAILED);
+                failed.setError(error);
+            });
+        }
+        job.setUpdatedAt(LocalDateTime.now());
+        jobRepository.save(job);
+    }
+
+    private ImportJob update(String id, Consumer<ImportJob> change) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            ImportJob job = jobRepository.findById(id).orElseThrow();
+            change.accept(job);
+            return job;
+        });
+    }
+
+    private ImportJob load(ImportJob job, List<ParsedRecord> batch) {
+        batch.parallelStream()
+                .filter(record -> record.patient != null)
+                .forEach(record -> {
+                    String errors = validator.validate(record.patient).stream()
+                            .map(ConstraintViolation::getMessage)
+                            .sorted()
+                            .collect(Collectors.joining("; "));
+                    if (!errors.isEmpty()) {
+                        record.errors = errors;
+                    }
+                });
+
+        List<PatientDTO> valid = new ArrayList<>(batch.size());
+        List<ImportRejection> rejections = new ArrayList<>();
+        for (ParsedRecord record : batch) {
+            if (record.errors == null) {
+                valid.add(record.patient);
+            } else {
+                rejections.add(new ImportRejection(null, job.getId(), record.number,
+                        truncate(record.content), truncate(record.errors)));
+            }
+        }
+
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            patientService.upsertPatients(valid);
+            rejectionRepository.saveAll(rejections);
+            ImportJob checkpoint = jobRepository.findById(job.getId()).orElseThrow();
+            checkpoint.setProcessedRecords(batch.get(batch.size() - 1).number);
+            checkpoint.setLoadedRecords(checkpoint.getLoadedRecords() + valid.size());
+            checkpoint.setRejectedRecords(checkpoint.getRejectedRecords() + rejections.size());
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            return checkpoint;
+        });
+    }
+
+    // one record per non-blank line; a malformed line is rejected on its own
+    private Iterator<ParsedRecord> ndjsonRecords(BufferedReader reader) {
+        Iterator<String> lines = reader.lines().filter(line -> !line.isBlank()).iterator();
+        return new Iterator<>() {
+            long number;
+
+            @Override
+            public boolean hasNext() {
+                return lines.hasNext();
+            }
+
+            @Override
+            public ParsedRecord next() {
+                String line = lines.next();
+                ParsedRecord record = new ParsedRecord(++number, line);
+                try {
+                    record.patient = objectMapper.readValue(line, PatientDTO.class);
+                    if (record.patient == null) {
+                        record.errors = "Unreadable record: null";
+                    }
+                } catch (JsonProcessingException e) {
+                    record.errors = "Unreadable record: " + e.getOriginalMessage();
+                }
+                return record;
+            }
+        };
+    }
+
+    // header row names the PatientDTO properties; values are bound like JSON so dates parse the same way
+    private Iterator<ParsedRecord> csvRecords(BufferedReader reader) throws IOException {
+        MappingIterator<Map<String, String>> rows = csvMapper.readerFor(Map.class)
+                .with(CsvSchema.emptySchema().withHeader())
+                .readValues(reader);
+        return new Iterator<>() {
+            long number;
+
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            // a malformed row (bad quoting, too many columns) is rejected on its own and parsing resumes on the
+            // next line; an unterminated quote takes the rest of the file with it
+            @Override
+            public ParsedRecord next() {
+                Map<String, String> row;
+                try {
+                    row = rows.next();
+                } catch (RuntimeException e) {
+                    if (!(e.getCause() instanceof JsonProcessingException cause)) {
+                        throw e;
+                    }
+                    ParsedRecord record = new ParsedRecord(++number, null);
+                    record.errors = "Unreadable record at line " + rows.getCurrentLocation().getLineNr() + ": "
+                            + cause.getOriginalMessage();
+                    return record;
+                }
+                ParsedRecord record = new ParsedRecord(++number, toJson(row));
+                try {
+                    record.patient = objectMapper.convertValue(row, PatientDTO.class);
+                } catch (IllegalArgumentException e) {
+                    record.errors = "Unreadable record: " + e.getMessage();
+                }
+                return record;
+            }
+        };
+    }
+
+    private String toJson(Map<String, String> row) {
+        try {
+            return objectMapper.writeValueAsString(row);
+        } catch (JsonProcessingException e) {
+            return row.toString();
+        }
+    }
+
+    private ImportStatus toStatus(ImportJob job) {
+        return new ImportStatus(job.getId(), job.getStatus().name(), job.getFormat().toLowerCase(Locale.ROOT),
+                job.getProcessedRecords(), job.getLoadedRecords(), job.getRejectedRecords(), job.getError(),
+                job.getCreatedAt(), job.getUpdatedAt(), "/api/import/" + job.getId() + "/rejections");
+    }
+
+    private void deleteSource(ImportJob job) {
+        try {
+            Files.deleteIfExists(Path.of(job.getSourcePath()));
+            FileSystemUtils.deleteRecursively(directory.resolve(job.getId()));
+        } catch (IOException e) {
+            log.warn("Could not delete the source of patient import {}", job.getId(), e);
+        }
+    }
+
+    private static String truncate(String value) {
+        return value == null || value.length() <= MAX_TEXT ? value : value.substring(0, MAX_TEXT);
+    }
+
+    private static final class ParsedRecord {
+        final long number;
+        final String content;
+        PatientDTO patient;
+        String errors;
+
+        ParsedRecord(long number, String content) {
+            this.number = number;
+            this.content = content;
+        }
+    }
+}
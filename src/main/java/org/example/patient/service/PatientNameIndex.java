@@ -0,0 +1,424 @@
+package org.example.patient.service;
+
+import org.example.patient.repository.PatientRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory trigram index over patient given and family names, backing the fuzzy name search.
+ */
+@Component
+public class PatientNameIndex {
+
+    static final double MIN_SIMILARITY = 0.3;
+    static final int MAX_QUERY_LENGTH = 64;
+
+    private static final Logger log = LoggerFactory.getLogger(PatientNameIndex.class);
+    private static final int GIVEN = 0;
+    private static final int FAMILY = 1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> givenPostings = new HashMap<>();
+    private final Map<String, Postings> familyPostings = new HashMap<>();
+
+    // patients are addressed by dense document numbers so matching can count hits in a plain int[]
+    private final Map<Long, Integer> docsById = new HashMap<>();
+    private final Deque<Integer> freeDocs = new ArrayDeque<>();
+    private long[] idsByDoc = new long[1024];
+    private String[][] namesByDoc = new String[1024][];
+    private int docLimit;
+
+    private final ThreadLocal<byte[]> hitCounters = ThreadLocal.withInitial(() -> new byte[0]);
+    private final Set<Long> touchedDuringRebuild = new HashSet<>();
+
+    private volatile boolean ready;
+    private boolean rebuilding;
+
+    @Autowired
+    private PatientRepo patientRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        CompletableFuture.runAsync(this::rebuild)
+                .exceptionally(e -> {
+                    log.error("Patient name index rebuild failed, name searches fall back to the database", e);
+                    return null;
+                });
+    }
+
+    public void rebuild() {
+        withWriteLock(() -> {
+            rebuilding = true;
+            touchedDuringRebuild.clear();
+        });
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.executeWithoutResult(status -> {
+            try (Stream<PatientRepo.NameView> rows = patientRepository.streamNamesBy()) {
+                rows.forEach(row -> withWriteLock(() -> {
+                    if (!touchedDuringRebuild.contains(row.getId())) {
+                        index(row.getId(), row.getGivenName(), row.getFamilyName());
+                    }
+                }));
+            }
+        });
+        withWriteLock(() -> {
+            rebuilding = false;
+            touchedDuringRebuild.clear();
+        });
+        ready = true;
+        log.info("Patient name index built with {} patients", size());
+    }
+
+    public void put(Long id, String givenName, String familyName) {
+        withWriteLock(() -> {
+            if (rebuilding) {
+                touchedDuringRebuild.add(id);
+            }
+            index(id, givenName, familyName);
+        });
+    }
+
+    public void remove(Long id) {
+        withWriteLock(() -> {
+            if (rebuilding) {
+                touchedDuringRebuild.add(id);
+            }
+            unindex(id);
+        });
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // a part matches on equality, prefix or substring, or on trigram similarity to tolerate typos
+    public List<Long> search(String familyName, String givenName, int limit) {
+        String family = truncate(normalize(familyName));
+        String given = truncate(normalize(givenName));
+        if (family.isEmpty() && given.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Double> scores = null;
+            if (!family.isEmpty()) {
+                scores = score(familyPostings, family, FAMILY);
+            }
+            if (!given.isEmpty()) {
+                Map<Integer, Double> givenScores = score(givenPostings, given, GIVEN);
+                if (scores == null) {
+                    scores = givenScores;
+                } else {
+                    scores.keySet().retainAll(givenScores.keySet());
+                    scores.replaceAll((doc, score) -> score + givenScores.get(doc));
+                }
+            }
+            return top(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> top(Map<Integer, Double> scores, int limit) {
+        Comparator<Map.Entry<Integer, Double>> best = Map.Entry.<Integer, Double>comparingByValue().reversed()
+                .thenComparing(entry -> idsByDoc[entry.getKey()]);
+        PriorityQueue<Map.Entry<Integer, Double>> worstFirst = new PriorityQueue<>(best.reversed());
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            worstFirst.add(entry);
+            if (worstFirst.size() > limit) {
+                worstFirst.poll();
+            }
+        }
+        List<Map.Entry<Integer, Double>> ranked = new ArrayList<>(worstFirst);
+        ranked.sort(best);
+        List<Long> ids = new ArrayList<>(ranked.size());
+        for (Map.Entry<Integer, Double> entry : ranked) {
+            ids.add(idsByDoc[entry.getKey()]);
+        }
+        return ids;
+    }
+
+    private Map<Integer, Double> score(Map<String, Postings> postings, String query, int field) {
+        List<Postings> lists = new ArrayList<>();
+        for (String gram : trigrams(query)) {
+            lists.add(postings.getOrDefault(gram, Postings.EMPTY));
+        }
+        lists.sort(Comparator.comparingInt(Postings::size));
+        int minShared = Math.max(1, (int) Math.ceil(MIN_SIMILARITY * lists.size()));
+
+        byte[] hits = hitCounters.get();
+        if (hits.length < docLimit) {
+            hits = new byte[idsByDoc.length];
+            hitCounters.set(hits);
+        }
+
+        // a name sharing minShared trigrams with the query must appear in one of the rarest
+        // (size - minShared + 1) lists, so only those are scanned for candidates
+        int candidateLists = lists.size() - minShared + 1;
+        Postings candidates = new Postings();
+        for (int l = 0; l < candidateLists; l++) {
+            Postings list = lists.get(l);
+            for (int i = 0; i < list.size(); i++) {
+                int doc = list.get(i);
+                if (hits[doc]++ == 0) {
+                    candidates.append(doc);
+                }
+            }
+        }
+        candidates.sort();
+        for (int l = candidateLists; l < lists.size(); l++) {
+            Postings list = lists.get(l);
+            int position = 0;
+            for (int i = 0; i < candidates.size() && position < list.size(); i++) {
+                int doc = candidates.get(i);
+                while (position < list.size() && list.get(position) < doc) {
+                    position++;
+                }
+                if (position < list.size() && list.get(position) == doc) {
+                    hits[doc]++;
+                }
+            }
+        }
+
+        Map<Integer, Double> scores = new HashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            int doc = candidates.get(i);
+            if (hits[doc] >= minShared) {
+                scores.put(doc, (double) hits[doc] / lists.size());
+            }
+            hits[doc] = 0;
+        }
+
+        // only names holding every inner trigram of the query can contain it, and those are also the
+        // only ones worth an exact, prefix or substring bonus; substrings in the middle of a name
+        // share no padded trigrams, so they are picked up here as well
+        List<Postings> inner = new ArrayList<>();
+        for (String gram : innerTrigrams(query)) {
+            inner.add(postings.getOrDefault(gram, Postings.EMPTY));
+        }
+        if (inner.isEmpty()) {
+            scores.replaceAll((doc, similarity) -> similarity + matchBonus(namesByDoc[doc][field], query));
+            return scores;
+        }
+        inner.sort(Comparator.comparingInt(Postings::size));
+        Postings rarest = inner.get(0);
+        candidates:
+        for (int i = 0; i < rarest.size(); i++) {
+            int doc = rarest.get(i);
+            for (int other = 1; other < inner.size(); other++) {
+                if (!inner.get(other).contains(doc)) {
+                    continue candidates;
+                }
+            }
+            double bonus = matchBonus(namesByDoc[doc][field], query);
+            if (bonus > 0) {
+                scores.merge(doc, bonus, Double::sum);
+            }
+        }
+        return scores;
+    }
+
+    private static double matchBonus(String name, String query) {
+        if (name.equals(query)) {
+            return 3;
+        }
+        int position = name.indexOf(query);
+        if (position < 0) {
+            return 0;
+        }
+        while (position >= 0) {
+            if (position == 0 || name.charAt(position - 1) == ' ') {
+                return 2;
+            }
+            position = name.indexOf(query, position + 1);
+        }
+        return 1;
+    }
+
+    private void index(Long id, String givenName, String familyName) {
+        unindex(id);
+        int doc = freeDocs.isEmpty() ? docLimit++ : freeDocs.pop();
+        if (doc == idsByDoc.length) {
+            idsByDoc = Arrays.copyOf(idsByDoc, doc * 2);
+            namesByDoc = Arrays.copyOf(namesByDoc, doc * 2);
+        }
+        String[] names = {normalize(givenName), normalize(familyName)};
+        docsById.put(id, doc);
+        idsByDoc[doc] = id;
+        namesByDoc[doc] = names;
+        for (String gram : allTrigrams(names[GIVEN])) {
+            givenPostings.computeIfAbsent(gram, g -> new Postings()).add(doc);
+        }
+        for (String gram : allTrigrams(names[FAMILY])) {
+            familyPostings.computeIfAbsent(gram, g -> new Postings()).add(doc);
+        }
+    }
+
+    private void unindex(Long id) {
+        Integer doc = docsById.remove(id);
+        if (doc == null) {
+            return;
+        }
+        String[] names = namesByDoc[doc];
+        for (String gram : allTrigrams(names[GIVEN])) {
+            removePosting(givenPostings, gram, doc);
+        }
+        for (String gram : allTrigrams(names[FAMILY])) {
+            removePosting(familyPostings, gram, doc);
+        }
+        namesByDoc[doc] = null;
+        freeDocs.push(doc);
+    }
+
+    private static void removePosting(Map<String, Postings> postings, String gram, int doc) {
+        Postings list = postings.get(gram);
+        if (list != null && list.remove(doc) && list.size() == 0) {
+            postings.remove(gram);
+        }
+    }
+
+    private static String truncate(String query) {
+        return query.length() > MAX_QUERY_LENGTH ? query.substring(0, MAX_QUERY_LENGTH) : query;
+    }
+
+    private void withWriteLock(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String stripped = Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    // pg_trgm style: every word padded with two leading blanks and one trailing blank
+    static Set<String> trigrams(String normalized) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String word : normalized.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+        }
+        return grams;
+    }
+
+    static Set<String> innerTrigrams(String normalized) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static Set<String> allTrigrams(String normalized) {
+        Set<String> grams = trigrams(normalized);
+        grams.addAll(innerTrigrams(normalized));
+        return grams;
+    }
+
+    static final class Postings {
+        static final Postings EMPTY = new Postings();
+
+        private int[] docs = new int[4];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return docs[index];
+        }
+
+        boolean contains(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc) >= 0;
+        }
+
+        void append(int doc) {
+            insertAt(size, doc);
+        }
+
+        void sort() {
+            Arrays.sort(docs, 0, size);
+        }
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] >= doc) {
+                int position = Arrays.binarySearch(docs, 0, size, doc);
+                if (position < 0) {
+                    insertAt(-position - 1, doc);
+                }
+                return;
+            }
+            insertAt(size, doc);
+        }
+
+        boolean remove(int doc) {
+            int position = Arrays.binarySearch(docs, 0, size, doc);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(docs, position + 1, docs, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        private void insertAt(int position, int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, position, docs, position + 1, size - position);
+            docs[position] = doc;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.example.patient.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.patient.entity.ChangeEvent;
+import org.example.patient.entity.Encounter;
+import org.example.patient.repository.EncounterRepo;
+import org.example.patient.repository.PatientPurgeRepo;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes the patients that {@link PatientService#deletePatient} soft-deleted for having too many observations
+ * to delete in one transaction. Every {@code app.patients.purge-interval} it deletes their observations, along
+ * with those of other patients recorded in their encounters, then their encounters,
+ * {@code app.patients.purge-chunk-size} rows per transaction, and finally the patient. Row locks are held for
+ * one chunk at a time, and a purge cut short resumes where it stopped on the next round.
+ * The change feed gets the encounter and observation deletes with the chunks that remove them; the patient's
+ * own delete was recorded when it was hidden.
+ */
+@Service
+public class PatientPurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientPurgeService.class);
+
+    private static final int PATIENTS_PER_ROUND = 100;
+
+    @Autowired
+    private PatientPurgeRepo purgeRepository;
+
+    @Autowired
+    private ChangeFeedService changeFeed;
+
+    @Autowired
+    private RecentVitalsCache recentVitals;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${app.patients.purge-chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${app.patients.purge-interval:30s}")
+    private Duration interval;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "patient-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void start() {
+        executor.scheduleWithFixedDelay(this::purgeQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Purges every soft-deleted patient and returns how many were removed.
+     */
+    public int purge() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int purged = 0;
+        List<Long> patientIds;
+        do {
+            patientIds = purgeRepository.findDeleted(PATIENTS_PER_ROUND);
+            for (Long patientId : patientIds) {
+                List<Long> otherPatientIds = purgeRepository.findPatientsInEncounters(patientId);
+                long observations = 0;
+                List<Long> chunk;
+                do {
+                    chunk = transaction.execute(status -> {
+                        List<Long> ids = purgeRepository.deleteObservations(patientId, chunkSize);
+                        changeFeed.record(ChangeEvent.ResourceType.OBSERVATION, ChangeEvent.Operation.DELETE, ids);
+                        return ids;
+                    });
+                    observations += chunk.size();
+                } while (chunk.size() == chunkSize);
+                recentVitals.invalidateAfterCommit(otherPatientIds);
+
+                List<Long> encounterIds = new ArrayList<>();
+                do {
+                    chunk = transaction.execute(status -> {
+                        List<Long> ids = purgeRepository.deleteEncounters(patientId, chunkSize);
+                        changeFeed.record(ChangeEvent.ResourceType.ENCOUNTER, ChangeEvent.Operation.DELETE, ids);
+                        return ids;
+                    });
+                    encounterIds.addAll(chunk);
+                } while (chunk.size() == chunkSize);
+                evictEncounters(encounterIds);
+
+                if (Boolean.TRUE.equals(transaction.execute(status -> {
+                    changeFeed.recordChildDeletes(patientId);
+                    return purgeRepository.deletePatient(patientId);
+                }))) {
+                    purged++;
+                    log.info("Purged patient {} with {} observations and {} encounters", patientId, observations, encounterIds.size());
+                }
+            }
+        } while (patientIds.size() == PATIENTS_PER_ROUND);
+        return purged;
+    }
+
+    private void evictEncounters(List<Long> encounterIds) {
+        if (encounterIds.isEmpty()) {
+            return;
+        }
+        org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        encounterIds.forEach(id -> cache.evictEntityData(Encounter.class, id));
+        cache.evictQueryRegion(EncounterRepo.QUERY_REGION);
+    }
+
+    private void purgeQuietly() {
+        try {
+            purge();
+        } catch (RuntimeException e) {
+            log.warn("Could not purge deleted patients", e);
+        }
+    }
+}
@@ -1,64 +1,279 @@
 package org.example.patient.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.example.patient.config.CacheConfig;
+import org.example.patient.entity.ChangeEvent;
+import org.example.patient.entity.Encounter;
 import org.example.patient.entity.Patient;
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.exceptions.ConflictException;
+import org.example.patient.exceptions.PreconditionFailedException;
+import org.example.patient.models.BatchItemResult;
+import org.example.patient.models.CursorPage;
 import org.example.patient.models.PatientDTO;
+import org.example.patient.models.PatientExportRow;
+import org.example.patient.models.PatientSearchCriteria;
+import org.example.patient.models.ResourceVersion;
+import org.example.patient.repository.EncounterRepo;
+import org.example.patient.repository.ObservationRepo;
 import org.example.patient.repository.PatientRepo;
+import org.example.patient.repository.PatientUpsertRepo;
+import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "app.service", histogram = true)
 @Transactional
 public class PatientService {
 
+    public static final int MAX_BATCH_SIZE = 10_000;
+
     @Autowired
     private PatientRepo patientRepository;
 
+    @Autowired
+    private EncounterRepo encounterRepository;
+
+    @Autowired
+    private ObservationRepo observationRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PatientNameIndex nameIndex;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private RecentVitalsCache recentVitals;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ChangeFeedService changeFeed;
+
+    // observations from which a delete is left to PatientPurgeService; 0 deletes every patient right away
+    @Value("${app.patients.purge-threshold:10000}")
+    private int purgeThreshold;
+
     public PatientDTO createPatient(PatientDTO patientDTO) {
         Patient patient = convertToEntity(patientDTO);
         Patient savedPatient = patientRepository.save(patient);
+        AfterCommit.run(() -> nameIndex.put(savedPatient.getId(), savedPatient.getGivenName(), savedPatient.getFamilyName()));
+        changeFeed.record(ChangeEvent.ResourceType.PATIENT, ChangeEvent.Operation.CREATE, savedPatient.getId());
         return convertToDTO(savedPatient);
     }
 
 
+    // read-write, so the row is read on the primary: a lagging read replica could otherwise re-cache the version an
+    // update has just evicted, for as long as the cache keeps it
+    @Cacheable(cacheNames = CacheConfig.PATIENTS, unless = "#result == null")
     public Optional<PatientDTO> getPatientById(Long id) {
         return patientRepository.findById(id)
                 .map(this::convertToDTO);
     }
 
+    @Transactional(readOnly = true)
     public List<PatientDTO> getAllPatients() {
-        return patientRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return patientRepository.findAllDtos();
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<PatientDTO> getPatientsPage(Long after, int size) {
+        int pageSize = CursorPage.clampSize(size);
+        List<Patient> patients = patientRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, Limit.of(pageSize + 1));
+        return CursorPage.of(patients, pageSize, Patient::getId, this::convertToDTO);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAllPatients(Consumer<PatientDTO> consumer) {
+        try (Stream<Patient> patients = patientRepository.streamAllByOrderByIdAsc()) {
+            patients.forEach(patient -> {
+                consumer.accept(convertToDTO(patient));
+                entityManager.detach(patient);
+            });
+        }
+    }
+
+    // constructor-expression rows are not managed, so nothing accumulates in the persistence context
+    @Transactional(readOnly = true)
+    public void streamExportRows(Consumer<PatientExportRow> consumer) {
+        try (Stream<PatientExportRow> rows = patientRepository.streamExportRows()) {
+            rows.forEach(consumer);
+        }
+    }
+
+    // answered from the cached patient when there is one, otherwise from the version column alone;
+    // SUPPORTS keeps a cache hit from opening a transaction
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<ResourceVersion> getPatientVersion(Long id) {
+        Cache patients = cacheManager.getCache(CacheConfig.PATIENTS);
+        PatientDTO cached = patients == null ? null : patients.get(id, PatientDTO.class);
+        if (cached != null) {
+            return Optional.of(new ResourceVersion(cached.getVersion(), cached.getLastModified()));
+        }
+        return patientRepository.findVersionById(id);
     }
 
     public Optional<PatientDTO> updatePatient(Long id, PatientDTO patientDTO) {
+        return updatePatient(id, patientDTO, null);
+    }
+
+    // expectedVersion comes from If-Match; the @Version check on flush also catches a writer that commits in between
+    public Optional<PatientDTO> updatePatient(Long id, PatientDTO patientDTO, Long expectedVersion) {
         return patientRepository.findById(id)
                 .map(patient -> {
+                    if (expectedVersion != null && !expectedVersion.equals(patient.getVersion())) {
+                        throw new PreconditionFailedException("Precondition failed - Patient has been modified");
+                    }
+                    evictAfterCommit(id, patient.getIdentifier(), patientDTO.getIdentifier());
                     patient.setIdentifier(patientDTO.getIdentifier());
                     patient.setGivenName(patientDTO.getGivenName());
                     patient.setFamilyName(patientDTO.getFamilyName());
                     patient.setBirthDate(patientDTO.getBirthDate());
                     patient.setGender(Patient.Gender.valueOf(patientDTO.getGender()));
-                    Patient updatedPatient = patientRepository.save(patient);
+                    Patient updatedPatient = patientRepository.saveAndFlush(patient);
+                    String givenName = updatedPatient.getGivenName();
+                    String familyName = updatedPatient.getFamilyName();
+                    AfterCommit.run(() -> nameIndex.put(id, givenName, familyName));
+                    changeFeed.record(ChangeEvent.ResourceType.PATIENT, ChangeEvent.Operation.UPDATE, id);
                     return convertToDTO(updatedPatient);
                 });
     }
 
 
+    public List<PatientUpsertRepo.Upserted> upsertPatients(List<PatientDTO> patients) {
+        List<PatientUpsertRepo.Upserted> upserted = patientRepository.upsertByIdentifier(patients);
+        List<Long> created = new ArrayList<>();
+        List<Long> updated = new ArrayList<>();
+        AfterCommit.run(() -> upserted.forEach(patient ->
+                nameIndex.put(patient.getId(), patient.getGivenName(), patient.getFamilyName())));
+        for (PatientUpsertRepo.Upserted patient : upserted) {
+            evictAfterCommit(patient.getId(), patient.getIdentifier());
+            (patient.isInserted() ? created : updated).add(patient.getId());
+        }
+        evictSecondLevelAfterCommit(Patient.class, upserted.stream().map(PatientUpsertRepo.Upserted::getId).toList(),
+                PatientRepo.QUERY_REGION);
+        changeFeed.record(ChangeEvent.ResourceType.PATIENT, ChangeEvent.Operation.CREATE, created);
+        changeFeed.record(ChangeEvent.ResourceType.PATIENT, ChangeEvent.Operation.UPDATE, updated);
+        return upserted;
+    }
+
+    // empty when the stored patient already matched, so nothing was written
+    public Optional<PatientUpsertRepo.Upserted> upsertPatient(PatientDTO patientDTO) {
+        Set<String> purging = patientRepository.findPurgingIdentifiers(List.of(patientDTO.getIdentifier()));
+        Optional<PatientUpsertRepo.Upserted> upserted = upsertPatients(List.of(patientDTO)).stream().findFirst();
+        if (upserted.isEmpty() && !purging.isEmpty()) {
+            throw new ConflictException("Conflict - The identifier belongs to a deleted patient that is still being purged");
+        }
+        return upserted;
+    }
+
+    public List<BatchItemResult> upsertPatientBatch(List<PatientDTO> patientDTOs) {
+        BatchItemResult[] results = new BatchItemResult[patientDTOs.size()];
+        List<PatientDTO> valid = new ArrayList<>(patientDTOs.size());
+        for (int i = 0; i < patientDTOs.size(); i++) {
+            PatientDTO patientDTO = patientDTOs.get(i);
+            if (patientDTO == null) {
+                results[i] = BatchItemResult.badRequest(i, "Patient is required");
+                continue;
+            }
+
+            Set<ConstraintViolation<PatientDTO>> violations = validator.validate(patientDTO);
+            if (!violations.isEmpty()) {
+                results[i] = BatchItemResult.badRequest(i, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+                continue;
+            }
+            valid.add(patientDTO);
+        }
+
+        Map<String, Boolean> inserted = new HashMap<>();
+        Set<String> purging = Set.of();
+        if (!valid.isEmpty()) {
+            purging = patientRepository.findPurgingIdentifiers(valid.stream().map(PatientDTO::getIdentifier).toList());
+            for (PatientUpsertRepo.Upserted patient : upsertPatients(valid)) {
+                inserted.put(patient.getIdentifier(), patient.isInserted());
+            }
+        }
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                String identifier = patientDTOs.get(i).getIdentifier();
+                Boolean created = inserted.get(identifier);
+                if (created == null && purging.contains(identifier)) {
+                    results[i] = BatchItemResult.conflict(i, "Identifier belongs to a deleted patient that is still being purged");
+                } else {
+                    results[i] = created == null ? BatchItemResult.unchanged(i)
+                            : created ? BatchItemResult.created(i) : BatchItemResult.updated(i);
+                }
+            }
+        }
+        return List.of(results);
+    }
+
     public boolean deletePatient(Long id) {
-        if (patientRepository.existsById(id)) {
+        Optional<String> identifier = patientRepository.findIdentifierById(id);
+        if (identifier.isEmpty()) {
+            return false;
+        }
+        if (purgeThreshold > 0 && observationRepository.countByPatientIdUpTo(id, purgeThreshold) >= purgeThreshold) {
+            // hidden from here on, and removed in chunks that keep each transaction short; the restriction that
+            // hides it is SQL, which a lookup answered by the second-level cache never runs. Its encounters and
+            // observations stay readable until their chunk goes, which records their deletes
+            patientRepository.findById(id).ifPresent(patient -> patient.setDeletedAt(LocalDateTime.now()));
+            evictSecondLevelAfterCommit(Patient.class, List.of(id), PatientRepo.QUERY_REGION);
+            changeFeed.record(ChangeEvent.ResourceType.PATIENT, ChangeEvent.Operation.DELETE, id);
+        } else {
+            // the encounters and observations go in the same statement (ON DELETE CASCADE), out of Hibernate's sight
+            changeFeed.recordPatientDelete(id);
+            List<Long> encounterIds = encounterRepository.findIdsByPatientId(id);
             patientRepository.deleteById(id);
-            return true;
+            if (!encounterIds.isEmpty()) {
+                evictSecondLevelAfterCommit(Encounter.class, encounterIds, EncounterRepo.QUERY_REGION);
+            }
         }
-        return false;
+        AfterCommit.run(() -> nameIndex.remove(id));
+        recentVitals.invalidateAfterCommit(List.of(id));
+        evictAfterCommit(id, identifier.get());
+        return true;
     }
 
+    @Transactional(readOnly = true)
     public List<PatientDTO> searchByFamilyName(String familyName) {
         return patientRepository.findByFamilyNameContainingIgnoreCase(familyName).stream()
                 .map(this::convertToDTO)
@@ -66,18 +281,79 @@ public class PatientService {
     }
 
 
+    @Transactional(readOnly = true)
     public List<PatientDTO> searchByGivenName(String givenName) {
         return patientRepository.findByGivenNameContainingIgnoreCase(givenName).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public List<PatientDTO> searchByName(String familyName, String givenName, int limit) {
+        if (!nameIndex.isReady()) {
+            return searchByNameInDatabase(familyName, givenName, limit);
+        }
+
+        List<Long> ids = nameIndex.search(familyName, givenName, limit);
+        Map<Long, Patient> patients = patientRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Patient::getId, Function.identity()));
+        return ids.stream()
+                .map(patients::get)
+                .filter(Objects::nonNull)
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
+    private List<PatientDTO> searchByNameInDatabase(String familyName, String givenName, int limit) {
+        List<Patient> patients = familyName != null
+                ? patientRepository.findByFamilyNameContainingIgnoreCase(familyName)
+                : patientRepository.findByGivenNameContainingIgnoreCase(givenName);
+        return patients.stream()
+                .filter(patient -> familyName == null || givenName == null
+                        || patient.getGivenName().toLowerCase().contains(givenName.toLowerCase()))
+                .limit(limit)
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public Page<PatientDTO> searchPatients(PatientSearchCriteria criteria, int page, int size, List<String> sort) {
+        if (criteria.getGender() != null && !criteria.getGender().matches("(?i)MALE|FEMALE")) {
+            throw new BadRequestException("Invalid gender value: " + criteria.getGender());
+        }
+        return patientRepository.search(criteria,
+                PageRequest.of(Math.max(page, 0), CursorPage.clampSize(size), toSort(sort)));
+    }
+
+    // sort keys use the query parameter names, a leading '-' sorts descending: sort=family,-birthDate
+    private static Sort toSort(List<String> sort) {
+        if (sort == null) {
+            return Sort.unsorted();
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        for (String key : sort) {
+            boolean descending = key.startsWith("-");
+            String name = descending ? key.substring(1) : key;
+            String property = switch (name) {
+                case "family" -> "familyName";
+                case "given" -> "givenName";
+                case "id", "identifier", "birthDate", "gender" -> name;
+                default -> throw new BadRequestException("Unsupported sort parameter: " + key);
+            };
+            orders.add(descending ? Sort.Order.desc(property) : Sort.Order.asc(property));
+        }
+        return Sort.by(orders);
+    }
+
+    // on the primary, as getPatientById
+    @Cacheable(cacheNames = CacheConfig.PATIENTS_BY_IDENTIFIER, unless = "#result == null")
     public Optional<PatientDTO> searchByIdentifier(String identifier) {
         return patientRepository.findByIdentifier(identifier)
                 .map(this::convertToDTO);
     }
 
 
+    @Transactional(readOnly = true)
     public List<PatientDTO> searchByBirthDate(LocalDate birthDate) {
         return patientRepository.findByBirthDate(birthDate).stream()
                 .map(this::convertToDTO)
@@ -85,23 +361,56 @@ public class PatientService {
     }
 
 
+    @Transactional(readOnly = true)
     public List<PatientDTO> searchByBirthDateRange(LocalDate startDate, LocalDate endDate) {
         return patientRepository.findByBirthDateBetween(startDate, endDate).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
-    private PatientDTO convertToDTO(Patient patient) {
+    // Evicting only once the write is visible keeps a concurrent read from re-caching the old row.
+    private void evictAfterCommit(Long id, String... identifiers) {
+        AfterCommit.run(() -> evict(id, identifiers));
+    }
+
+    // for rows written past Hibernate, which therefore neither evicts them from the second-level cache nor
+    // invalidates the cached queries whose results they change, e.g. an upsert or a cascading delete
+    private void evictSecondLevelAfterCommit(Class<?> entity, List<Long> ids, String queryRegion) {
+        AfterCommit.run(() -> {
+            org.hibernate.Cache cache = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+            ids.forEach(id -> cache.evictEntityData(entity, id));
+            cache.evictQueryRegion(queryRegion);
+        });
+    }
+
+    private void evict(Long id, String... identifiers) {
+        Cache patients = cacheManager.getCache(CacheConfig.PATIENTS);
+        if (patients != null) {
+            patients.evict(id);
+        }
+        Cache byIdentifier = cacheManager.getCache(CacheConfig.PATIENTS_BY_IDENTIFIER);
+        if (byIdentifier != null) {
+            for (String identifier : identifiers) {
+                if (identifier != null) {
+                    byIdentifier.evict(identifier);
+                }
+            }
+        }
+    }
+
+    PatientDTO convertToDTO(Patient patient) {
         return new PatientDTO(
                 patient.getIdentifier(),
                 patient.getGivenName(),
                 patient.getFamilyName(),
                 patient.getBirthDate(),
-                patient.getGender().name()
+                patient.getGender().name(),
+                patient.getVersion(),
+                patient.getLastModified()
         );
     }
 
-    private Patient convertToEntity(PatientDTO dto) {
+    Patient convertToEntity(PatientDTO dto) {
         Patient patient = new Patient();
         patient.setIdentifier(dto.getIdentifier());
         patient.setGivenName(dto.getGivenName());
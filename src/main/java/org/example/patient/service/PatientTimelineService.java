@@ -0,0 +1,88 @@
+package org.example.patient.service;
+
+import org.example.patient.models.CursorPage;
+import org.example.patient.models.EncounterDTO;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.PatientDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Non-blocking read streams over the keyset-paged service reads. Each page is one short transaction on a
+ * bounded-elastic worker, and at most one page is read ahead of what the client has consumed, so neither a
+ * request thread nor a pooled connection is held while a slow client reads.
+ */
+@Service
+public class PatientTimelineService {
+
+    static final int PAGE_SIZE = 500;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private EncounterService encounterService;
+
+    @Autowired
+    private ObservationService observationService;
+
+    public Flux<PatientDTO> patients() {
+        return pages(Optional.empty(), after -> patientService.getPatientsPage(after, PAGE_SIZE));
+    }
+
+    public Flux<EncounterDTO> encounters() {
+        return pages(Optional.empty(), after -> encounterService.getEncountersPage(after, PAGE_SIZE));
+    }
+
+    public Flux<ObservationDTO> observations() {
+        return pages(Optional.empty(), after -> observationService.getObservationsPage(after, PAGE_SIZE));
+    }
+
+    public Mono<Flux<EncounterDTO>> encounters(Long patientId) {
+        return forPatient(patientId, after -> encounterService.getPatientEncountersPage(patientId, after, PAGE_SIZE));
+    }
+
+    public Mono<Flux<ObservationDTO>> observations(Long patientId) {
+        return forPatient(patientId, after -> observationService.getPatientObservationsPage(patientId, after, PAGE_SIZE));
+    }
+
+    // the existence check and the first page run concurrently; empty when the patient does not exist
+    private <T> Mono<Flux<T>> forPatient(Long patientId, Function<Long, CursorPage<T>> fetch) {
+        Mono<Boolean> exists = blocking(() -> patientService.getPatientById(patientId).isPresent());
+        Mono<CursorPage<T>> firstPage = blocking(() -> fetch.apply(null));
+        return Mono.zip(exists, firstPage)
+                .filter(Tuple2::getT1)
+                .map(result -> {
+                    CursorPage<T> page = result.getT2();
+                    Flux<T> rest = page.getNextCursor() == null
+                            ? Flux.empty()
+                            : pages(Optional.of(page.getNextCursor()), fetch);
+                    return Flux.fromIterable(page.getItems()).concatWith(rest);
+                });
+    }
+
+    private static <T> Flux<T> pages(Optional<Long> start, Function<Long, CursorPage<T>> fetch) {
+        return Flux.<CursorPage<T>, Optional<Long>>generate(() -> start, (after, sink) -> {
+                    CursorPage<T> page = fetch.apply(after.orElse(null));
+                    sink.next(page);
+                    if (page.getNextCursor() == null) {
+                        sink.complete();
+                    }
+                    return Optional.ofNullable(page.getNextCursor());
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .concatMapIterable(CursorPage::getItems, 1);
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
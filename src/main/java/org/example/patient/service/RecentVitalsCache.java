@@ -0,0 +1,338 @@
+package org.example.patient.service;
+
+import jakarta.annotation.PostConstruct;
+import org.example.patient.entity.Observation;
+import org.example.patient.models.RecentVitals;
+import org.example.patient.repository.ObservationRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * The last {@code app.recent-vitals.window} of numeric observations of recently used patients, per code, in
+ * {@link VitalsRingBuffer} slots. A patient is held whole or not at all: the first read of a patient loads its
+ * window from the database, created observations are appended once their transaction commits, and any other
+ * change to a patient's observations drops the patient until it is read again. When the memory budget is used
+ * up the least recently used patient makes room. Times are kept to the millisecond.
+ */
+@Component
+public class RecentVitalsCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentVitalsCache.class);
+
+    @Autowired
+    private ObservationRepo observationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.recent-vitals.window:PT24H}")
+    private Duration window;
+
+    @Value("${app.recent-vitals.samples-per-series:256}")
+    private int samplesPerSeries;
+
+    @Value("${app.recent-vitals.max-memory:64MB}")
+    private DataSize maxMemory;
+
+    private final Lock lock = new ReentrantLock();
+    private VitalsRingBuffer buffer;
+    private String[] units;
+
+    // code -> slot for each patient held, least recently used first
+    private final LinkedHashMap<Long, Map<String, Integer>> patients = new LinkedHashMap<>(16, 0.75f, true);
+
+    // patients being loaded from the database, and whether their observations changed since the load started
+    private final Map<Long, Boolean> loading = new HashMap<>();
+
+    private final Set<Long> touchedDuringRebuild = new HashSet<>();
+    private boolean rebuilding;
+
+    @PostConstruct
+    void allocate() {
+        buffer = new VitalsRingBuffer(maxMemory.toBytes(), samplesPerSeries);
+        units = new String[buffer.slots()];
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        CompletableFuture.runAsync(this::rebuild)
+                .exceptionally(e -> {
+                    log.error("Recent vitals rebuild failed, patients are loaded on first read instead", e);
+                    return null;
+                });
+    }
+
+    public void rebuild() {
+        withLock(() -> {
+            rebuilding = true;
+            touchedDuringRebuild.clear();
+        });
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        try {
+            transaction.executeWithoutResult(status -> {
+                try (Stream<ObservationRepo.RecentSampleView> rows = observationRepository.streamRecentSamples(cutoff(window))) {
+                    List<ObservationRepo.RecentSampleView> patientRows = new ArrayList<>();
+                    rows.forEach(row -> {
+                        if (!patientRows.isEmpty() && !patientRows.get(0).getPatientId().equals(row.getPatientId())) {
+                            installRebuilt(patientRows);
+                            patientRows.clear();
+                        }
+                        patientRows.add(row);
+                    });
+                    if (!patientRows.isEmpty()) {
+                        installRebuilt(patientRows);
+                    }
+                }
+            });
+        } finally {
+            withLock(() -> {
+                rebuilding = false;
+                touchedDuringRebuild.clear();
+            });
+        }
+        log.info("Recent vitals loaded for {} patients", size());
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return patients.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The patient's samples of the last {@code within} (at most the configured window), one entry per code,
+     * optionally restricted to one code. Each code keeps at most {@code app.recent-vitals.samples-per-series}
+     * samples, the newest ones.
+     */
+    public List<RecentVitals> getRecent(Long patientId, String code, Duration within) {
+        long from = toMillis(cutoff(within.compareTo(window) < 0 ? within : window));
+        lock.lock();
+        try {
+            Map<String, Integer> series = patients.get(patientId);
+            if (series != null) {
+                return read(series, code, from);
+            }
+            loading.putIfAbsent(patientId, false);
+        } finally {
+            lock.unlock();
+        }
+
+        // not read-only, so on the primary: what a lagging replica has not replayed yet would be missing for as long as
+        // the patient is held
+        List<ObservationRepo.RecentSampleView> rows = observationRepository.findRecentSamples(patientId, cutoff(window));
+        lock.lock();
+        try {
+            if (Boolean.FALSE.equals(loading.remove(patientId)) && !patients.containsKey(patientId)) {
+                Map<String, Integer> series = install(patientId, rows);
+                if (series != null) {
+                    return read(series, code, from);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        // changed while loading, or too large for the budget: answered from the rows just read
+        return fromRows(rows, code, from);
+    }
+
+    public void addAfterCommit(Collection<Observation> observations) {
+        List<Sample> samples = new ArrayList<>();
+        for (Observation observation : observations) {
+            if (observation.getNumericValue() != null) {
+                samples.add(new Sample(observation.getPatient().getId(), observation.getCode(), observation.getUnit(),
+                        toMillis(observation.getEffectiveDateTime()), observation.getNumericValue()));
+            }
+        }
+        if (!samples.isEmpty()) {
+            AfterCommit.run(() -> withLock(() -> samples.forEach(this::add)));
+        }
+    }
+
+    public void invalidateAfterCommit(Collection<Long> patientIds) {
+        if (patientIds.isEmpty()) {
+            return;
+        }
+        AfterCommit.run(() -> withLock(() -> patientIds.forEach(this::invalidate)));
+    }
+
+    private void add(Sample sample) {
+        Long patientId = sample.patientId();
+        markChanged(patientId);
+        Map<String, Integer> series = patients.get(patientId);
+        if (series == null || sample.time() < toMillis(cutoff(window))) {
+            return;
+        }
+        Integer slot = series.get(sample.code());
+        if (slot == null) {
+            slot = allocate(patientId);
+            if (slot < 0) {
+                unload(patientId);
+                return;
+            }
+            series.put(sample.code(), slot);
+        }
+        units[slot] = sample.unit();
+        buffer.add(slot, sample.time(), sample.value());
+    }
+
+    private void invalidate(Long patientId) {
+        markChanged(patientId);
+        unload(patientId);
+    }
+
+    // a patient not held is left to the next read; one being loaded or rebuilt is loaded again later
+    private void markChanged(Long patientId) {
+        loading.replace(patientId, true);
+        if (rebuilding && !patients.containsKey(patientId)) {
+            touchedDuringRebuild.add(patientId);
+        }
+    }
+
+    private void installRebuilt(List<ObservationRepo.RecentSampleView> rows) {
+        Long patientId = rows.get(0).getPatientId();
+        withLock(() -> {
+            if (!touchedDuringRebuild.contains(patientId) && !patients.containsKey(patientId)
+                    && !loading.containsKey(patientId)) {
+                install(patientId, rows);
+            }
+        });
+    }
+
+    // null when the patient does not fit in the budget even after evicting every other patient
+    private Map<String, Integer> install(Long patientId, List<ObservationRepo.RecentSampleView> rows) {
+        Map<String, Integer> series = new HashMap<>();
+        patients.put(patientId, series);
+        // patients without recent vitals take no slot, but their number is bounded all the same
+        if (patients.size() > buffer.slots()) {
+            unload(patients.keySet().iterator().next());
+        }
+        for (ObservationRepo.RecentSampleView row : rows) {
+            Integer slot = series.get(row.getCode());
+            if (slot == null) {
+                slot = allocate(patientId);
+                if (slot < 0) {
+                    unload(patientId);
+                    return null;
+                }
+                series.put(row.getCode(), slot);
+            }
+            units[slot] = row.getUnit();
+            buffer.add(slot, toMillis(row.getEffectiveDateTime()), row.getNumericValue());
+        }
+        return series;
+    }
+
+    private int allocate(Long patientId) {
+        int slot = buffer.allocate();
+        Iterator<Map.Entry<Long, Map<String, Integer>>> leastRecentlyUsed = patients.entrySet().iterator();
+        while (slot < 0 && leastRecentlyUsed.hasNext()) {
+            Map.Entry<Long, Map<String, Integer>> evicted = leastRecentlyUsed.next();
+            if (!evicted.getKey().equals(patientId)) {
+                evicted.getValue().values().forEach(buffer::free);
+                leastRecentlyUsed.remove();
+                slot = buffer.allocate();
+            }
+        }
+        return slot;
+    }
+
+    private void unload(Long patientId) {
+        Map<String, Integer> series = patients.remove(patientId);
+        if (series != null) {
+            series.values().forEach(buffer::free);
+        }
+    }
+
+    private List<RecentVitals> read(Map<String, Integer> series, String code, long from) {
+        List<RecentVitals> recent = new ArrayList<>();
+        new TreeMap<>(series).forEach((seriesCode, slot) -> {
+            if (code == null || code.equals(seriesCode)) {
+                VitalsRingBuffer.Samples samples = buffer.read(slot, from);
+                if (samples.times().length > 0) {
+                    recent.add(toVitals(seriesCode, units[slot], samples.times(), samples.values()));
+                }
+            }
+        });
+        return recent;
+    }
+
+    private List<RecentVitals> fromRows(List<ObservationRepo.RecentSampleView> rows, String code, long from) {
+        Map<String, List<ObservationRepo.RecentSampleView>> byCode = new TreeMap<>();
+        for (ObservationRepo.RecentSampleView row : rows) {
+            if ((code == null || code.equals(row.getCode())) && toMillis(row.getEffectiveDateTime()) >= from) {
+                byCode.computeIfAbsent(row.getCode(), c -> new ArrayList<>()).add(row);
+            }
+        }
+        List<RecentVitals> recent = new ArrayList<>();
+        byCode.forEach((seriesCode, samples) -> {
+            List<ObservationRepo.RecentSampleView> newest = samples.subList(Math.max(0, samples.size() - samplesPerSeries), samples.size());
+            long[] times = newest.stream().mapToLong(row -> toMillis(row.getEffectiveDateTime())).toArray();
+            double[] values = newest.stream().mapToDouble(ObservationRepo.RecentSampleView::getNumericValue).toArray();
+            recent.add(toVitals(seriesCode, newest.get(newest.size() - 1).getUnit(), times, values));
+        });
+        return recent;
+    }
+
+    private static RecentVitals toVitals(String code, String unit, long[] times, double[] values) {
+        List<LocalDateTime> effectiveDateTimes = new ArrayList<>(times.length);
+        for (long time : times) {
+            effectiveDateTimes.add(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneOffset.UTC));
+        }
+        return new RecentVitals(code, unit, effectiveDateTimes, values);
+    }
+
+    private static LocalDateTime cutoff(Duration within) {
+        return LocalDateTime.now().minus(within);
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private record Sample(Long patientId, String code, String unit, long time, double value) {
+    }
+
+    private void withLock(Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.patient.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-capacity series of (time, value) samples packed into a single direct buffer, so the samples live
+ * outside the Java heap and cost 16 bytes each whatever their number. The buffer is cut into equal slots,
+ * one per series; a slot is a ring of samples kept in time order, and a full one drops its oldest sample
+ * to take a newer one. Not thread-safe.
+ */
+final class VitalsRingBuffer {
+
+    static final int SAMPLE_BYTES = Long.BYTES + Double.BYTES;
+
+    private final ByteBuffer samples;
+    private final int capacity;
+    private final int[] heads;
+    private final int[] counts;
+    private final int[] freeSlots;
+    private int freeCount;
+
+    VitalsRingBuffer(long maxBytes, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("A series must hold at least one sample");
+        }
+        long slotBytes = (long) capacity * SAMPLE_BYTES;
+        int slots = (int) Math.min(maxBytes / slotBytes, Integer.MAX_VALUE / slotBytes);
+        if (slots < 1) {
+            throw new IllegalArgumentException("The memory budget is smaller than one series of " + capacity + " samples");
+        }
+        this.samples = ByteBuffer.allocateDirect((int) (slots * slotBytes));
+        this.capacity = capacity;
+        this.heads = new int[slots];
+        this.counts = new int[slots];
+        this.freeSlots = new int[slots];
+        for (int i = 0; i < slots; i++) {
+            freeSlots[i] = slots - 1 - i;
+        }
+        this.freeCount = slots;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int slots() {
+        return heads.length;
+    }
+
+    int freeSlots() {
+        return freeCount;
+    }
+
+    // -1 when every slot is taken
+    int allocate() {
+        if (freeCount == 0) {
+            return -1;
+        }
+        int slot = freeSlots[--freeCount];
+        heads[slot] = 0;
+        counts[slot] = 0;
+        return slot;
+    }
+
+    void free(int slot) {
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Inserts a sample in time order. Samples normally arrive in order and are appended; a late one is moved
+     * back past the newer samples. A full series only takes a sample that is not older than all it holds.
+     */
+    void add(int slot, long time, double value) {
+        int count = counts[slot];
+        if (count == capacity) {
+            if (time < timeAt(slot, 0)) {
+                return;
+            }
+            heads[slot] = (heads[slot] + 1) % capacity;
+            count--;
+        }
+        int position = count;
+        while (position > 0 && timeAt(slot, position - 1) > time) {
+            put(slot, position, timeAt(slot, position - 1), valueAt(slot, position - 1));
+            position--;
+        }
+        put(slot, position, time, value);
+        counts[slot] = count + 1;
+    }
+
+    /**
+     * The samples of the series at or after {@code from}, oldest first.
+     */
+    Samples read(int slot, long from) {
+        int count = counts[slot];
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timeAt(slot, middle) < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        long[] times = new long[count - low];
+        double[] values = new double[count - low];
+        for (int i = low; i < count; i++) {
+            times[i - low] = timeAt(slot, i);
+            values[i - low] = valueAt(slot, i);
+        }
+        return new Samples(times, values);
+    }
+
+    private long timeAt(int slot, int index) {
+        return samples.getLong(offset(slot, index));
+    }
+
+    private double valueAt(int slot, int index) {
+        return samples.getDouble(offset(slot, index) + Long.BYTES);
+    }
+
+    private void put(int slot, int index, long time, double value) {
+        int offset = offset(slot, index);
+        samples.putLong(offset, time);
+        samples.putDouble(offset + Long.BYTES, value);
+    }
+
+    private int offset(int slot, int index) {
+        return (slot * capacity + (heads[slot] + index) % capacity) * SAMPLE_BYTES;
+    }
+
+    record Samples(long[] times, double[] values) {
+    }
+}
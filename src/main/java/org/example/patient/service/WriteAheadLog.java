@@ -0,0 +1,241 @@
+package org.example.patient.service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log over fixed-size, memory-mapped segment files. A record is its payload length, a CRC32 of
+ * the payload and the payload. {@link #append} returns once the record has been forced to disk; appenders
+ * that arrive while a force is running are covered by the next one, so concurrent appends share the cost.
+ * Positions are byte offsets across all segments, so a position's segment is {@code position / segmentSize}.
+ * {@link #checkpoint} durably records how far the log has been consumed and deletes the segments before it.
+ */
+final class WriteAheadLog {
+
+    private static final int HEADER = 8;
+    private static final int END_OF_SEGMENT = -1;
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String SUFFIX = ".log";
+
+    static final class Entry {
+        final long end;
+        final byte[] payload;
+
+        Entry(long end, byte[] payload) {
+            this.end = end;
+            this.payload = payload;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final NavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    private final Object forceLock = new Object();
+
+    // guarded by this
+    private long appendPosition;
+    private volatile long durablePosition;
+    private volatile long checkpointPosition;
+
+    WriteAheadLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Maps the existing segments and returns the records after the last checkpoint. The first record that
+     * is incomplete or fails its checksum ends the log: it was never acknowledged, and it is overwritten by
+     * the next append.
+     */
+    synchronized List<Entry> open() throws IOException {
+        Files.createDirectories(directory);
+        Path checkpoint = directory.resolve(CHECKPOINT);
+        checkpointPosition = Files.exists(checkpoint) ? ByteBuffer.wrap(Files.readAllBytes(checkpoint)).getLong() : 0;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                long segment = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                if (segment < segment(checkpointPosition)) {
+                    Files.delete(file);
+                } else {
+                    segments.put(segment, map(file));
+                }
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        long end = scan(checkpointPosition, Long.MAX_VALUE, Integer.MAX_VALUE, true, entries);
+        MappedByteBuffer last = segments.get(segment(end));
+        if (last != null && offset(end) + 4 <= segmentSize && last.getInt(offset(end)) != 0) {
+            // clear the torn record so that a later recovery cannot mistake its remains for data
+            last.put(offset(end), new byte[segmentSize - offset(end)]);
+            last.force();
+        }
+        appendPosition = end;
+        durablePosition = end;
+        return entries;
+    }
+
+    long append(byte[] payload) throws IOException {
+        if (HEADER + payload.length > segmentSize) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit in a log segment");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        long end;
+        synchronized (this) {
+            if (offset(appendPosition) + HEADER + payload.length > segmentSize) {
+                if (offset(appendPosition) + 4 <= segmentSize) {
+                    segments.get(segment(appendPosition)).putInt(offset(appendPosition), END_OF_SEGMENT);
+                }
+                appendPosition = (segment(appendPosition) + 1) * segmentSize;
+            }
+            MappedByteBuffer buffer = segments.get(segment(appendPosition));
+            if (buffer == null) {
+                buffer = createSegment(segment(appendPosition));
+            }
+            int offset = offset(appendPosition);
+            buffer.putInt(offset, payload.length);
+            buffer.putInt(offset + 4, (int) crc.getValue());
+            buffer.put(offset + HEADER, payload);
+            appendPosition += HEADER + payload.length;
+            end = appendPosition;
+        }
+        force(end);
+        return end;
+    }
+
+    // the durable records from the given position on, stopping after the one that crosses maxBytes
+    List<Entry> read(long from, int maxBytes) {
+        List<Entry> entries = new ArrayList<>();
+        scan(from, durablePosition, maxBytes, false, entries);
+        return entries;
+    }
+
+    void checkpoint(long position) throws IOException {
+        Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, position));
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        checkpointPosition = position;
+
+        for (Long segment : segments.headMap(segment(position)).keySet()) {
+            segments.remove(segment);
+            Files.deleteIfExists(segmentFile(segment));
+        }
+    }
+
+    long checkpointPosition() {
+        return checkpointPosition;
+    }
+
+    // bytes appended but not yet checkpointed, including the unused tails of rolled segments
+    long backlog() {
+        return durablePosition - checkpointPosition;
+    }
+
+    private long scan(long from, long to, int maxBytes, boolean verify, List<Entry> entries) {
+        long position = from;
+        long bytes = 0;
+        while (bytes < maxBytes) {
+            MappedByteBuffer buffer = segments.get(segment(position));
+            int offset = offset(position);
+            if (buffer == null) {
+                break;
+            }
+            int length = offset + HEADER <= segmentSize ? buffer.getInt(offset) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT) {
+                position = (segment(position) + 1) * segmentSize;
+                continue;
+            }
+            if (length <= 0 || offset + HEADER + length > segmentSize || position + HEADER + length > to) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER, payload);
+            if (verify) {
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                    break;
+                }
+            }
+            position += HEADER + length;
+            bytes += HEADER + length;
+            entries.add(new Entry(position, payload));
+        }
+        return position;
+    }
+
+    private void force(long position) throws IOException {
+        synchronized (forceLock) {
+            long from = durablePosition;
+            if (from >= position) {
+                return;
+            }
+            long to;
+            synchronized (this) {
+                to = appendPosition;
+            }
+            for (long segment = segment(from); segment <= segment(to - 1); segment++) {
+                int start = segment == segment(from) ? offset(from) : 0;
+                int end = segment == segment(to - 1) ? offset(to - 1) + 1 : segmentSize;
+                segments.get(segment).force(start, end - start);
+            }
+            durablePosition = to;
+        }
+    }
+
+    private MappedByteBuffer createSegment(long segment) throws IOException {
+        Path file = segmentFile(segment);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(segmentSize);
+            raf.getChannel().force(true);
+        }
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // not every platform can sync a directory; the segment is still written and forced
+        }
+        MappedByteBuffer buffer = map(file);
+        segments.put(segment, buffer);
+        return buffer;
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segmentFile(long segment) {
+        return directory.resolve(String.format(Locale.ROOT, "%016d", segment) + SUFFIX);
+    }
+
+    private long segment(long position) {
+        return position / segmentSize;
+    }
+
+    private int offset(long position) {
+        return (int) (position % segmentSize);
+    }
+}
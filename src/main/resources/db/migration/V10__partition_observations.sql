@@ -0,0 +1,67 @@
+-- Range-partition observations by month of effective_date_time. Time-bounded reads then only touch the
+-- months they cover, and old months can be detached or dropped whole instead of deleted row by row.
+-- The rows are copied once into the new table; on a large table this migration takes a while and holds
+-- the table locked. ObservationPartitionService creates the months ahead from here on.
+
+ALTER TABLE observations RENAME TO observations_unpartitioned;
+ALTER INDEX observations_pkey RENAME TO observations_unpartitioned_pkey;
+DROP INDEX IF EXISTS idx_observations_patient_time;
+DROP INDEX IF EXISTS idx_observations_code_time;
+DROP INDEX IF EXISTS idx_observations_encounter;
+DROP INDEX IF EXISTS idx_observations_patient_code_time;
+DROP INDEX IF EXISTS idx_observations_patient_id;
+
+-- the partition key has to be part of the primary key; ids still come from observations_seq alone
+CREATE TABLE observations (
+    id                  BIGINT       NOT NULL,
+    patient_id          BIGINT       NOT NULL REFERENCES patients (id),
+    encounter_id        BIGINT REFERENCES encounters (id),
+    code                VARCHAR(255) NOT NULL,
+    value               VARCHAR(255) NOT NULL,
+    effective_date_time TIMESTAMP(6) NOT NULL,
+    numeric_value       DOUBLE PRECISION,
+    unit                VARCHAR(255),
+    version             BIGINT       NOT NULL DEFAULT 0,
+    last_modified       TIMESTAMP(6) NOT NULL DEFAULT localtimestamp,
+    PRIMARY KEY (id, effective_date_time)
+) PARTITION BY RANGE (effective_date_time);
+
+-- rows outside every monthly partition, e.g. far in the past or future
+CREATE TABLE observations_default PARTITION OF observations DEFAULT;
+
+-- one partition per month from the oldest row (at most 20 years back) to three months ahead, and on
+-- to the newest row if that is later (at most 5 years further)
+DO $$
+DECLARE
+    this_month timestamp := date_trunc('month', localtimestamp);
+    last_month timestamp := date_trunc('month', localtimestamp) + interval '3 months';
+    oldest     timestamp;
+    newest     timestamp;
+    month      timestamp;
+BEGIN
+    SELECT date_trunc('month', min(effective_date_time)), date_trunc('month', max(effective_date_time))
+    INTO oldest, newest FROM observations_unpartitioned;
+    month := greatest(least(coalesce(oldest, this_month), this_month), last_month - interval '20 years');
+    last_month := greatest(last_month, least(coalesce(newest, last_month), last_month + interval '5 years'));
+    WHILE month <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF observations FOR VALUES FROM (%L) TO (%L)',
+                       'observations_p' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+        month := month + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO observations (id, patient_id, encounter_id, code, value, effective_date_time, numeric_value, unit,
+                          version, last_modified)
+SELECT id, patient_id, encounter_id, code, value, effective_date_time, numeric_value, unit, version, last_modified
+FROM observations_unpartitioned;
+
+DROP TABLE observations_unpartitioned;
+
+-- the same indexes as before, created on every partition
+CREATE INDEX idx_observations_patient_time ON observations (patient_id, effective_date_time);
+CREATE INDEX idx_observations_code_time ON observations (code, effective_date_time);
+CREATE INDEX idx_observations_encounter ON observations (encounter_id);
+CREATE INDEX idx_observations_patient_code_time ON observations (patient_id, code, effective_date_time);
+CREATE INDEX idx_observations_patient_id ON observations (patient_id, id);
+
+ANALYZE observations;
@@ -0,0 +1,32 @@
+-- Deleting a patient or an encounter takes its rows in the child tables with it, in the same statement,
+-- instead of Hibernate loading and removing each child. Re-adding the foreign keys checks every existing
+-- row once, so on a large observations table this migration takes a while.
+
+-- the names differ on databases that Hibernate created before Flyway took over
+DO $$
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN
+        SELECT conrelid::regclass AS child, conname
+        FROM pg_constraint
+        WHERE contype = 'f'
+          AND conparentid = 0
+          AND conrelid IN ('encounters'::regclass, 'observations'::regclass)
+          AND confrelid IN ('patients'::regclass, 'encounters'::regclass)
+    LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.child, fk.conname);
+    END LOOP;
+END $$;
+
+ALTER TABLE encounters ADD CONSTRAINT encounters_patient_id_fkey
+    FOREIGN KEY (patient_id) REFERENCES patients (id) ON DELETE CASCADE;
+ALTER TABLE observations ADD CONSTRAINT observations_patient_id_fkey
+    FOREIGN KEY (patient_id) REFERENCES patients (id) ON DELETE CASCADE;
+ALTER TABLE observations ADD CONSTRAINT observations_encounter_id_fkey
+    FOREIGN KEY (encounter_id) REFERENCES encounters (id) ON DELETE CASCADE;
+
+-- set on a patient whose rows are too many to delete in one transaction; PatientPurgeService removes
+-- them in chunks and then the patient itself
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS deleted_at timestamp(6);
+CREATE INDEX IF NOT EXISTS idx_patients_deleted_at ON patients (deleted_at) WHERE deleted_at IS NOT NULL;
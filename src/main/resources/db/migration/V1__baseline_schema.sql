@@ -0,0 +1,33 @@
+-- Baseline schema matching the entity mappings. Every statement is idempotent so databases
+-- that were previously managed by ddl-auto=update can be brought under Flyway unchanged.
+
+CREATE TABLE IF NOT EXISTS patients (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    identifier  VARCHAR(255) NOT NULL UNIQUE,
+    given_name  VARCHAR(255) NOT NULL,
+    family_name VARCHAR(255) NOT NULL,
+    birth_date  DATE         NOT NULL,
+    gender      VARCHAR(255) NOT NULL CHECK (gender IN ('MALE', 'FEMALE'))
+);
+
+CREATE TABLE IF NOT EXISTS encounters (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    patient_id      BIGINT       NOT NULL REFERENCES patients (id),
+    start_date      DATE         NOT NULL,
+    end_date        DATE         NOT NULL,
+    encounter_class VARCHAR(255) NOT NULL CHECK (encounter_class IN ('INPATIENT', 'OUTPATIENT', 'EMERGENCY'))
+);
+
+CREATE TABLE IF NOT EXISTS observations (
+    id                  BIGINT       NOT NULL PRIMARY KEY,
+    patient_id          BIGINT       NOT NULL REFERENCES patients (id),
+    encounter_id        BIGINT REFERENCES encounters (id),
+    code                VARCHAR(255) NOT NULL,
+    value               VARCHAR(255) NOT NULL,
+    effective_date_time TIMESTAMP(6) NOT NULL
+);
+
+CREATE SEQUENCE IF NOT EXISTS observations_seq START WITH 1 INCREMENT BY 50;
+
+-- observations used to be IDENTITY generated; move the pooled sequence past any existing rows
+SELECT setval('observations_seq', COALESCE((SELECT MAX(id) FROM observations), 0) + 1, false);
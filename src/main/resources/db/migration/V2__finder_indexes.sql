@@ -0,0 +1,20 @@
+-- ObservationRepo.findByPatientId / findDtosByPatientId, and patient time-range reads
+CREATE INDEX IF NOT EXISTS idx_observations_patient_time ON observations (patient_id, effective_date_time);
+
+-- ObservationRepo.findByCode, and code time-range reads
+CREATE INDEX IF NOT EXISTS idx_observations_code_time ON observations (code, effective_date_time);
+
+-- ObservationRepo.findByEncounterId / findDtosByEncounterId
+CREATE INDEX IF NOT EXISTS idx_observations_encounter ON observations (encounter_id);
+
+-- EncounterRepo.findByPatientId / findDtosByPatientId
+CREATE INDEX IF NOT EXISTS idx_encounters_patient_start ON encounters (patient_id, start_date);
+
+-- PatientRepo.findByBirthDate / findByBirthDateBetween
+CREATE INDEX IF NOT EXISTS idx_patients_birth_date ON patients (birth_date);
+
+-- PatientRepo.find*ContainingIgnoreCase compile to upper(column) like upper(?), which only a
+-- trigram index on the same expression can serve
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_patients_family_name_trgm ON patients USING gin (upper(family_name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_patients_given_name_trgm ON patients USING gin (upper(given_name) gin_trgm_ops);
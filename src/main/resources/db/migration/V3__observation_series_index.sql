@@ -0,0 +1,2 @@
+-- ObservationRepo.findDtosInRange / streamSamples: one patient's series for one code over a time window
+CREATE INDEX IF NOT EXISTS idx_observations_patient_code_time ON observations (patient_id, code, effective_date_time);
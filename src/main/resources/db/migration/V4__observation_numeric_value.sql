@@ -0,0 +1,10 @@
+-- typed copy of observations.value for aggregation in SQL; filled by ObservationValues on write
+ALTER TABLE observations ADD COLUMN IF NOT EXISTS numeric_value double precision;
+ALTER TABLE observations ADD COLUMN IF NOT EXISTS unit varchar(255);
+
+-- backfill with the same rule as ObservationValues: a number optionally followed by a unit
+UPDATE observations
+SET numeric_value = cast(substring(value from '^\s*([-+]?[0-9]+(?:\.[0-9]+)?)') as double precision),
+    unit = nullif(substring(value from '^\s*[-+]?[0-9]+(?:\.[0-9]+)?\s*(.*?)\s*$'), '')
+WHERE numeric_value IS NULL
+  AND value ~ '^\s*[-+]?[0-9]+(\.[0-9]+)?\s*([^0-9\s/.+-].*)?$';
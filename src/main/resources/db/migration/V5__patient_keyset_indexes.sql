@@ -0,0 +1,4 @@
+-- EncounterRepo / ObservationRepo.findByPatientIdAndIdGreaterThanOrderByIdAsc: keyset pages of one
+-- patient's rows, read in id order without a sort
+CREATE INDEX IF NOT EXISTS idx_encounters_patient_id ON encounters (patient_id, id);
+CREATE INDEX IF NOT EXISTS idx_observations_patient_id ON observations (patient_id, id);
@@ -0,0 +1,27 @@
+-- PatientImportService: job checkpoints, advanced in the same transaction as each loaded batch so a
+-- restarted job resumes after the last committed one
+CREATE TABLE IF NOT EXISTS import_jobs (
+    id                VARCHAR(36)   NOT NULL PRIMARY KEY,
+    status            VARCHAR(255)  NOT NULL CHECK (status IN ('QUEUED', 'RUNNING', 'COMPLETED', 'FAILED')),
+    format            VARCHAR(255)  NOT NULL,
+    source_path       VARCHAR(1024) NOT NULL,
+    processed_records BIGINT        NOT NULL,
+    loaded_records    BIGINT        NOT NULL,
+    rejected_records  BIGINT        NOT NULL,
+    error             VARCHAR(4000),
+    created_at        TIMESTAMP(6)  NOT NULL,
+    updated_at        TIMESTAMP(6)  NOT NULL
+);
+
+-- rejected-rows report, written with the batch that rejected them
+CREATE TABLE IF NOT EXISTS import_rejections (
+    id            BIGINT        NOT NULL PRIMARY KEY,
+    job_id        VARCHAR(36)   NOT NULL REFERENCES import_jobs (id) ON DELETE CASCADE,
+    record_number BIGINT        NOT NULL,
+    content       VARCHAR(4000),
+    errors        VARCHAR(4000) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_import_rejections_job ON import_rejections (job_id, record_number);
+
+CREATE SEQUENCE IF NOT EXISTS import_rejections_seq START WITH 1 INCREMENT BY 50;
@@ -0,0 +1,8 @@
+-- optimistic locking (@Version) and the ETag / Last-Modified of each row; a non-volatile default is
+-- evaluated once and kept in the catalog, so existing rows are not rewritten
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS last_modified timestamp(6) NOT NULL DEFAULT localtimestamp;
+ALTER TABLE encounters ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+ALTER TABLE encounters ADD COLUMN IF NOT EXISTS last_modified timestamp(6) NOT NULL DEFAULT localtimestamp;
+ALTER TABLE observations ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+ALTER TABLE observations ADD COLUMN IF NOT EXISTS last_modified timestamp(6) NOT NULL DEFAULT localtimestamp;
@@ -0,0 +1,13 @@
+-- ObservationIngestService: one row per drained submission, written in the same transaction as its
+-- observations, so a submission replayed from the write-ahead log after a crash is recognised and skipped
+CREATE TABLE IF NOT EXISTS ingest_submissions (
+    id                VARCHAR(36)   NOT NULL PRIMARY KEY,
+    status            VARCHAR(255)  NOT NULL CHECK (status IN ('COMPLETED', 'FAILED')),
+    observation_count INTEGER       NOT NULL,
+    created_count     INTEGER       NOT NULL,
+    rejected_count    INTEGER       NOT NULL,
+    rejections        TEXT,
+    error             VARCHAR(4000),
+    received_at       TIMESTAMP(6)  NOT NULL,
+    completed_at      TIMESTAMP(6)  NOT NULL
+);
@@ -0,0 +1,16 @@
+-- transactional outbox behind GET /api/changes: one row per created, updated or deleted record, written in
+-- the transaction that made the change. The feed is ordered by (txid, id) and only serves rows whose
+-- transaction is older than every transaction still running, so rows cannot appear behind a reader's cursor.
+CREATE TABLE IF NOT EXISTS change_events (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    txid          BIGINT       NOT NULL DEFAULT pg_current_xact_id()::text::bigint,
+    resource_type VARCHAR(255) NOT NULL CHECK (resource_type IN ('PATIENT', 'ENCOUNTER', 'OBSERVATION')),
+    resource_id   BIGINT       NOT NULL,
+    operation     VARCHAR(255) NOT NULL CHECK (operation IN ('CREATE', 'UPDATE', 'DELETE')),
+    occurred_at   TIMESTAMP(6) NOT NULL DEFAULT localtimestamp
+);
+
+CREATE INDEX IF NOT EXISTS idx_change_events_position ON change_events (txid, id);
+
+-- retention deletes by age; rows arrive in time order, so a BRIN index stays tiny and cheap to maintain
+CREATE INDEX IF NOT EXISTS idx_change_events_occurred_at ON change_events USING brin (occurred_at);
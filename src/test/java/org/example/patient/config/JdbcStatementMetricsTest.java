@@ -0,0 +1,81 @@
+package org.example.patient.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbc.JdbcConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("JDBC Statement Metrics Tests")
+class JdbcStatementMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        registry = new SimpleMeterRegistry();
+        connection = DriverManager.getConnection("jdbc:h2:mem:statement-metrics");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    @DisplayName("Should time each executed statement under its SQL verb and count them for the thread")
+    void testTimesStatementsByOperation() throws SQLException {
+        JdbcStatementMetrics metrics = new JdbcStatementMetrics(registry, Duration.ofMinutes(1), 10);
+        Connection wrapped = metrics.wrap(connection);
+
+        try (Statement statement = wrapped.createStatement()) {
+            statement.execute("create table t (id bigint)");
+        }
+        try (PreparedStatement insert = wrapped.prepareStatement("insert into t values (?)")) {
+            for (long id = 1; id <= 3; id++) {
+                insert.setLong(1, id);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            insert.setLong(1, 4);
+            insert.executeUpdate();
+        }
+        try (PreparedStatement select = wrapped.prepareStatement("  SELECT count(*) from t")) {
+            select.executeQuery().close();
+        }
+
+        assertEquals(2, registry.get("jdbc.statements").tag("operation", "insert").timer().count());
+        assertEquals(1, registry.get("jdbc.statements").tag("operation", "select").timer().count());
+        assertEquals(1, registry.get("jdbc.statements").tag("operation", "other").timer().count());
+        assertEquals(0, registry.get("jdbc.statements.slow").counter().count());
+        assertEquals(4, metrics.takeThreadCount());
+        assertEquals(0, metrics.takeThreadCount());
+    }
+
+    @Test
+    @DisplayName("Should count every statement over the threshold and still unwrap to the driver's connection")
+    void testSlowStatementsAndUnwrap() throws SQLException {
+        JdbcStatementMetrics metrics = new JdbcStatementMetrics(registry, Duration.ZERO, 1);
+        Connection wrapped = metrics.wrap(connection);
+
+        try (Statement statement = wrapped.createStatement()) {
+            statement.execute("select 1");
+            statement.execute("select 2");
+        }
+
+        assertEquals(2, registry.get("jdbc.statements.slow").counter().count());
+        assertTrue(wrapped.isWrapperFor(JdbcConnection.class));
+        assertSame(connection, wrapped.unwrap(JdbcConnection.class));
+    }
+}
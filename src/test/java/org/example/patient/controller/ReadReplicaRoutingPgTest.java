@@ -0,0 +1,178 @@
+package org.example.patient.controller;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.repository.EmbeddedPostgresSupport;
+import org.example.patient.service.PatientService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// the routing of whole requests, through the controllers: as in ReadReplicaPgTest the replica is a second embedded
+// PostgreSQL that is migrated but not replicated, so a row that only one of them holds shows which one served it
+@SpringBootTest
+@AutoConfigureMockMvc
+@DisplayName("Read Replica Routing Tests (PostgreSQL)")
+class ReadReplicaRoutingPgTest {
+
+    private static final long PATIENT_ID = 900001L;
+
+    @TempDir
+    static Path directory;
+
+    private static EmbeddedPostgres replica;
+    private static JdbcTemplate replicaJdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) throws IOException {
+        EmbeddedPostgresSupport.register(registry);
+        replica = EmbeddedPostgres.start();
+        Flyway.configure().dataSource(replica.getPostgresDatabase()).load().migrate();
+        replicaJdbcTemplate = new JdbcTemplate(replica.getPostgresDatabase());
+        registry.add("app.replicas.urls", () -> replica.getJdbcUrl("postgres", "postgres"));
+        registry.add("app.replicas.lag-query", () -> "select 0");
+        registry.add("app.replicas.lag-check-interval", () -> "50ms");
+        registry.add("app.ingest.directory", () -> directory.resolve("ingest").toString());
+        registry.add("app.import.directory", () -> directory.resolve("imports").toString());
+        registry.add("spring.cache.type", () -> "caffeine");
+    }
+
+    @AfterAll
+    static void stopReplica() throws IOException {
+        replica.close();
+    }
+
+    // the patient on both databases, and a replica-only patient that shows once the replica serves reads
+    @BeforeEach
+    void setUp() {
+        for (JdbcTemplate template : new JdbcTemplate[]{jdbcTemplate, replicaJdbcTemplate}) {
+            template.update("insert into patients (id, identifier, given_name, family_name, birth_date, gender) "
+                    + "values (?, 'MRN-ROUTE', 'John', 'Doe', date '1985-06-15', 'MALE')", PATIENT_ID);
+        }
+        replicaJdbcTemplate.update("insert into patients (id, identifier, given_name, family_name, birth_date, gender) "
+                + "values (?, 'MRN-REPLICA', 'Jane', 'Doe', date '1990-01-01', 'FEMALE')", PATIENT_ID + 1);
+        for (int i = 0; i < 100 && patientService.getAllPatients().stream().map(PatientDTO::getIdentifier)
+                .noneMatch("MRN-REPLICA"::equals); i++) {
+            sleep();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (JdbcTemplate template : new JdbcTemplate[]{jdbcTemplate, replicaJdbcTemplate}) {
+            template.update("delete from observations");
+            template.update("delete from encounters");
+            template.update("delete from patients");
+            template.update("delete from import_jobs");
+            template.update("delete from change_events");
+        }
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    @DisplayName("Should read and save a resumed import on the primary")
+    void testResumeImport() throws Exception {
+        Path source = Files.writeString(directory.resolve("patients.ndjson"),
+                "{\"identifier\":\"MRN-RESUMED\",\"givenName\":\"Jim\",\"familyName\":\"Doe\",\"birthDate\":\"1995-01-02\",\"gender\":\"MALE\"}\n");
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("insert into import_jobs (id, status, format, source_path, processed_records, loaded_records, "
+                + "rejected_records, error, created_at, updated_at) values ('route-test', 'FAILED', 'NDJSON', ?, 0, 0, 0, "
+                + "'connection reset', ?, ?)", source.toString(), now, now);
+
+        mockMvc.perform(post("/api/import/route-test/resume"))
+                .andExpect(status().isAccepted());
+
+        String status = null;
+        for (int i = 0; i < 500 && !"COMPLETED".equals(status); i++) {
+            sleep();
+            status = jdbcTemplate.queryForObject("select status from import_jobs where id = 'route-test'", String.class);
+        }
+        assertEquals("COMPLETED", status);
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from patients where identifier = 'MRN-RESUMED'", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Should read a patient's encounters on the replica after looking the patient up on the primary")
+    void testPatientEncounters() throws Exception {
+        replicaJdbcTemplate.update("insert into encounters (id, patient_id, start_date, end_date, encounter_class) "
+                + "values (900001, ?, date '2024-01-01', date '2024-01-02', 'EMERGENCY')", PATIENT_ID);
+
+        mockMvc.perform(get("/api/patients/{id}/encounters", PATIENT_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].encounterClass").value("EMERGENCY"));
+    }
+
+    @Test
+    @DisplayName("Should read a patient's observations on the replica after looking the patient up on the primary")
+    void testPatientObservations() throws Exception {
+        insertObservation(replicaJdbcTemplate, "heart-rate", LocalDateTime.of(2024, 1, 1, 8, 0));
+
+        mockMvc.perform(get("/api/patients/{id}/observations", PATIENT_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].code").value("heart-rate"));
+    }
+
+    @Test
+    @DisplayName("Should load a patient's recent vitals from the primary, as they are held in memory afterwards")
+    void testRecentVitals() throws Exception {
+        LocalDateTime effectiveDateTime = LocalDateTime.now().minusHours(1);
+        insertObservation(jdbcTemplate, "heart-rate", effectiveDateTime);
+        insertObservation(replicaJdbcTemplate, "respiratory-rate", effectiveDateTime);
+
+        mockMvc.perform(get("/api/patients/{id}/observations/recent", PATIENT_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].code").value("heart-rate"));
+    }
+
+    private static void insertObservation(JdbcTemplate template, String code, LocalDateTime effectiveDateTime) {
+        template.update("insert into observations (id, patient_id, code, value, numeric_value, effective_date_time) "
+                + "values (900001, ?, ?, '72', 72, ?)", PATIENT_ID, code, effectiveDateTime);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.example.patient.repository;
+
+import org.example.patient.config.CacheConfig;
+import org.example.patient.exceptions.CursorExpiredException;
+import org.example.patient.models.ChangeEventDTO;
+import org.example.patient.models.ChangeFeed;
+import org.example.patient.models.EncounterDTO;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.service.ChangeFeedService;
+import org.example.patient.service.EncounterService;
+import org.example.patient.service.ObservationService;
+import org.example.patient.service.PatientNameIndex;
+import org.example.patient.service.PatientService;
+import org.example.patient.service.RecentVitalsCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the feed only serves committed transactions, so the test commits instead of rolling back
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@Import({CacheConfig.class, ChangeFeedService.class, RecentVitalsCache.class, PatientService.class, PatientNameIndex.class,
+        EncounterService.class, ObservationService.class})
+@DisplayName("Change Feed Tests (PostgreSQL)")
+class ChangeFeedPgTest {
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private EncounterService encounterService;
+
+    @Autowired
+    private ObservationService observationService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from observations");
+        jdbcTemplate.update("delete from encounters");
+        jdbcTemplate.update("delete from patients");
+        jdbcTemplate.update("delete from change_events");
+    }
+
+    @Test
+    @DisplayName("Should record every write, including the rows a patient delete cascades to, and page by cursor")
+    void testFeed() {
+        Long patientId = createPatient("MRN-CF-1");
+        patientService.updatePatient(patientId, new PatientDTO("MRN-CF-1", "Johnny", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+        encounterService.createEncounter(new EncounterDTO(patientId, LocalDate.of(2025, 12, 1), LocalDate.of(2025, 12, 2), "INPATIENT"));
+        observationService.createObservations(List.of(
+                new ObservationDTO(patientId, null, "8867-4", "72 bpm", LocalDateTime.of(2025, 12, 1, 8, 0)),
+                new ObservationDTO(patientId, null, "8867-4", "75 bpm", LocalDateTime.of(2025, 12, 1, 9, 0))));
+        patientService.deletePatient(patientId);
+
+        ChangeFeed first = changeFeedService.getChanges(null, 3);
+        ChangeFeed rest = changeFeedService.getChanges(first.getCursor(), 100);
+        ChangeFeed end = changeFeedService.getChanges(rest.getCursor(), 100);
+
+        assertTrue(first.isHasMore());
+        assertEquals(List.of("PATIENT CREATE", "PATIENT UPDATE", "ENCOUNTER CREATE"), describe(first.getChanges()));
+        assertEquals(List.of("OBSERVATION CREATE", "OBSERVATION CREATE", "OBSERVATION DELETE", "OBSERVATION DELETE",
+                "ENCOUNTER DELETE", "PATIENT DELETE"), describe(rest.getChanges()));
+        assertFalse(rest.isHasMore());
+        assertTrue(end.getChanges().isEmpty());
+        assertEquals(rest.getCursor(), end.getCursor());
+        assertThrows(CursorExpiredException.class, () -> changeFeedService.getChanges(Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    @DisplayName("Should hold back changes committed after an older transaction that is still running")
+    void testRunningTransactionHoldsBackNewerChanges() {
+        TransactionStatus running = transactionManager.getTransaction(
+                new DefaultTransactionDefinition(DefaultTransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        Long early = createPatient("MRN-CF-2");
+        Long later = CompletableFuture.supplyAsync(() -> createPatient("MRN-CF-3")).join();
+
+        assertTrue(changeFeedService.getChanges(null, 10).getChanges().isEmpty());
+
+        transactionManager.commit(running);
+        List<ChangeEventDTO> changes = changeFeedService.getChanges(null, 10).getChanges();
+
+        assertEquals(List.of(early, later), changes.stream().map(ChangeEventDTO::getResourceId).toList());
+    }
+
+    @Test
+    @DisplayName("Should complete a long poll as soon as a change commits")
+    void testLongPoll() throws Exception {
+        CompletableFuture<ChangeFeed> poll = changeFeedService.awaitChanges(null, 10, Duration.ofSeconds(30)).orElseThrow();
+        Thread.sleep(100);
+        assertFalse(poll.isDone());
+
+        Long patientId = createPatient("MRN-CF-4");
+        ChangeFeed feed = poll.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, feed.getChanges().size());
+        assertEquals(patientId, feed.getChanges().get(0).getResourceId());
+        assertEquals(feed.getChanges().get(0).getId(), feed.getCursor());
+    }
+
+    private Long createPatient(String identifier) {
+        patientService.createPatient(new PatientDTO(identifier, "John", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+        return jdbcTemplate.queryForObject("select id from patients where identifier = ?", Long.class, identifier);
+    }
+
+    private static List<String> describe(List<ChangeEventDTO> changes) {
+        return changes.stream().map(change -> change.getResourceType() + " " + change.getOperation()).toList();
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.patient.repository;
+
+import org.example.patient.models.PatientSearchCriteria;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the finders run for real and the SQL Hibernate generates for them is explained, so a finder whose query
+// stops matching its index fails here
+@DataJpaTest
+@DisplayName("Finder Index Plan Tests")
+class FinderIndexPlanTest {
+
+    private static final Pattern PARAMETER = Pattern.compile("\\?");
+
+    private static SingleConnectionDataSource planDataSource;
+    private static JdbcTemplate planJdbcTemplate;
+
+    @Autowired
+    private ObservationRepo observationRepository;
+
+    @Autowired
+    private EncounterRepo encounterRepository;
+
+    @Autowired
+    private PatientRepo patientRepository;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+        registry.add("spring.jpa.properties.hibernate.session_factory.statement_inspector",
+                CapturingStatementInspector.class::getName);
+    }
+
+    static Stream<Arguments> finders() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        return Stream.of(
+                finder("ObservationRepo.findByPatientId", test -> test.observationRepository.findByPatientId(1L)),
+                finder("ObservationRepo.findByEncounterId", test -> test.observationRepository.findByEncounterId(1L)),
+                finder("ObservationRepo.findByCode", test -> test.observationRepository.findByCode("8867-4")),
+                finder("ObservationRepo.findInRange", test -> test.observationRepository.findInRange(
+                        1L, "8867-4", from, from.plusYears(1), 0L, Limit.of(101))),
+                finder("ObservationRepo.findByPatientIdAndIdGreaterThanOrderByIdAsc",
+                        test -> test.observationRepository.findByPatientIdAndIdGreaterThanOrderByIdAsc(1L, 0L, Limit.of(501))),
+                finder("EncounterRepo.findByPatientId", test -> test.encounterRepository.findByPatientId(1L)),
+                finder("EncounterRepo.findByPatientIdAndIdGreaterThanOrderByIdAsc",
+                        test -> test.encounterRepository.findByPatientIdAndIdGreaterThanOrderByIdAsc(1L, 0L, Limit.of(501))),
+                finder("PatientRepo.findByIdentifier", test -> test.patientRepository.findByIdentifier("MRN-12345")),
+                finder("PatientRepo.findByBirthDate",
+                        test -> test.patientRepository.findByBirthDate(LocalDate.of(1985, 6, 15))),
+                finder("PatientRepo.findByBirthDateBetween", test -> test.patientRepository.findByBirthDateBetween(
+                        LocalDate.of(1980, 1, 1), LocalDate.of(1990, 12, 31))),
+                finder("PatientRepo.findByFamilyNameContainingIgnoreCase",
+                        test -> test.patientRepository.findByFamilyNameContainingIgnoreCase("doe")),
+                finder("PatientRepo.findByGivenNameContainingIgnoreCase",
+                        test -> test.patientRepository.findByGivenNameContainingIgnoreCase("joh")),
+                finder("PatientSearchRepo.search", test -> test.patientRepository.search(
+                        new PatientSearchCriteria("doe", null, null, null, LocalDate.of(1980, 1, 1), null, "MALE"),
+                        PageRequest.of(0, 100, Sort.by("id"))))
+        );
+    }
+
+    private static Arguments finder(String name, Consumer<FinderIndexPlanTest> call) {
+        return Arguments.of(name, call);
+    }
+
+    // a session of its own, as a generic plan with $n placeholders can only be explained over the simple query
+    // protocol. With tiny tables the planner always prefers a sequential scan; turning it off makes the
+    // plan fall back to one only when no usable index exists
+    @BeforeAll
+    static void openPlanSession() {
+        planDataSource = new SingleConnectionDataSource(
+                EmbeddedPostgresSupport.postgres().getJdbcUrl("postgres", "postgres") + "&preferQueryMode=simple", true);
+        planJdbcTemplate = new JdbcTemplate(planDataSource);
+        planJdbcTemplate.execute("set enable_seqscan = off");
+    }
+
+    @AfterAll
+    static void closePlanSession() {
+        planDataSource.destroy();
+    }
+
+    @BeforeEach
+    void clearStatements() {
+        CapturingStatementInspector.statements.clear();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("finders")
+    @DisplayName("Should serve every repository finder from an index")
+    void testFinderUsesIndex(String finder, Consumer<FinderIndexPlanTest> call) {
+        call.accept(this);
+        List<String> statements = List.copyOf(CapturingStatementInspector.statements);
+
+        assertFalse(statements.isEmpty(), finder + " ran no statement");
+        for (String sql : statements) {
+            String plan = String.join("\n", planJdbcTemplate.queryForList("explain (generic_plan) " + numbered(sql), String.class));
+            assertTrue(plan.contains("Index"), finder + " does not use an index:\n" + sql + "\n" + plan);
+        }
+    }
+
+    // JDBC's ? placeholders as the $n ones a generic plan is explained with
+    private static String numbered(String sql) {
+        Matcher matcher = PARAMETER.matcher(sql);
+        StringBuilder numbered = new StringBuilder();
+        int parameter = 0;
+        while (matcher.find()) {
+            matcher.appendReplacement(numbered, "\\$" + ++parameter);
+        }
+        return matcher.appendTail(numbered).toString();
+    }
+
+    public static class CapturingStatementInspector implements StatementInspector {
+
+        static final List<String> statements = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+}
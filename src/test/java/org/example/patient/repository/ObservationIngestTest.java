@@ -0,0 +1,108 @@
+package org.example.patient.repository;
+
+import org.example.patient.entity.Patient;
+import org.example.patient.models.IngestStatus;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.service.ChangeFeedService;
+import org.example.patient.service.ObservationIngestService;
+import org.example.patient.service.ObservationService;
+import org.example.patient.service.RecentVitalsCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the writer commits on its own thread, so the test must not wrap it in a transaction that is rolled back
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration({ValidationAutoConfiguration.class, JacksonAutoConfiguration.class})
+@Import({ChangeFeedService.class, RecentVitalsCache.class, ObservationService.class, ObservationIngestService.class})
+@DisplayName("Observation Ingest Tests")
+class ObservationIngestTest {
+
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private ObservationIngestService ingestService;
+
+    @Autowired
+    private ObservationRepo observationRepository;
+
+    @Autowired
+    private PatientRepo patientRepository;
+
+    @Autowired
+    private IngestSubmissionRepo submissionRepository;
+
+    @DynamicPropertySource
+    static void ingestProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.ingest.directory", () -> directory.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        submissionRepository.deleteAll();
+        observationRepository.deleteAll();
+        patientRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should acknowledge a submission, write it behind and report the rejected observations")
+    void testIngest() throws Exception {
+        Patient patient = new Patient();
+        patient.setIdentifier("MRN-ING-1");
+        patient.setGivenName("John");
+        patient.setFamilyName("Doe");
+        patient.setBirthDate(LocalDate.of(1985, 6, 15));
+        patient.setGender(Patient.Gender.MALE);
+        Long patientId = patientRepository.save(patient).getId();
+        LocalDateTime now = LocalDateTime.now();
+
+        IngestStatus queued = ingestService.submit(List.of(
+                new ObservationDTO(patientId, null, "8867-4", "72 bpm", now),
+                new ObservationDTO(patientId + 1, null, "8867-4", "75 bpm", now),
+                new ObservationDTO(patientId, null, "8310-5", "36.8 C", now))).orElseThrow();
+        assertEquals("QUEUED", queued.getStatus());
+
+        IngestStatus status = awaitCompletion(queued.getId());
+
+        assertEquals("COMPLETED", status.getStatus());
+        assertEquals(3, status.getObservations());
+        assertEquals(2, status.getCreated());
+        assertEquals(1, status.getRejected());
+        assertEquals(1, status.getRejections().get(0).getIndex());
+        assertEquals(404, status.getRejections().get(0).getStatus());
+        assertEquals(2, observationRepository.count());
+        assertTrue(ingestService.getStatus("unknown").isEmpty());
+    }
+
+    private IngestStatus awaitCompletion(String id) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            IngestStatus status = ingestService.getStatus(id).orElseThrow();
+            if (!status.getStatus().equals("QUEUED")) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        fail("Submission " + id + " was not written");
+        return null;
+    }
+}
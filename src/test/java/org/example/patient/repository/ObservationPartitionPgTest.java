@@ -0,0 +1,172 @@
+package org.example.patient.repository;
+
+import org.example.patient.entity.Patient;
+import org.example.patient.service.ObservationPartitionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// partition DDL commits, so the test cleans up after itself instead of rolling back
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ObservationPartitionRepo.class, ObservationPartitionService.class})
+@DisplayName("Observation Partition Tests (PostgreSQL)")
+class ObservationPartitionPgTest {
+
+    @Autowired
+    private ObservationPartitionService partitionService;
+
+    @Autowired
+    private ObservationPartitionRepo partitionRepository;
+
+    @Autowired
+    private PatientRepo patientRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long patientId;
+    private YearMonth current;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+        registry.add("app.observations.retention", () -> "P10Y");
+    }
+
+    @BeforeEach
+    void setUp() {
+        Patient patient = new Patient();
+        patient.setIdentifier("MRN-PART-1");
+        patient.setGivenName("John");
+        patient.setFamilyName("Doe");
+        patient.setBirthDate(LocalDate.of(1985, 6, 15));
+        patient.setGender(Patient.Gender.MALE);
+        patientId = patientRepository.save(patient).getId();
+        current = YearMonth.now();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from observations");
+        jdbcTemplate.update("delete from patients");
+        jdbcTemplate.queryForList("select relname from pg_class where relname like 'observations_archive_%' and relkind = 'r'",
+                String.class).forEach(table -> jdbcTemplate.execute("drop table " + table));
+    }
+
+    @Test
+    @DisplayName("Should keep the coming months partitioned and route rows by effective time")
+    void testRouting() {
+        assertTrue(maintain());
+        assertTrue(partitionRepository.findMonths().containsAll(
+                List.of(current, current.plusMonths(1), current.plusMonths(2), current.plusMonths(3))));
+
+        insert(LocalDateTime.now());
+        insert(LocalDateTime.now().minusYears(30));
+
+        assertEquals(List.of(ObservationPartitionRepo.partitionName(current), ObservationPartitionRepo.DEFAULT_PARTITION),
+                jdbcTemplate.queryForList("select tableoid::regclass::text from observations order by effective_date_time desc",
+                        String.class));
+    }
+
+    @Test
+    @DisplayName("Should move the rows of a new month out of the default partition")
+    void testCreatePartition() {
+        YearMonth later = current.plusMonths(12);
+        insert(later.atDay(10).atStartOfDay());
+        assertEquals(ObservationPartitionRepo.DEFAULT_PARTITION, partitionOf(later));
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> partitionRepository.createPartition(later));
+
+            assertEquals(ObservationPartitionRepo.partitionName(later), partitionOf(later));
+            assertEquals(0, jdbcTemplate.queryForObject("select count(*) from " + ObservationPartitionRepo.DEFAULT_PARTITION, Integer.class));
+        } finally {
+            jdbcTemplate.update("delete from observations");
+            jdbcTemplate.execute("drop table if exists " + ObservationPartitionRepo.partitionName(later));
+        }
+    }
+
+    @Test
+    @DisplayName("Should detach a month older than the retention and keep it as an archive table")
+    void testRetention() {
+        YearMonth expired = current.minusYears(11);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> partitionRepository.createPartition(expired));
+        insert(expired.atDay(1).atTime(8, 0));
+        insert(LocalDateTime.now());
+
+        assertTrue(maintain());
+
+        assertFalse(partitionRepository.findMonths().contains(expired));
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from observations", Integer.class));
+        String archive = "observations_archive_" + ObservationPartitionRepo.partitionName(expired).substring("observations_p".length());
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from " + archive, Integer.class));
+        // the archive no longer references the patient
+        jdbcTemplate.update("delete from observations");
+        jdbcTemplate.update("delete from patients where id = ?", patientId);
+    }
+
+    @Test
+    @DisplayName("Should scan only the partitions a time-bounded query covers")
+    void testPruning() {
+        assertTrue(maintain());
+        LocalDateTime from = current.atDay(1).atStartOfDay();
+
+        String plan = String.join("\n", jdbcTemplate.queryForList("explain select * from observations where patient_id = "
+                + patientId + " and effective_date_time >= '" + from + "' and effective_date_time < '" + from.plusDays(7) + "'",
+                String.class));
+
+        assertTrue(plan.contains(ObservationPartitionRepo.partitionName(current)), plan);
+        assertFalse(plan.contains(ObservationPartitionRepo.partitionName(current.plusMonths(1))), plan);
+        assertFalse(plan.contains(ObservationPartitionRepo.DEFAULT_PARTITION), plan);
+    }
+
+    // the maintenance run started with the context may still hold the lock
+    private boolean maintain() {
+        for (int i = 0; i < 50; i++) {
+            if (partitionService.maintain()) {
+                return true;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void insert(LocalDateTime effectiveDateTime) {
+        jdbcTemplate.update("insert into observations (id, patient_id, code, value, effective_date_time) "
+                + "values (nextval('observations_seq'), ?, '8867-4', '72 bpm', ?)", patientId, Timestamp.valueOf(effectiveDateTime));
+    }
+
+    private String partitionOf(YearMonth month) {
+        return jdbcTemplate.queryForObject("select tableoid::regclass::text from observations where effective_date_time >= ? "
+                + "and effective_date_time < ?", String.class, Timestamp.valueOf(month.atDay(1).atStartOfDay()),
+                Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay()));
+    }
+}
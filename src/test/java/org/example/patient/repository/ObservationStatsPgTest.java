@@ -0,0 +1,88 @@
+package org.example.patient.repository;
+
+import org.example.patient.models.ObservationStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@DisplayName("Observation Numeric Value Tests (PostgreSQL)")
+class ObservationStatsPgTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObservationRepo observationRepository;
+
+    private Long patientId;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        patientId = jdbcTemplate.queryForObject("insert into patients (identifier, given_name, family_name, birth_date, gender) "
+                + "values ('MRN-PG-1', 'John', 'Doe', date '1985-06-15', 'MALE') returning id", Long.class);
+        String[] values = {"60", "70 bpm", "80", "90", "100", "120/80 mmHg", "positive", "-1.5 °C"};
+        for (int i = 0; i < values.length; i++) {
+            jdbcTemplate.update("insert into observations (id, patient_id, code, value, effective_date_time) "
+                            + "values (nextval('observations_seq'), ?, ?, ?, timestamp '2025-12-01 08:00' + ? * interval '1 minute')",
+                    patientId, i == values.length - 1 ? "8310-5" : "8867-4", values[i], i);
+        }
+    }
+
+    @Test
+    @DisplayName("Should backfill numeric values with the same rule used on write")
+    void testBackfill() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V4__observation_numeric_value.sql"));
+            return null;
+        });
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "select value, numeric_value, unit from observations where patient_id = ? order by effective_date_time", patientId);
+
+        assertEquals(60.0, rows.get(0).get("numeric_value"));
+        assertEquals(70.0, rows.get(1).get("numeric_value"));
+        assertEquals("bpm", rows.get(1).get("unit"));
+        assertNull(rows.get(5).get("numeric_value"));
+        assertNull(rows.get(6).get("numeric_value"));
+        assertEquals(-1.5, rows.get(7).get("numeric_value"));
+        assertEquals("°C", rows.get(7).get("unit"));
+    }
+
+    @Test
+    @DisplayName("Should compute count, min, max, avg and percentiles in the database")
+    void testAggregate() {
+        jdbcTemplate.update("update observations set numeric_value = cast(value as double precision) "
+                + "where patient_id = ? and value ~ '^[0-9]+$'", patientId);
+
+        List<ObservationStats> stats = observationRepository.aggregate(patientId, "8867-4", null, null, true);
+
+        assertEquals(1, stats.size());
+        ObservationStats heartRate = stats.get(0);
+        assertEquals(patientId, heartRate.getPatientId());
+        assertEquals(4, heartRate.getCount());
+        assertEquals(60.0, heartRate.getMin());
+        assertEquals(100.0, heartRate.getMax());
+        assertEquals(82.5, heartRate.getAvg());
+        assertEquals(85.0, heartRate.getP50());
+        assertEquals(97.0, heartRate.getP90(), 1e-9);
+    }
+}
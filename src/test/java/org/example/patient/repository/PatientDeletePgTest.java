@@ -0,0 +1,174 @@
+package org.example.patient.repository;
+
+import org.example.patient.config.CacheConfig;
+import org.example.patient.exceptions.ConflictException;
+import org.example.patient.models.EncounterDTO;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.service.ChangeFeedService;
+import org.example.patient.service.EncounterService;
+import org.example.patient.service.ObservationService;
+import org.example.patient.service.PatientNameIndex;
+import org.example.patient.service.PatientPurgeService;
+import org.example.patient.service.PatientService;
+import org.example.patient.service.RecentVitalsCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// deletes cascade and purges run in transactions of their own, so the test commits instead of rolling back
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@Import({CacheConfig.class, ChangeFeedService.class, RecentVitalsCache.class, PatientService.class, PatientNameIndex.class,
+        EncounterService.class, ObservationService.class, PatientPurgeService.class, PatientPurgeRepo.class})
+@DisplayName("Patient Delete Tests (PostgreSQL)")
+class PatientDeletePgTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private EncounterService encounterService;
+
+    @Autowired
+    private ObservationService observationService;
+
+    @Autowired
+    private PatientPurgeService purgeService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+        registry.add("app.patients.purge-threshold", () -> "5");
+        registry.add("app.patients.purge-chunk-size", () -> "2");
+        // purged by the tests only
+        registry.add("app.patients.purge-interval", () -> "1h");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from patients");
+        jdbcTemplate.update("delete from change_events");
+    }
+
+    @Test
+    @DisplayName("Should delete a patient's encounters and observations in the same statement")
+    void testCascade() {
+        Long patientId = createPatient("MRN-DEL-1", 2, 4);
+        Long otherId = createPatient("MRN-DEL-2", 1, 1);
+        Long encounterId = jdbcTemplate.queryForObject("select min(id) from encounters where patient_id = ?", Long.class, otherId);
+
+        assertTrue(patientService.deletePatient(patientId));
+
+        assertEquals(0, count("patients", patientId));
+        assertEquals(0, count("encounters", patientId));
+        assertEquals(0, count("observations", patientId));
+        assertEquals(1, count("observations", otherId));
+
+        assertTrue(encounterService.deleteEncounter(encounterId));
+        assertEquals(0, count("observations", otherId));
+        assertEquals(1, count("patients", otherId));
+    }
+
+    @Test
+    @DisplayName("Should hide a large patient at once and purge its rows in chunks")
+    void testPurge() {
+        Long patientId = createPatient("MRN-DEL-1", 2, 5);
+
+        assertTrue(patientService.deletePatient(patientId));
+
+        assertTrue(patientService.getPatientById(patientId).isEmpty());
+        assertTrue(patientService.searchByIdentifier("MRN-DEL-1").isEmpty());
+        assertFalse(patientService.deletePatient(patientId));
+        // the identifier stays taken until the purge is done
+        PatientDTO jane = new PatientDTO("MRN-DEL-1", "Jane", "Doe", LocalDate.of(1990, 1, 1), "FEMALE");
+        assertThrows(ConflictException.class, () -> patientService.upsertPatient(jane));
+        assertEquals(409, patientService.upsertPatientBatch(List.of(jane)).get(0).getStatus());
+        assertEquals(1, count("patients", patientId));
+        assertEquals(5, count("observations", patientId));
+        // the encounters and observations are still there, so only the patient is gone from the feed
+        assertEquals(List.of("PATIENT"), deletedTypes());
+
+        assertEquals(1, purgeService.purge());
+
+        assertEquals(0, count("patients", patientId));
+        assertEquals(0, count("encounters", patientId));
+        assertEquals(0, count("observations", patientId));
+        assertEquals(List.of("ENCOUNTER", "ENCOUNTER", "OBSERVATION", "OBSERVATION", "OBSERVATION", "OBSERVATION",
+                "OBSERVATION", "PATIENT"), deletedTypes());
+        assertEquals(0, purgeService.purge());
+        assertTrue(patientService.upsertPatient(jane).orElseThrow().isInserted());
+    }
+
+    @Test
+    @DisplayName("Should purge and record the observations of other patients recorded in a purged patient's encounters")
+    void testPurgeObservationsOfOtherPatients() {
+        Long patientId = createPatient("MRN-DEL-1", 2, 5);
+        Long otherId = createPatient("MRN-DEL-2", 0, 0);
+        Long encounterId = jdbcTemplate.queryForObject("select max(id) from encounters where patient_id = ?", Long.class, patientId);
+        for (int i = 0; i < 3; i++) {
+            observationService.createObservation(new ObservationDTO(otherId, encounterId, "8867-4", "80 bpm",
+                    LocalDateTime.now().minusMinutes(i)));
+        }
+        observationService.createObservation(new ObservationDTO(otherId, null, "8867-4", "81 bpm", LocalDateTime.now()));
+        List<Long> inEncounter = jdbcTemplate.queryForList("select id from observations where patient_id = ? "
+                + "and encounter_id is not null order by id", Long.class, otherId);
+
+        assertTrue(patientService.deletePatient(patientId));
+        assertEquals(1, purgeService.purge());
+
+        assertEquals(0, count("encounters", patientId));
+        assertEquals(1, count("observations", otherId));
+        List<Long> deleted = jdbcTemplate.queryForList("select resource_id from change_events "
+                + "where resource_type = 'OBSERVATION' and operation = 'DELETE'", Long.class);
+        assertEquals(8, deleted.size());
+        assertTrue(deleted.containsAll(inEncounter));
+    }
+
+    private Long createPatient(String identifier, int encounters, int observations) {
+        patientService.createPatient(new PatientDTO(identifier, "John", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+        Long patientId = jdbcTemplate.queryForObject("select id from patients where identifier = ?", Long.class, identifier);
+        for (int i = 0; i < encounters; i++) {
+            encounterService.createEncounter(new EncounterDTO(patientId, LocalDate.now().plusDays(1), LocalDate.now().plusDays(2), "OUTPATIENT"));
+        }
+        Long encounterId = jdbcTemplate.queryForObject("select min(id) from encounters where patient_id = ?", Long.class, patientId);
+        for (int i = 0; i < observations; i++) {
+            observationService.createObservation(new ObservationDTO(patientId, i % 2 == 0 ? encounterId : null, "8867-4",
+                    (70 + i) + " bpm", LocalDateTime.now().minusMinutes(i)));
+        }
+        return patientId;
+    }
+
+    private List<String> deletedTypes() {
+        return jdbcTemplate.queryForList("select resource_type from change_events where operation = 'DELETE' "
+                + "order by resource_type", String.class);
+    }
+
+        private int count(String table, Long patientId) {
+        String column = table.equals("patients") ? "id" : "patient_id";
+        return jdbcTemplate.queryForObject("select count(*) from " + table + " where " + column + " = ?", Integer.class, patientId);
+    }
+}
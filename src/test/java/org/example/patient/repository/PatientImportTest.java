@@ -0,0 +1,216 @@
+package org.example.patient.repository;
+
+import org.example.patient.config.CacheConfig;
+import org.example.patient.entity.ImportJob;
+import org.example.patient.models.ImportRejectionDTO;
+import org.example.patient.models.ImportStatus;
+import org.example.patient.service.ChangeFeedService;
+import org.example.patient.service.PatientImportService;
+import org.example.patient.service.PatientNameIndex;
+import org.example.patient.service.PatientService;
+import org.example.patient.service.RecentVitalsCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+
+// the import commits on its own thread, so the test must not wrap it in a transaction that is rolled back
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration({ValidationAutoConfiguration.class, JacksonAutoConfiguration.class})
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@Import({ChangeFeedService.class, RecentVitalsCache.class, CacheConfig.class, PatientService.class, PatientNameIndex.class, PatientImportService.class})
+@DisplayName("Patient Import Tests")
+class PatientImportTest {
+
+    private static final String CSV = """
+            identifier,givenName,familyName,birthDate,gender
+            MRN-IMP-1,John,Doe,1985-06-15,MALE
+            MRN-IMP-2,Jane,"Doe, Jr",1990-01-02,FEMALE
+            MRN-IMP-3,,Smith,1970-03-04,MALE
+            MRN-IMP-4,Ann,Lee,not-a-date,FEMALE
+            MRN-IMP-1,Johnny,Doe,1985-06-15,MALE
+            """;
+
+    @Autowired
+    private PatientImportService importService;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepo patientRepository;
+
+    @Autowired
+    private ImportJobRepo jobRepository;
+
+    @SpyBean
+    private ImportRejectionRepo rejectionRepository;
+
+    @Autowired
+    private PatientNameIndex nameIndex;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        rejectionRepository.deleteAll();
+        jobRepository.deleteAll();
+        patientRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should upsert valid CSV records and report the rejected ones")
+    void testImportCsv() throws Exception {
+        ImportStatus started = importService.start(
+                new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)), PatientImportService.Format.CSV);
+
+        ImportStatus status = awaitCompletion(started.getId());
+
+        assertEquals("COMPLETED", status.getStatus());
+        assertEquals(5, status.getProcessedRecords());
+        assertEquals(3, status.getLoadedRecords());
+        assertEquals(2, status.getRejectedRecords());
+        assertEquals(2, patientRepository.count());
+        assertEquals("Johnny", patientService.searchByIdentifier("MRN-IMP-1").orElseThrow().getGivenName());
+        assertEquals("Doe, Jr", patientService.searchByIdentifier("MRN-IMP-2").orElseThrow().getFamilyName());
+
+        List<ImportRejectionDTO> rejections = new ArrayList<>();
+        importService.streamRejections(started.getId(), rejections::add);
+        assertEquals(List.of(3L, 4L), rejections.stream().map(ImportRejectionDTO::getRecordNumber).toList());
+        assertEquals("Given name is required", rejections.get(0).getErrors());
+        assertTrue(rejections.get(1).getErrors().startsWith("Unreadable record"));
+        assertTrue(rejections.get(1).getContent().contains("not-a-date"));
+    }
+
+    @Test
+    @DisplayName("Should reject malformed CSV rows and keep importing the rows after them")
+    void testImportCsvWithMalformedRows() throws Exception {
+        String csv = """
+                identifier,givenName,familyName,birthDate,gender
+                MRN-BAD-1,John,Doe,1985-06-15,MALE
+                MRN-BAD-2,Jane,Doe,1990-01-02,FEMALE,extra
+                MRN-BAD-3,"Ji"m,Doe,1995-01-02,OTHER
+                MRN-BAD-4,Joan,Doe,1992-03-04,FEMALE
+                """;
+
+        ImportStatus status = awaitCompletion(importService.start(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), PatientImportService.Format.CSV).getId());
+
+        assertEquals("COMPLETED", status.getStatus());
+        assertEquals(4, status.getProcessedRecords());
+        assertEquals(2, status.getLoadedRecords());
+        assertEquals(2, status.getRejectedRecords());
+        assertTrue(patientService.searchByIdentifier("MRN-BAD-4").isPresent());
+
+        List<ImportRejectionDTO> rejections = new ArrayList<>();
+        importService.streamRejections(status.getId(), rejections::add);
+        assertEquals(List.of(2L, 3L), rejections.stream().map(ImportRejectionDTO::getRecordNumber).toList());
+        assertTrue(rejections.get(0).getErrors().startsWith("Unreadable record at line 3"));
+        assertTrue(rejections.get(1).getErrors().startsWith("Unreadable record at line 4"));
+    }
+
+    @Test
+    @DisplayName("Should reject a null NDJSON record")
+    void testImportNdjsonNullRecord() throws Exception {
+        String ndjson = """
+                {"identifier":"MRN-NUL-1","givenName":"John","familyName":"Doe","birthDate":"1985-06-15","gender":"MALE"}
+                null
+                """;
+
+        ImportStatus status = awaitCompletion(importService.start(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), PatientImportService.Format.NDJSON).getId());
+
+        assertEquals("COMPLETED", status.getStatus());
+        assertEquals(1, status.getLoadedRecords());
+        assertEquals(1, status.getRejectedRecords());
+
+        List<ImportRejectionDTO> rejections = new ArrayList<>();
+        importService.streamRejections(status.getId(), rejections::add);
+        assertEquals(2L, rejections.get(0).getRecordNumber());
+        assertEquals("Unreadable record: null", rejections.get(0).getErrors());
+    }
+
+    @Test
+    @DisplayName("Should resume a failed NDJSON import after its last checkpoint")
+    void testResumeAfterCheckpoint() throws Exception {
+        Path source = directory.resolve("patients.ndjson");
+        Files.writeString(source, """
+                {"identifier":"MRN-RES-1","givenName":"John","familyName":"Doe","birthDate":"1985-06-15","gender":"MALE"}
+                {"identifier":"MRN-RES-2","givenName":"Jane","familyName":"Doe","birthDate":"1990-01-02","gender":"FEMALE"}
+                {not json}
+                {"identifier":"MRN-RES-3","givenName":"Jim","familyName":"Doe","birthDate":"1995-01-02","gender":"OTHER"}
+                """);
+        LocalDateTime now = LocalDateTime.now();
+        jobRepository.save(new ImportJob("resume-test", ImportJob.Status.FAILED, "NDJSON", source.toString(),
+                1, 1, 0, "connection reset", now, now));
+
+        assertTrue(importService.resume("resume-test").isPresent());
+        ImportStatus status = awaitCompletion("resume-test");
+
+        assertEquals("COMPLETED", status.getStatus());
+        assertNull(status.getError());
+        assertEquals(4, status.getProcessedRecords());
+        assertEquals(2, status.getLoadedRecords());
+        assertEquals(2, status.getRejectedRecords());
+        assertTrue(patientService.searchByIdentifier("MRN-RES-1").isEmpty());
+        assertTrue(patientService.searchByIdentifier("MRN-RES-2").isPresent());
+        assertTrue(importService.resume("resume-test").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should leave the name index alone when a batch rolls back after its upsert")
+    void testFailedBatchRollsBack() throws Exception {
+        doThrow(new DataAccessResourceFailureException("disk full")).when(rejectionRepository).saveAll(anyList());
+        String csv = """
+                identifier,givenName,familyName,birthDate,gender
+                MRN-RB-1,John,Rollback,1985-06-15,MALE
+                MRN-RB-2,,Rollback,1985-06-15,MALE
+                """;
+
+        ImportStatus status = awaitCompletion(importService.start(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), PatientImportService.Format.CSV).getId());
+
+        assertEquals("FAILED", status.getStatus());
+        assertEquals(0, patientRepository.count());
+        assertEquals(List.of(), nameIndex.search("Rollback", null, 10));
+    }
+
+    // generous, as the first import of a context also warms it up
+    private ImportStatus awaitCompletion(String id) throws InterruptedException {
+        for (int i = 0; i < 3000; i++) {
+            ImportStatus status = importService.getStatus(id).orElseThrow();
+            if (status.getStatus().equals("COMPLETED") || status.getStatus().equals("FAILED")) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        fail("Import " + id + " did not finish");
+        return null;
+    }
+}
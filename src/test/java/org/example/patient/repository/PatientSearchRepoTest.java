@@ -0,0 +1,136 @@
+package org.example.patient.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.patient.entity.Patient;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.models.PatientSearchCriteria;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@DisplayName("Patient Search Repository Tests")
+class PatientSearchRepoTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PatientRepo patientRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        persist("MRN-1", "John", "Doe", LocalDate.of(1985, 6, 15), Patient.Gender.MALE);
+        persist("MRN-2", "Jane", "Doe", LocalDate.of(1990, 3, 20), Patient.Gender.FEMALE);
+        persist("MRN-3", "Johnny", "Doerr", LocalDate.of(1979, 1, 2), Patient.Gender.MALE);
+        persist("MRN-4", "Mary", "Smith", LocalDate.of(1988, 11, 5), Patient.Gender.FEMALE);
+        persist("MRN-5", "Joan", "Doe_x", LocalDate.of(1986, 2, 1), Patient.Gender.FEMALE);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Should apply every filter together in a single statement")
+    void testCombinedFilters() {
+        statistics.clear();
+        Page<PatientDTO> result = patientRepository.search(
+                new PatientSearchCriteria("doe", "jo", null, null, LocalDate.of(1980, 1, 1), null, "male"),
+                PageRequest.of(0, 10));
+
+        assertEquals(List.of("MRN-1"), identifiers(result));
+        assertEquals(1, result.getTotalElements());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Should filter by birth date range and gender")
+    void testBirthDateRangeAndGender() {
+        Page<PatientDTO> result = patientRepository.search(
+                new PatientSearchCriteria(null, null, null, null,
+                        LocalDate.of(1985, 1, 1), LocalDate.of(1990, 12, 31), "FEMALE"),
+                PageRequest.of(0, 10));
+
+        assertEquals(List.of("MRN-2", "MRN-4", "MRN-5"), identifiers(result));
+    }
+
+    @Test
+    @DisplayName("Should treat LIKE wildcards in name filters literally")
+    void testEscapesWildcards() {
+        Page<PatientDTO> result = patientRepository.search(
+                new PatientSearchCriteria("e_", null, null, null, null, null, null), PageRequest.of(0, 10));
+
+        assertEquals(List.of("MRN-5"), identifiers(result));
+    }
+
+    @Test
+    @DisplayName("Should sort and page results with a total count")
+    void testSortAndPage() {
+        PatientSearchCriteria criteria = new PatientSearchCriteria("do", null, null, null, null, null, null);
+
+        Page<PatientDTO> first = patientRepository.search(criteria, PageRequest.of(0, 2, Sort.by(Sort.Order.desc("birthDate"))));
+        Page<PatientDTO> second = patientRepository.search(criteria, PageRequest.of(1, 2, Sort.by(Sort.Order.desc("birthDate"))));
+
+        assertEquals(List.of("MRN-2", "MRN-5"), identifiers(first));
+        assertEquals(List.of("MRN-1", "MRN-3"), identifiers(second));
+        assertEquals(4, first.getTotalElements());
+        assertTrue(first.hasNext());
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    @DisplayName("Should reuse the compiled query plan for the same filter combination")
+    void testQueryPlanCache() {
+        patientRepository.search(new PatientSearchCriteria("doe", null, null, null, null, null, "MALE"), PageRequest.of(0, 10));
+        statistics.clear();
+
+        patientRepository.search(new PatientSearchCriteria("smith", null, null, null, null, null, "FEMALE"), PageRequest.of(0, 10));
+
+        assertEquals(0, statistics.getQueryPlanCacheMissCount());
+        assertTrue(statistics.getQueryPlanCacheHitCount() > 0);
+    }
+
+    @Test
+    @DisplayName("Should only sort by whitelisted properties")
+    void testRejectsUnknownSortProperty() {
+        PatientSearchCriteria criteria = new PatientSearchCriteria(null, null, null, null, null, null, null);
+
+        assertThrows(InvalidDataAccessApiUsageException.class,
+                () -> patientRepository.search(criteria, PageRequest.of(0, 10, Sort.by("encounters"))));
+    }
+
+    private void persist(String identifier, String givenName, String familyName, LocalDate birthDate, Patient.Gender gender) {
+        Patient patient = new Patient();
+        patient.setIdentifier(identifier);
+        patient.setGivenName(givenName);
+        patient.setFamilyName(familyName);
+        patient.setBirthDate(birthDate);
+        patient.setGender(gender);
+        entityManager.persist(patient);
+    }
+
+    private static List<String> identifiers(Page<PatientDTO> page) {
+        return page.getContent().stream().map(PatientDTO::getIdentifier).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.patient.repository;
+
+import org.example.patient.models.PatientDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@DisplayName("Patient Upsert Tests (PostgreSQL)")
+class PatientUpsertPgTest {
+
+    @Autowired
+    private PatientRepo patientRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.register(registry);
+    }
+
+    @Test
+    @DisplayName("Should COPY and merge a batch, updating existing identifiers in place")
+    void testUpsertByIdentifier() {
+        Long existingId = jdbcTemplate.queryForObject("insert into patients (identifier, given_name, family_name, birth_date, gender) "
+                + "values ('MRN-UP-1', 'John', 'Doe', date '1985-06-15', 'MALE') returning id", Long.class);
+
+        List<PatientDTO> batch = new ArrayList<>(List.of(
+                new PatientDTO("MRN-UP-1", "Johnny", "Doe", LocalDate.of(1985, 6, 15), "MALE"),
+                new PatientDTO("MRN-UP-2", "Jane", "O\"Brien, Jr", LocalDate.of(1990, 1, 2), "FEMALE"),
+                new PatientDTO("MRN-UP-2", "Janet", "O\"Brien, Jr", LocalDate.of(1990, 1, 2), "FEMALE")));
+        for (int i = 0; i < PatientUpsertRepoImpl.UNNEST_LIMIT; i++) {
+            batch.add(new PatientDTO("MRN-COPY-" + i, "Given", "Family", LocalDate.of(1970, 1, 1), "MALE"));
+        }
+
+        List<PatientUpsertRepo.Upserted> upserted = patientRepository.upsertByIdentifier(batch);
+
+        assertEquals(2 + PatientUpsertRepoImpl.UNNEST_LIMIT, upserted.size());
+        assertTrue(upserted.stream().anyMatch(p -> p.getId().equals(existingId) && p.getGivenName().equals("Johnny") && !p.isInserted()));
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "select identifier, given_name, family_name from patients where identifier like 'MRN-UP-%' order by identifier");
+        assertEquals(2, rows.size());
+        assertEquals("Johnny", rows.get(0).get("given_name"));
+        assertEquals("Janet", rows.get(1).get("given_name"));
+        assertEquals("O\"Brien, Jr", rows.get(1).get("family_name"));
+    }
+
+    @Test
+    @DisplayName("Should upsert a small batch in one statement and skip rows that would not change")
+    void testUpsertByIdentifier_Unnest() {
+        Long existingId = jdbcTemplate.queryForObject("insert into patients (identifier, given_name, family_name, birth_date, gender) "
+                + "values ('MRN-UN-1', 'John', 'Doe', date '1985-06-15', 'MALE') returning id", Long.class);
+        jdbcTemplate.update("insert into patients (identifier, given_name, family_name, birth_date, gender) "
+                + "values ('MRN-UN-2', 'Jane', 'Roe', date '1990-01-02', 'FEMALE')");
+
+        List<PatientUpsertRepo.Upserted> upserted = patientRepository.upsertByIdentifier(List.of(
+                new PatientDTO("MRN-UN-1", "Johnny", "Doe", LocalDate.of(1985, 6, 15), "MALE"),
+                new PatientDTO("MRN-UN-2", "Jane", "Roe", LocalDate.of(1990, 1, 2), "FEMALE"),
+                new PatientDTO("MRN-UN-3", "Ann", "Lee", LocalDate.of(2000, 3, 4), "FEMALE"),
+                new PatientDTO("MRN-UN-3", "Anne", "Lee", LocalDate.of(2000, 3, 4), "FEMALE")));
+
+        Map<String, PatientUpsertRepo.Upserted> byIdentifier = upserted.stream()
+                .collect(Collectors.toMap(PatientUpsertRepo.Upserted::getIdentifier, Function.identity()));
+        assertEquals(Set.of("MRN-UN-1", "MRN-UN-3"), byIdentifier.keySet());
+        assertEquals(existingId, byIdentifier.get("MRN-UN-1").getId());
+        assertFalse(byIdentifier.get("MRN-UN-1").isInserted());
+        assertTrue(byIdentifier.get("MRN-UN-3").isInserted());
+        assertEquals("Anne", jdbcTemplate.queryForObject(
+                "select given_name from patients where identifier = 'MRN-UN-3'", String.class));
+        assertEquals(List.of(1L, 0L), jdbcTemplate.queryForList(
+                "select version from patients where identifier in ('MRN-UN-1', 'MRN-UN-2') order by identifier", Long.class));
+    }
+}
@@ -0,0 +1,194 @@
+package org.example.patient.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.patient.config.CacheConfig;
+import org.example.patient.config.ReadReplicaConfig;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.service.ChangeFeedService;
+import org.example.patient.service.PatientNameIndex;
+import org.example.patient.service.PatientService;
+import org.example.patient.service.RecentVitalsCache;
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// a second embedded PostgreSQL stands in for the replica; it is migrated but not replicated, so each
+// database's rows show which one served a read
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@Import({ReadReplicaConfig.class, CacheConfig.class, ChangeFeedService.class, RecentVitalsCache.class, PatientService.class,
+        PatientNameIndex.class})
+@DisplayName("Read Replica Tests (PostgreSQL)")
+class ReadReplicaPgTest {
+
+    private static EmbeddedPostgres replica;
+    private static JdbcTemplate replicaJdbcTemplate;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PatientRepo patientRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) throws IOException {
+        EmbeddedPostgresSupport.register(registry);
+        replica = EmbeddedPostgres.start();
+        Flyway.configure().dataSource(replica.getPostgresDatabase()).load().migrate();
+        replicaJdbcTemplate = new JdbcTemplate(replica.getPostgresDatabase());
+        replicaJdbcTemplate.execute("create table replica_lag (seconds double precision not null)");
+        replicaJdbcTemplate.update("insert into replica_lag values (0)");
+        registry.add("app.replicas.urls", () -> replica.getJdbcUrl("postgres", "postgres"));
+        registry.add("app.replicas.lag-query", () -> "select seconds from replica_lag");
+        registry.add("app.replicas.max-lag", () -> "5s");
+        registry.add("app.replicas.lag-check-interval", () -> "50ms");
+        registry.add("spring.jpa.properties.hibernate.cache.use_second_level_cache", () -> "true");
+        registry.add("spring.jpa.properties.hibernate.cache.region.factory_class", () -> "jcache");
+        registry.add("spring.jpa.properties.hibernate.javax.cache.provider",
+                () -> "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider");
+    }
+
+    @AfterAll
+    static void stopReplica() throws IOException {
+        replica.close();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from patients");
+        jdbcTemplate.update("delete from change_events");
+        replicaJdbcTemplate.update("delete from patients");
+        replicaJdbcTemplate.update("update replica_lag set seconds = 0");
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    @DisplayName("Should send read-only transactions to the replica and writes to the primary")
+    void testRouting() {
+        patientService.createPatient(new PatientDTO("MRN-PRIMARY", "John", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+        replicaJdbcTemplate.update("insert into patients (identifier, given_name, family_name, birth_date, gender) "
+                + "values ('MRN-REPLICA', 'Jane', 'Doe', date '1990-01-01', 'FEMALE')");
+
+        assertEquals(List.of("MRN-REPLICA"), await(List.of("MRN-REPLICA"), this::identifiers));
+        assertEquals(List.of("MRN-PRIMARY"), jdbcTemplate.queryForList("select identifier from patients", String.class));
+        // joins the read-write transaction and its primary connection
+        assertEquals(List.of("MRN-PRIMARY"), new TransactionTemplate(transactionManager).execute(status -> identifiers()));
+    }
+
+    @Test
+    @DisplayName("Should read from the primary while the replica lags more than the tolerance")
+    void testLag() {
+        patientService.createPatient(new PatientDTO("MRN-PRIMARY", "John", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+        assertEquals(List.of(), await(List.of(), this::identifiers));
+
+        replicaJdbcTemplate.update("update replica_lag set seconds = 60");
+        assertEquals(List.of("MRN-PRIMARY"), await(List.of("MRN-PRIMARY"), this::identifiers));
+
+        replicaJdbcTemplate.update("update replica_lag set seconds = 1");
+        assertEquals(List.of(), await(List.of(), this::identifiers));
+    }
+
+    @Test
+    @DisplayName("Should read a patient evicted by an update from the primary, not the replica that lags behind")
+    void testCachedReadAfterUpdate() {
+        Long id = createOnBoth("MRN-PRIMARY");
+        assertEquals("John", patientService.getPatientById(id).orElseThrow().getGivenName());
+
+        patientService.updatePatient(id, new PatientDTO("MRN-PRIMARY", "Johnny", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+
+        assertEquals("Johnny", patientService.getPatientById(id).orElseThrow().getGivenName());
+        assertEquals(1L, patientService.getPatientVersion(id).orElseThrow().getVersion());
+        assertEquals("Johnny", patientService.searchByIdentifier("MRN-PRIMARY").orElseThrow().getGivenName());
+    }
+
+    @Test
+    @DisplayName("Should fill the second-level cache from the primary only")
+    void testSecondLevelCache() {
+        Long id = createOnBoth("MRN-PRIMARY");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertTrue(read(true, () -> patientRepository.findById(id)).isPresent());
+        assertEquals(0, statistics.getSecondLevelCachePutCount());
+
+        assertTrue(read(false, () -> patientRepository.findById(id)).isPresent());
+        assertEquals(1, statistics.getSecondLevelCachePutCount());
+        assertTrue(read(true, () -> patientRepository.findById(id)).isPresent());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+    }
+
+    // the patient on the primary and a copy of it on the replica, which is known to serve reads once a
+    // replica-only row shows up
+    private Long createOnBoth(String identifier) {
+        patientService.createPatient(new PatientDTO(identifier, "John", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+        Long id = jdbcTemplate.queryForObject("select id from patients where identifier = ?", Long.class, identifier);
+        replicaJdbcTemplate.update("insert into patients (id, identifier, given_name, family_name, birth_date, gender) "
+                + "values (?, ?, 'John', 'Doe', date '1985-06-15', 'MALE')", id, identifier);
+        replicaJdbcTemplate.update("insert into patients (id, identifier, given_name, family_name, birth_date, gender) "
+                + "values (?, 'MRN-REPLICA', 'Jane', 'Doe', date '1990-01-01', 'FEMALE')", id + 1000);
+        assertEquals(List.of(identifier, "MRN-REPLICA"), await(List.of(identifier, "MRN-REPLICA"), this::identifiers));
+        return id;
+    }
+
+    private <T> T read(boolean readOnly, Supplier<T> query) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        return template.execute(status -> query.get());
+    }
+
+    private List<String> identifiers() {
+        return patientService.getAllPatients().stream().map(PatientDTO::getIdentifier).toList();
+    }
+
+    // the lag check runs on its own schedule, so the routing follows a change within a few of its intervals
+    private static <T> T await(T expected, Supplier<T> read) {
+        T value = read.get();
+        for (int i = 0; i < 100 && !expected.equals(value); i++) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            value = read.get();
+        }
+        return value;
+    }
+}
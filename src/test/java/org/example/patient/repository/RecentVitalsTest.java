@@ -0,0 +1,139 @@
+package org.example.patient.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.patient.config.CacheConfig;
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.models.RecentVitals;
+import org.example.patient.service.ChangeFeedService;
+import org.example.patient.service.ObservationService;
+import org.example.patient.service.PatientNameIndex;
+import org.example.patient.service.PatientService;
+import org.example.patient.service.RecentVitalsCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// writes reach the cache on commit, so the test commits instead of rolling back
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@Import({ChangeFeedService.class, RecentVitalsCache.class, CacheConfig.class, PatientService.class, PatientNameIndex.class,
+        ObservationService.class})
+@DisplayName("Recent Vitals Tests")
+class RecentVitalsTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private ObservationService observationService;
+
+    @Autowired
+    private RecentVitalsCache recentVitals;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from observations");
+        jdbcTemplate.update("delete from patients");
+        jdbcTemplate.update("delete from change_events");
+    }
+
+    @Test
+    @DisplayName("Should load a patient on first read, then serve it from memory and follow its writes")
+    void testReadThrough() {
+        Long patientId = createPatient("MRN-RV-1");
+        observationService.createObservations(List.of(
+                new ObservationDTO(patientId, null, "8867-4", "72 bpm", now.minusHours(2)),
+                new ObservationDTO(patientId, null, "8867-4", "75 bpm", now.minusHours(1)),
+                new ObservationDTO(patientId, null, "8867-4", "70 bpm", now.minusDays(2)),
+                new ObservationDTO(patientId, null, "8310-5", "37.2 C", now.minusMinutes(30)),
+                new ObservationDTO(patientId, null, "LA6576-8", "positive", now.minusMinutes(30))));
+
+        List<RecentVitals> loaded = observationService.getRecentVitals(patientId, null, null);
+        assertEquals(List.of("8310-5", "8867-4"), loaded.stream().map(RecentVitals::getCode).toList());
+        assertEquals(List.of(now.minusHours(2), now.minusHours(1)), loaded.get(1).getEffectiveDateTimes());
+        assertArrayEquals(new double[]{72, 75}, loaded.get(1).getValues());
+        assertEquals("bpm", loaded.get(1).getUnit());
+
+        observationService.createObservation(new ObservationDTO(patientId, null, "8867-4", "80 bpm", now.minusMinutes(5)));
+        statistics.clear();
+        List<RecentVitals> heartRate = observationService.getRecentVitals(patientId, "8867-4", Duration.ofMinutes(90));
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, heartRate.size());
+        assertArrayEquals(new double[]{75, 80}, heartRate.get(0).getValues());
+
+        Long deleted = jdbcTemplate.queryForObject(
+                "select id from observations where patient_id = ? and value = '75 bpm'", Long.class, patientId);
+        observationService.deleteObservation(deleted);
+        statistics.clear();
+        heartRate = observationService.getRecentVitals(patientId, "8867-4", Duration.ofMinutes(90));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertArrayEquals(new double[]{80}, heartRate.get(0).getValues());
+        assertThrows(BadRequestException.class, () -> observationService.getRecentVitals(patientId, null, Duration.ZERO));
+    }
+
+    @Test
+    @DisplayName("Should hold the patients rebuilt from the database and drop a deleted patient")
+    void testRebuild() {
+        Long patientId = createPatient("MRN-RV-2");
+        observationService.createObservation(new ObservationDTO(patientId, null, "8867-4", "64 bpm", now.minusHours(3)));
+
+        recentVitals.rebuild();
+        statistics.clear();
+        List<RecentVitals> vitals = observationService.getRecentVitals(patientId, null, null);
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertArrayEquals(new double[]{64}, vitals.get(0).getValues());
+
+        patientService.deletePatient(patientId);
+        statistics.clear();
+        assertTrue(observationService.getRecentVitals(patientId, null, null).isEmpty());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private Long createPatient(String identifier) {
+        patientService.createPatient(new PatientDTO(identifier, "John", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+        return jdbcTemplate.queryForObject("select id from patients where identifier = ?", Long.class, identifier);
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.patient.repository;
+
+import org.example.patient.config.CacheConfig;
+import org.example.patient.exceptions.PreconditionFailedException;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.models.ResourceVersion;
+import org.example.patient.service.ChangeFeedService;
+import org.example.patient.service.PatientNameIndex;
+import org.example.patient.service.PatientService;
+import org.example.patient.service.RecentVitalsCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@Import({ChangeFeedService.class, RecentVitalsCache.class, CacheConfig.class, PatientService.class, PatientNameIndex.class})
+@DisplayName("Row Version Tests")
+class RowVersionTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepo patientRepository;
+
+    @Test
+    @DisplayName("Should bump the version on every write path and refuse a stale If-Match version")
+    void testPatientVersion() {
+        patientService.createPatient(new PatientDTO("MRN-VER-1", "John", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+        Long id = patientRepository.findByIdentifier("MRN-VER-1").orElseThrow().getId();
+        ResourceVersion created = patientService.getPatientVersion(id).orElseThrow();
+        assertEquals(0L, created.getVersion());
+        assertNotNull(created.getLastModified());
+
+        PatientDTO updated = patientService.updatePatient(id,
+                new PatientDTO("MRN-VER-1", "Johnny", "Doe", LocalDate.of(1985, 6, 15), "MALE"), 0L).orElseThrow();
+        assertEquals(1L, updated.getVersion());
+        assertThrows(PreconditionFailedException.class, () -> patientService.updatePatient(id,
+                new PatientDTO("MRN-VER-1", "Jon", "Doe", LocalDate.of(1985, 6, 15), "MALE"), 0L));
+
+        patientService.upsertPatients(List.of(
+                new PatientDTO("MRN-VER-1", "John", "Doe", LocalDate.of(1985, 6, 15), "MALE")));
+        assertEquals(2L, patientRepository.findVersionById(id).orElseThrow().getVersion());
+    }
+}
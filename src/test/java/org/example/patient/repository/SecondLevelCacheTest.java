@@ -0,0 +1,164 @@
+package org.example.patient.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.patient.config.CacheConfig;
+import org.example.patient.entity.Encounter;
+import org.example.patient.entity.Patient;
+import org.example.patient.models.EncounterDTO;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.service.ChangeFeedService;
+import org.example.patient.service.EncounterService;
+import org.example.patient.service.ObservationService;
+import org.example.patient.service.PatientNameIndex;
+import org.example.patient.service.PatientService;
+import org.example.patient.service.RecentVitalsCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the cache is filled and invalidated as transactions complete, so the test commits instead of rolling back
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@Import({CacheConfig.class, ChangeFeedService.class, RecentVitalsCache.class, PatientService.class, PatientNameIndex.class,
+        EncounterService.class, ObservationService.class})
+@DisplayName("Second-Level Cache Tests")
+class SecondLevelCacheTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private EncounterService encounterService;
+
+    @Autowired
+    private ObservationService observationService;
+
+    @Autowired
+    private PatientRepo patientRepository;
+
+    @Autowired
+    private EncounterRepo encounterRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+    private Long patientId;
+    private Long encounterId;
+
+    @DynamicPropertySource
+    static void cacheProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.jpa.properties.hibernate.cache.use_second_level_cache", () -> "true");
+        registry.add("spring.jpa.properties.hibernate.cache.use_query_cache", () -> "true");
+        registry.add("spring.jpa.properties.hibernate.cache.region.factory_class", () -> "jcache");
+        registry.add("spring.jpa.properties.hibernate.javax.cache.provider",
+                () -> "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider");
+        registry.add("spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy", () -> "fail");
+    }
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        patientService.createPatient(new PatientDTO("MRN-L2-1", "John", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+        patientId = jdbcTemplate.queryForObject("select id from patients where identifier = 'MRN-L2-1'", Long.class);
+        encounterService.createEncounter(new EncounterDTO(patientId, LocalDate.now().plusDays(1), LocalDate.now().plusDays(2), "OUTPATIENT"));
+        encounterId = jdbcTemplate.queryForObject("select id from encounters where patient_id = ?", Long.class, patientId);
+        entityManagerFactory.getCache().evictAll();
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from observations");
+        jdbcTemplate.update("delete from encounters");
+        jdbcTemplate.update("delete from patients");
+        jdbcTemplate.update("delete from change_events");
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @Test
+    @DisplayName("Should serve repeated entity and finder reads without SQL")
+    void testRepeatedReads() {
+        encounterService.getEncounterById(encounterId);
+        read(() -> patientRepository.findByIdentifier("MRN-L2-1"));
+        read(() -> encounterRepository.findByPatientId(patientId));
+
+        statistics.clear();
+        assertEquals(patientId, encounterService.getEncounterById(encounterId).orElseThrow().getPatientId());
+        assertEquals("John", read(() -> patientRepository.findByIdentifier("MRN-L2-1")).orElseThrow().getGivenName());
+        assertEquals(List.of(encounterId), read(() -> encounterRepository.findByPatientId(patientId)).stream()
+                .map(Encounter::getId).toList());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(2, statistics.getQueryCacheHitCount());
+        // cached query results hold the rows themselves, so only the lookup by id reads the entity region
+        assertEquals(1, statistics.getDomainDataRegionStatistics("encounters").getHitCount());
+    }
+
+    @Test
+    @DisplayName("Should look up the patient and encounter of a new observation in the cache")
+    void testObservationReferences() {
+        observationService.createObservation(new ObservationDTO(patientId, encounterId, "8867-4", "72 bpm", LocalDateTime.now()));
+
+        statistics.clear();
+        observationService.createObservation(new ObservationDTO(patientId, encounterId, "8867-4", "75 bpm", LocalDateTime.now()));
+
+        assertEquals(0, statistics.getEntityStatistics(Patient.class.getName()).getLoadCount());
+        assertEquals(0, statistics.getEntityStatistics(Encounter.class.getName()).getLoadCount());
+        assertEquals(2, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    @DisplayName("Should drop cached patients and finder results that an upsert changed")
+    void testUpsertInvalidates() {
+        assertEquals("John", read(() -> patientRepository.findByIdentifier("MRN-L2-1")).orElseThrow().getGivenName());
+        assertTrue(read(() -> patientRepository.findByIdentifier("MRN-L2-2")).isEmpty());
+
+        patientService.upsertPatients(List.of(
+                new PatientDTO("MRN-L2-1", "Johnny", "Doe", LocalDate.of(1985, 6, 15), "MALE"),
+                new PatientDTO("MRN-L2-2", "Jane", "Doe", LocalDate.of(1990, 1, 1), "FEMALE")));
+
+        assertEquals("Johnny", read(() -> patientRepository.findByIdentifier("MRN-L2-1")).orElseThrow().getGivenName());
+        assertEquals("Jane", read(() -> patientRepository.findByIdentifier("MRN-L2-2")).orElseThrow().getGivenName());
+        assertEquals("Johnny", read(() -> patientRepository.findById(patientId)).orElseThrow().getGivenName());
+    }
+
+    private <T> T read(Supplier<T> query) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template.execute(status -> query.get());
+    }
+}
@@ -0,0 +1,314 @@
+package org.example.patient.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.patient.config.CacheConfig;
+import org.example.patient.entity.Encounter;
+import org.example.patient.entity.Observation;
+import org.example.patient.entity.Patient;
+import org.example.patient.models.BatchItemResult;
+import org.example.patient.models.CursorPage;
+import org.example.patient.models.EncounterDTO;
+import org.example.patient.models.EncounterExportRow;
+import org.example.patient.models.ObservationBucket;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.ObservationExportRow;
+import org.example.patient.models.PatientExportRow;
+import org.example.patient.models.ObservationStats;
+import org.example.patient.service.ChangeFeedService;
+import org.example.patient.service.EncounterService;
+import org.example.patient.service.ObservationService;
+import org.example.patient.service.PatientNameIndex;
+import org.example.patient.service.PatientService;
+import org.example.patient.service.RecentVitalsCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheType;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@AutoConfigureCache(cacheProvider = CacheType.CAFFEINE)
+@Import({ChangeFeedService.class, RecentVitalsCache.class, CacheConfig.class, PatientService.class, PatientNameIndex.class, EncounterService.class, ObservationService.class})
+@DisplayName("Statement Count Tests")
+class StatementCountTest {
+
+    private static final int ROWS = 5;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private EncounterService encounterService;
+
+    @Autowired
+    private ObservationService observationService;
+
+    private Statistics statistics;
+    private Long patientId;
+    private Long encounterId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        for (int i = 0; i < ROWS; i++) {
+            Patient patient = new Patient();
+            patient.setIdentifier("MRN-" + i);
+            patient.setGivenName("John");
+            patient.setFamilyName("Doe");
+            patient.setBirthDate(LocalDate.of(1985, 6, 15));
+            patient.setGender(Patient.Gender.MALE);
+            entityManager.persist(patient);
+
+            Encounter encounter = new Encounter();
+            encounter.setPatient(patient);
+            encounter.setStartDate(LocalDate.of(2025, 12, 1));
+            encounter.setEndDate(LocalDate.of(2025, 12, 2));
+            encounter.setEncounterClass(Encounter.EncounterClass.INPATIENT);
+            entityManager.persist(encounter);
+
+            for (int j = 0; j < ROWS; j++) {
+                Observation observation = new Observation();
+                observation.setPatient(patient);
+                observation.setEncounter(j % 2 == 0 ? encounter : null);
+                observation.setCode("8867-4");
+                observation.setValue("72");
+                observation.setNumericValue(72.0);
+                observation.setEffectiveDateTime(LocalDateTime.of(2025, 12, 1, 8, j));
+                entityManager.persist(observation);
+            }
+
+            patientId = patient.getId();
+            encounterId = encounter.getId();
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Should fetch all observations in a single statement")
+    void testGetAllObservations() {
+        List<ObservationDTO> observations = assertSingleStatement(observationService::getAllObservations);
+
+        assertEquals(ROWS * ROWS, observations.size());
+        assertEquals(ROWS * (ROWS / 2 + 1), observations.stream().filter(o -> o.getEncounterId() != null).count());
+    }
+
+    @Test
+    @DisplayName("Should fetch patient and encounter observations in a single statement")
+    void testGetObservationsByPatientAndEncounter() {
+        assertEquals(ROWS, assertSingleStatement(() -> observationService.getObservationsByPatientId(patientId)).size());
+        assertEquals(ROWS / 2 + 1, assertSingleStatement(() -> observationService.getObservationsByEncounterId(encounterId)).size());
+    }
+
+    @Test
+    @DisplayName("Should fetch a time range and its downsampled buckets in a single statement each")
+    void testGetObservationsInRange() {
+        LocalDateTime from = LocalDateTime.of(2025, 12, 1, 8, 1);
+        LocalDateTime to = LocalDateTime.of(2025, 12, 1, 8, 4);
+
+        List<ObservationDTO> observations = assertSingleStatement(
+                () -> observationService.getObservationsInRange(patientId, "8867-4", from, to, null, 100).getItems());
+        List<ObservationBucket> buckets = assertSingleStatement(
+                () -> observationService.getObservationBuckets(patientId, "8867-4", from.minusMinutes(1), to.plusMinutes(1), Duration.ofMinutes(2)));
+
+        assertEquals(3, observations.size());
+        assertEquals(from, observations.get(0).getEffectiveDateTime());
+        assertEquals(List.of(2L, 2L, 1L), buckets.stream().map(ObservationBucket::getCount).toList());
+        assertEquals(72.0, buckets.get(0).getAvg());
+    }
+
+    @Test
+    @DisplayName("Should page a time range from the last row's time and id, including rows at the same time")
+    void testGetObservationsInRangePaged() {
+        Observation sameTime = new Observation();
+        sameTime.setPatient(entityManager.find(Patient.class, patientId));
+        sameTime.setCode("8867-4");
+        sameTime.setValue("80");
+        sameTime.setNumericValue(80.0);
+        sameTime.setEffectiveDateTime(LocalDateTime.of(2025, 12, 1, 8, 1));
+        entityManager.persistAndFlush(sameTime);
+        entityManager.clear();
+
+        LocalDateTime from = LocalDateTime.of(2025, 12, 1, 8, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 12, 2, 0, 0);
+        List<String> values = new ArrayList<>();
+        Long after = null;
+        int pages = 0;
+        do {
+            CursorPage<ObservationDTO> page = observationService.getObservationsInRange(patientId, "8867-4", from, to, after, 2);
+            page.getItems().forEach(observation -> values.add(observation.getValue()));
+            if (!page.getItems().isEmpty()) {
+                from = page.getItems().get(page.getItems().size() - 1).getEffectiveDateTime();
+            }
+            after = page.getNextCursor();
+            pages++;
+        } while (after != null);
+
+        assertEquals(3, pages);
+        assertEquals(List.of("72", "72", "80", "72", "72", "72"), values);
+    }
+
+    @Test
+    @DisplayName("Should aggregate numeric observation values in a single statement")
+    void testGetObservationStats() {
+        List<ObservationStats> stats = assertSingleStatement(
+                () -> observationService.getObservationStats(null, "8867-4", null, null, false));
+
+        assertEquals(1, stats.size());
+        assertEquals(ROWS * ROWS, stats.get(0).getCount());
+        assertEquals(72.0, stats.get(0).getP90());
+        assertEquals(ROWS, assertSingleStatement(
+                () -> observationService.getObservationStats(null, null, null, null, true)).size());
+    }
+
+    @Test
+    @DisplayName("Should fetch encounters in a single statement")
+    void testGetEncounters() {
+        List<EncounterDTO> encounters = assertSingleStatement(encounterService::getAllEncounters);
+
+        assertEquals(ROWS, encounters.size());
+        assertEquals("INPATIENT", encounters.get(0).getEncounterClass());
+        assertEquals(1, assertSingleStatement(() -> encounterService.getEncountersByPatientId(patientId)).size());
+    }
+
+    @Test
+    @DisplayName("Should fetch patients and keyset pages in a single statement")
+    void testGetPatientsAndPages() {
+        assertEquals("MALE", assertSingleStatement(patientService::getAllPatients).get(0).getGender());
+        assertEquals(ROWS, assertSingleStatement(() -> encounterService.getEncountersPage(null, 100)).getItems().size());
+        assertEquals(ROWS * ROWS, assertSingleStatement(() -> observationService.getObservationsPage(null, 100)).getItems().size());
+    }
+
+    @Test
+    @DisplayName("Should serve repeated patient lookups from the cache without touching the database")
+    void testCachedPatientLookups() {
+        String identifier = assertSingleStatement(() -> patientService.getPatientById(patientId)).orElseThrow().getIdentifier();
+        assertTrue(assertNoStatement(() -> patientService.getPatientById(patientId)).isPresent());
+
+        assertSingleStatement(() -> patientService.searchByIdentifier(identifier));
+        assertEquals(identifier, assertNoStatement(() -> patientService.searchByIdentifier(identifier)).orElseThrow().getIdentifier());
+
+        // misses are not cached, so a patient created later is still found
+        assertSingleStatement(() -> patientService.searchByIdentifier("MRN-unknown"));
+        assertSingleStatement(() -> patientService.searchByIdentifier("MRN-unknown"));
+    }
+
+    @Test
+    @DisplayName("Should insert an observation batch without per-row lookups or inserts")
+    void testCreateObservationsBatch() {
+        List<ObservationDTO> batch = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            batch.add(new ObservationDTO(patientId, encounterId, "8867-4", String.valueOf(60 + i % 40),
+                    LocalDateTime.of(2025, 12, 2, 8, 0).plusMinutes(i)));
+        }
+
+        entityManager.clear();
+        statistics.clear();
+        List<BatchItemResult> results = observationService.createObservations(batch);
+
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == 201));
+        assertEquals(200, statistics.getEntityInsertCount());
+        // two id checks, a handful of pooled sequence calls and one batched insert
+        assertTrue(statistics.getPrepareStatementCount() <= 8,
+                "expected batched inserts but got " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    @DisplayName("Should stream export rows in a single statement per resource type")
+    void testStreamExportRows() {
+        List<PatientExportRow> patients = assertSingleStatement(() -> {
+            List<PatientExportRow> rows = new ArrayList<>();
+            patientService.streamExportRows(rows::add);
+            return rows;
+        });
+        List<ObservationExportRow> observations = assertSingleStatement(() -> {
+            List<ObservationExportRow> rows = new ArrayList<>();
+            observationService.streamExportRows(rows::add);
+            return rows;
+        });
+
+        assertEquals(ROWS, patients.size());
+        assertEquals("MALE", patients.get(0).getGender());
+        assertEquals(ROWS * ROWS, observations.size());
+        assertEquals(ROWS * (ROWS / 2 + 1), observations.stream().filter(o -> o.getEncounterId() != null).count());
+        assertEquals(72.0, observations.get(0).getNumericValue());
+    }
+
+    @Test
+    @DisplayName("Should leave a soft-deleted patient's encounters and observations out of the export")
+    void testStreamExportRowsWithoutDeletedPatient() {
+        Long deletedPatientId = ((Number) entityManager.getEntityManager()
+                .createNativeQuery("select min(id) from patients").getSingleResult()).longValue();
+        Long deletedEncounterId = ((Number) entityManager.getEntityManager()
+                .createNativeQuery("select id from encounters where patient_id = ?1")
+                .setParameter(1, deletedPatientId).getSingleResult()).longValue();
+        Observation inDeletedEncounter = new Observation();
+        inDeletedEncounter.setPatient(entityManager.find(Patient.class, patientId));
+        inDeletedEncounter.setEncounter(entityManager.find(Encounter.class, deletedEncounterId));
+        inDeletedEncounter.setCode("8867-4");
+        inDeletedEncounter.setValue("80");
+        inDeletedEncounter.setEffectiveDateTime(LocalDateTime.of(2025, 12, 1, 9, 0));
+        entityManager.persistAndFlush(inDeletedEncounter);
+        entityManager.getEntityManager().createNativeQuery("update patients set deleted_at = current_timestamp where id = ?1")
+                .setParameter(1, deletedPatientId)
+                .executeUpdate();
+
+        List<EncounterExportRow> encounters = assertSingleStatement(() -> {
+            List<EncounterExportRow> rows = new ArrayList<>();
+            encounterService.streamExportRows(rows::add);
+            return rows;
+        });
+        List<ObservationExportRow> observations = assertSingleStatement(() -> {
+            List<ObservationExportRow> rows = new ArrayList<>();
+            observationService.streamExportRows(rows::add);
+            return rows;
+        });
+
+        assertEquals(ROWS - 1, encounters.size());
+        assertTrue(encounters.stream().noneMatch(e -> e.getPatientId().equals(deletedPatientId)));
+        assertEquals((ROWS - 1) * ROWS, observations.size());
+        assertTrue(observations.stream().noneMatch(o -> o.getPatientId().equals(deletedPatientId)
+                || deletedEncounterId.equals(o.getEncounterId())));
+    }
+
+    private <T> T assertSingleStatement(Supplier<T> call) {
+        entityManager.clear();
+        statistics.clear();
+        T result = call.get();
+        assertEquals(1, statistics.getPrepareStatementCount(), "expected exactly one SQL statement");
+        return result;
+    }
+
+    private <T> T assertNoStatement(Supplier<T> call) {
+        entityManager.clear();
+        statistics.clear();
+        T result = call.get();
+        assertEquals(0, statistics.getPrepareStatementCount(), "expected the call to be served without SQL");
+        return result;
+    }
+}
@@ -2,14 +2,18 @@ package org.example.patient.service;
 
 import org.example.patient.entity.Encounter;
 import org.example.patient.entity.Patient;
+import org.example.patient.exceptions.PreconditionFailedException;
+import org.example.patient.models.CursorPage;
 import org.example.patient.models.EncounterDTO;
 import org.example.patient.repository.EncounterRepo;
+import org.example.patient.repository.ObservationRepo;
 import org.example.patient.repository.PatientRepo;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -31,6 +35,15 @@ class EncounterServiceTest {
     @Mock
     private PatientRepo patientRepository;
 
+    @Mock
+    private ChangeFeedService changeFeed;
+
+    @Mock
+    private ObservationRepo observationRepository;
+
+    @Mock
+    private RecentVitalsCache recentVitals;
+
     @InjectMocks
     private EncounterService encounterService;
 
@@ -149,15 +162,15 @@ class EncounterServiceTest {
     @DisplayName("Test 4: Should get all encounters successfully")
     void testGetAllEncounters() {
 
-        Encounter encounter2 = new Encounter();
-        encounter2.setId(2L);
-        encounter2.setPatient(patient);
-        encounter2.setStartDate(LocalDate.of(2025, 12, 1));
-        encounter2.setEndDate( LocalDate.of(2025, 12, 1));
-        encounter2.setEncounterClass(Encounter.EncounterClass.EMERGENCY);
+        EncounterDTO encounter2 = new EncounterDTO(
+                1L,
+                LocalDate.of(2025, 12, 1),
+                LocalDate.of(2025, 12, 1),
+                "EMERGENCY"
+        );
 
-        List<Encounter> encounters = Arrays.asList(encounter, encounter2);
-        when(encounterRepository.findAll()).thenReturn(encounters);
+        List<EncounterDTO> encounters = Arrays.asList(encounterDTO, encounter2);
+        when(encounterRepository.findAllDtos()).thenReturn(encounters);
 
         List<EncounterDTO> result = encounterService.getAllEncounters();
 
@@ -169,15 +182,15 @@ class EncounterServiceTest {
         System.out.println("   - Found " + result.size() + " encounters");
         System.out.println("   - Classes: " + result.get(0).getEncounterClass() + ", " + result.get(1).getEncounterClass());
 
-        verify(encounterRepository, times(1)).findAll();
+        verify(encounterRepository, times(1)).findAllDtos();
     }
 
     @Test
     @DisplayName("Test 5: Should get encounters by patient ID")
     void testGetEncountersByPatientId() {
 
-        List<Encounter> encounters = Arrays.asList(encounter);
-        when(encounterRepository.findByPatientId(1L)).thenReturn(encounters);
+        List<EncounterDTO> encounters = Arrays.asList(encounterDTO);
+        when(encounterRepository.findDtosByPatientId(1L)).thenReturn(encounters);
 
         List<EncounterDTO> result = encounterService.getEncountersByPatientId(1L);
 
@@ -187,7 +200,7 @@ class EncounterServiceTest {
 
         System.out.println("   - Found " + result.size() + " encounter(s) for patient ID: 1");
 
-        verify(encounterRepository, times(1)).findByPatientId(1L);
+        verify(encounterRepository, times(1)).findDtosByPatientId(1L);
     }
 
     @Test
@@ -208,7 +221,7 @@ class EncounterServiceTest {
         updatedEncounter.setEncounterClass(Encounter.EncounterClass.EMERGENCY);
 
         when(encounterRepository.findById(1L)).thenReturn(Optional.of(encounter));
-        when(encounterRepository.save(any(Encounter.class))).thenReturn(updatedEncounter);
+        when(encounterRepository.saveAndFlush(any(Encounter.class))).thenReturn(updatedEncounter);
 
         Optional<EncounterDTO> result = encounterService.updateEncounter(1L, updatedDTO);
 
@@ -219,7 +232,7 @@ class EncounterServiceTest {
         System.out.println("   - Updated encounter class to: " + result.get().getEncounterClass());
 
         verify(encounterRepository, times(1)).findById(1L);
-        verify(encounterRepository, times(1)).save(any(Encounter.class));
+        verify(encounterRepository, times(1)).saveAndFlush(any(Encounter.class));
     }
 
     @Test
@@ -238,4 +251,35 @@ class EncounterServiceTest {
         verify(encounterRepository, times(1)).existsById(1L);
         verify(encounterRepository, times(1)).deleteById(1L);
     }
+
+    @Test
+    @DisplayName("Test 8: Should page encounters by keyset")
+    void testGetEncountersPage() {
+
+        when(encounterRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(101)))
+                .thenReturn(List.of(encounter));
+
+        CursorPage<EncounterDTO> result = encounterService.getEncountersPage(null, 100);
+
+        assertEquals(1, result.getItems().size());
+        assertNull(result.getNextCursor());
+
+        System.out.println("   - Found " + result.getItems().size() + " encounter(s) on the first page");
+
+        verify(encounterRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, Limit.of(101));
+    }
+
+    @Test
+    @DisplayName("Test 9: Should reject an update whose If-Match version is stale")
+    void testUpdateEncounter_StaleVersion() {
+        encounter.setVersion(3L);
+        when(encounterRepository.findById(1L)).thenReturn(Optional.of(encounter));
+
+        assertThrows(PreconditionFailedException.class,
+                () -> encounterService.updateEncounter(1L, encounterDTO, 2L));
+
+        System.out.println("   - Rejected update against version 2 of version 3");
+
+        verify(encounterRepository, never()).saveAndFlush(any(Encounter.class));
+    }
 }
@@ -0,0 +1,197 @@
+package org.example.patient.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.models.EncounterExportRow;
+import org.example.patient.models.ExportStatus;
+import org.example.patient.models.PatientExportRow;
+import org.example.patient.service.ExportService.Format;
+import org.example.patient.service.ExportService.ResourceType;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Export Service Tests")
+class ExportServiceTest {
+
+    @Mock
+    private PatientService patientService;
+
+    @Mock
+    private EncounterService encounterService;
+
+    @Mock
+    private ObservationService observationService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @InjectMocks
+    private ExportService exportService;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp(TestInfo testInfo) {
+        System.out.println("▶ Running: " + testInfo.getDisplayName());
+
+        ReflectionTestUtils.setField(exportService, "directory", directory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        exportService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Test 1: Should export patients as gzip-compressed NDJSON")
+    void testExportNdjson() throws Exception {
+        stubPatients();
+        ExportStatus started = exportService.start(EnumSet.of(ResourceType.PATIENTS), Format.NDJSON);
+
+        ExportStatus status = awaitCompletion(started.getId());
+
+        assertEquals("COMPLETED", status.getStatus());
+        assertEquals(2, status.getFiles().get(0).getRows());
+        assertEquals("/api/export/" + started.getId() + "/files/patients", status.getFiles().get(0).getUrl());
+        List<String> lines = read(exportService.getFile(started.getId(), ResourceType.PATIENTS).orElseThrow());
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"id\":1,\"identifier\":\"MRN-1\""));
+        assertTrue(lines.get(1).startsWith("{\"id\":2,"));
+        assertTrue(lines.get(0).contains("\"birthDate\":\"1985-06-15\""));
+        verifyNoInteractions(encounterService, observationService);
+
+        System.out.println("✅ NDJSON export written");
+    }
+
+    @Test
+    @DisplayName("Test 2: Should export CSV with a header and quoted values")
+    void testExportCsv() throws Exception {
+        stubPatients();
+        doAnswer(invocation -> {
+            Consumer<EncounterExportRow> consumer = invocation.getArgument(0);
+            consumer.accept(new EncounterExportRow(10L, 1L, LocalDate.of(2025, 12, 1), LocalDate.of(2025, 12, 2), "INPATIENT"));
+            return null;
+        }).when(encounterService).streamExportRows(any());
+
+        ExportStatus started = exportService.start(EnumSet.of(ResourceType.PATIENTS, ResourceType.ENCOUNTERS), Format.CSV);
+        awaitCompletion(started.getId());
+
+        List<String> patients = read(exportService.getFile(started.getId(), ResourceType.PATIENTS).orElseThrow());
+        List<String> encounters = read(exportService.getFile(started.getId(), ResourceType.ENCOUNTERS).orElseThrow());
+        assertEquals("id,identifier,givenName,familyName,birthDate,gender", patients.get(0));
+        assertEquals("2,MRN-2,Jane,\"Doe, Jr\",1990-01-02,FEMALE", patients.get(2));
+        assertEquals(List.of("id,patientId,startDate,endDate,encounterClass", "10,1,2025-12-01,2025-12-02,INPATIENT"), encounters);
+
+        System.out.println("✅ CSV export written");
+    }
+
+    @Test
+    @DisplayName("Test 3: Should report a failed export and delete its files")
+    void testExportFailureAndDelete() throws Exception {
+        doThrow(new IllegalStateException("cursor closed")).when(observationService).streamExportRows(any());
+
+        ExportStatus started = exportService.start(EnumSet.of(ResourceType.OBSERVATIONS), Format.NDJSON);
+        ExportStatus status = awaitCompletion(started.getId());
+
+        assertEquals("FAILED", status.getStatus());
+        assertEquals("cursor closed", status.getError());
+        assertTrue(exportService.getFile(started.getId(), ResourceType.OBSERVATIONS).isEmpty());
+        assertTrue(exportService.delete(started.getId()));
+        assertFalse(Files.exists(directory.resolve(started.getId())));
+        assertTrue(exportService.getStatus(started.getId()).isEmpty());
+
+        System.out.println("✅ Failed export reported and deleted");
+    }
+
+    @Test
+    @DisplayName("Test 4: Should reject unknown resource types and formats")
+    void testParseInvalid() {
+        assertEquals(EnumSet.allOf(ResourceType.class), ExportService.parseTypes(null));
+        assertEquals(Format.CSV, ExportService.parseFormat("csv"));
+        assertThrows(BadRequestException.class, () -> ExportService.parseTypes(List.of("medications")));
+        assertThrows(BadRequestException.class, () -> ExportService.parseFormat("xml"));
+
+        System.out.println("✅ Invalid parameters rejected");
+    }
+
+    @Test
+    @DisplayName("Test 5: Should remove finished exports and forgotten files after the retention")
+    void testDeleteExpired() throws Exception {
+        stubPatients();
+        ExportStatus started = exportService.start(EnumSet.of(ResourceType.PATIENTS), Format.NDJSON);
+        awaitCompletion(started.getId());
+        Path forgotten = Files.createDirectories(directory.resolve("forgotten"));
+        Files.setLastModifiedTime(forgotten, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+        ReflectionTestUtils.setField(exportService, "retention", Duration.ofHours(1));
+        exportService.deleteExpired();
+
+        assertTrue(exportService.getStatus(started.getId()).isPresent());
+        assertTrue(Files.exists(directory.resolve(started.getId())));
+        assertFalse(Files.exists(forgotten));
+
+        ReflectionTestUtils.setField(exportService, "retention", Duration.ZERO);
+        exportService.deleteExpired();
+
+        assertTrue(exportService.getStatus(started.getId()).isEmpty());
+        assertFalse(Files.exists(directory.resolve(started.getId())));
+
+        System.out.println("✅ Expired exports removed");
+    }
+
+    private void stubPatients() {
+        doAnswer(invocation -> {
+            Consumer<PatientExportRow> consumer = invocation.getArgument(0);
+            consumer.accept(new PatientExportRow(1L, "MRN-1", "John", "Doe", LocalDate.of(1985, 6, 15), "MALE"));
+            consumer.accept(new PatientExportRow(2L, "MRN-2", "Jane", "Doe, Jr", LocalDate.of(1990, 1, 2), "FEMALE"));
+            return null;
+        }).when(patientService).streamExportRows(any());
+    }
+
+    private ExportStatus awaitCompletion(String id) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            ExportStatus status = exportService.getStatus(id).orElseThrow();
+            if (!status.getStatus().equals("QUEUED") && !status.getStatus().equals("RUNNING")) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        fail("Export " + id + " did not finish");
+        return null;
+    }
+
+    private static List<String> read(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+}
@@ -1,4 +1,201 @@
 package org.example.patient.service;
 
-public class ObservationServiceTest {
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.example.patient.entity.Observation;
+import org.example.patient.entity.Patient;
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.models.BatchItemResult;
+import org.example.patient.models.ObservationBucket;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.repository.EncounterRepo;
+import org.example.patient.repository.ObservationRepo;
+import org.example.patient.repository.PatientRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Observation Service Tests")
+class ObservationServiceTest {
+
+    @Mock
+    private ObservationRepo observationRepository;
+
+    @Mock
+    private PatientRepo patientRepository;
+
+    @Mock
+    private EncounterRepo encounterRepository;
+
+    @Mock
+    private ChangeFeedService changeFeed;
+
+    @Mock
+    private RecentVitalsCache recentVitals;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @InjectMocks
+    private ObservationService observationService;
+
+    private ObservationDTO observationDTO;
+
+    @BeforeEach
+    void setUp() {
+        observationDTO = new ObservationDTO(
+                1L,
+                null,
+                "8867-4",
+                "72",
+                LocalDateTime.of(2025, 12, 1, 8, 30)
+        );
+    }
+
+    @Test
+    @DisplayName("Test 1: Should create observation batch with one result per item")
+    void testCreateObservations() {
+        ObservationDTO unknownPatient = new ObservationDTO(999L, null, "8867-4", "80", LocalDateTime.of(2025, 12, 1, 8, 31));
+        ObservationDTO unknownEncounter = new ObservationDTO(1L, 5L, "8867-4", "81", LocalDateTime.of(2025, 12, 1, 8, 32));
+        ObservationDTO invalid = new ObservationDTO(1L, null, "", "82", null);
+
+        when(patientRepository.findExistingIds(Set.of(1L, 999L))).thenReturn(Set.of(1L));
+        when(encounterRepository.findExistingIds(Set.of(5L))).thenReturn(Set.of());
+        when(patientRepository.getReferenceById(1L)).thenReturn(new Patient());
+
+        List<BatchItemResult> results = observationService.createObservations(
+                Arrays.asList(observationDTO, unknownPatient, unknownEncounter, invalid, null));
+
+        assertEquals(5, results.size());
+        assertEquals(201, results.get(0).getStatus());
+        assertEquals(404, results.get(1).getStatus());
+        assertEquals("Patient not found", results.get(1).getMessage());
+        assertEquals(404, results.get(2).getStatus());
+        assertEquals("Encounter not found", results.get(2).getMessage());
+        assertEquals(400, results.get(3).getStatus());
+        assertTrue(results.get(3).getMessage().contains("effectiveDateTime"));
+        assertEquals(400, results.get(4).getStatus());
+
+        verify(patientRepository, times(1)).findExistingIds(any());
+        verify(patientRepository, never()).findById(any());
+        verify(entityManager, times(1)).persist(any(Observation.class));
+    }
+
+    @Test
+    @DisplayName("Test 2: Should skip the encounter lookup when no item references an encounter")
+    void testCreateObservations_NoEncounters() {
+        when(patientRepository.findExistingIds(Set.of(1L))).thenReturn(Set.of(1L));
+        when(patientRepository.getReferenceById(1L)).thenReturn(new Patient());
+
+        List<BatchItemResult> results = observationService.createObservations(List.of(observationDTO, observationDTO));
+
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == 201));
+
+        verify(encounterRepository, never()).findExistingIds(any());
+        verify(entityManager, times(2)).persist(any(Observation.class));
+    }
+
+    @Test
+    @DisplayName("Test 6: Should skip the patient lookup when no item names a patient")
+    void testCreateObservations_NoPatients() {
+        observationDTO.setPatientId(null);
+
+        List<BatchItemResult> results = observationService.createObservations(Arrays.asList(observationDTO, null));
+
+        assertEquals(List.of(400, 400), results.stream().map(BatchItemResult::getStatus).toList());
+
+        verify(patientRepository, never()).findExistingIds(any());
+        verify(encounterRepository, never()).findExistingIds(any());
+        verify(entityManager, never()).persist(any());
+    }
+
+    @Test
+    @DisplayName("Test 5: Should store a typed numeric value and unit next to the text value")
+    void testCreateObservations_NumericValue() {
+        ObservationDTO withUnit = new ObservationDTO(1L, null, "2339-0", " 5.4 mmol/L ", LocalDateTime.of(2025, 12, 1, 8, 31));
+        ObservationDTO bloodPressure = new ObservationDTO(1L, null, "85354-9", "120/80 mmHg", LocalDateTime.of(2025, 12, 1, 8, 32));
+        ObservationDTO text = new ObservationDTO(1L, null, "94500-6", "negative", LocalDateTime.of(2025, 12, 1, 8, 33));
+        when(patientRepository.findExistingIds(Set.of(1L))).thenReturn(Set.of(1L));
+        when(patientRepository.getReferenceById(1L)).thenReturn(new Patient());
+
+        observationService.createObservations(List.of(observationDTO, withUnit, bloodPressure, text));
+
+        ArgumentCaptor<Observation> persisted = ArgumentCaptor.forClass(Observation.class);
+        verify(entityManager, times(4)).persist(persisted.capture());
+        List<Observation> observations = persisted.getAllValues();
+        assertEquals(72.0, observations.get(0).getNumericValue());
+        assertNull(observations.get(0).getUnit());
+        assertEquals(5.4, observations.get(1).getNumericValue());
+        assertEquals("mmol/L", observations.get(1).getUnit());
+        assertEquals(" 5.4 mmol/L ", observations.get(1).getValue());
+        assertNull(observations.get(2).getNumericValue());
+        assertNull(observations.get(3).getNumericValue());
+    }
+
+    @Test
+    @DisplayName("Test 3: Should downsample a series into min/max/avg/last buckets")
+    void testGetObservationBuckets() {
+        LocalDateTime from = LocalDateTime.of(2025, 12, 1, 0, 0);
+        LocalDateTime to = from.plusHours(3);
+        when(observationRepository.streamSamples(1L, "8867-4", from, to)).thenReturn(Stream.of(
+                sample(from.plusMinutes(5), 70),
+                sample(from.plusMinutes(50), 90),
+                sample(from.plusMinutes(59), 80),
+                sample(from.plusMinutes(170), 60)));
+
+        List<ObservationBucket> buckets = observationService.getObservationBuckets(1L, "8867-4", from, to, Duration.ofHours(1));
+
+        assertEquals(2, buckets.size());
+        assertEquals(new ObservationBucket(from, 3, 70, 90, 80, 80), buckets.get(0));
+        assertEquals(new ObservationBucket(from.plusHours(2), 1, 60, 60, 60, 60), buckets.get(1));
+    }
+
+    @Test
+    @DisplayName("Test 4: Should reject ranges that are empty or would produce too many buckets")
+    void testGetObservationBuckets_InvalidRange() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+        assertThrows(BadRequestException.class,
+                () -> observationService.getObservationBuckets(1L, "8867-4", from, from, Duration.ofHours(1)));
+        assertThrows(BadRequestException.class,
+                () -> observationService.getObservationBuckets(1L, "8867-4", from, from.plusYears(1), Duration.ofMinutes(1)));
+
+        verify(observationRepository, never()).streamSamples(any(), any(), any(), any());
+    }
+
+    private static ObservationRepo.SampleView sample(LocalDateTime effectiveDateTime, double numericValue) {
+        return new ObservationRepo.SampleView() {
+            @Override
+            public LocalDateTime getEffectiveDateTime() {
+                return effectiveDateTime;
+            }
+
+            @Override
+            public double getNumericValue() {
+                return numericValue;
+            }
+        };
+    }
 }
@@ -0,0 +1,115 @@
+package org.example.patient.service;
+
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.models.EncounterWithObservationsDTO;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.PatientDTO;
+import org.example.patient.models.PatientEverythingDTO;
+import org.example.patient.repository.EncounterRepo;
+import org.example.patient.repository.ObservationRepo;
+import org.example.patient.service.PatientEverythingService.Section;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Patient Everything Service Tests")
+class PatientEverythingServiceTest {
+
+    @Mock
+    private PatientService patientService;
+
+    @Mock
+    private EncounterRepo encounterRepository;
+
+    @Mock
+    private ObservationRepo observationRepository;
+
+    @InjectMocks
+    private PatientEverythingService everythingService;
+
+    private PatientDTO patientDTO;
+    private ObservationDTO attached;
+    private ObservationDTO unattached;
+
+    @BeforeEach
+    void setUp(TestInfo testInfo) {
+        System.out.println("▶ Running: " + testInfo.getDisplayName());
+
+        patientDTO = new PatientDTO("MRN-12345", "John", "Doe", LocalDate.of(1985, 6, 15), "MALE");
+        attached = new ObservationDTO(1L, 10L, "8867-4", "72 bpm", LocalDateTime.of(2025, 12, 1, 8, 0));
+        unattached = new ObservationDTO(1L, null, "8310-5", "37.0 C", LocalDateTime.of(2025, 12, 1, 9, 0));
+    }
+
+    @Test
+    @DisplayName("Test 1: Should nest observations under their encounter")
+    void testGetEverything() {
+        when(patientService.getPatientById(1L)).thenReturn(Optional.of(patientDTO));
+        when(encounterRepository.findNestedDtosByPatientId(1L)).thenReturn(List.of(
+                new EncounterWithObservationsDTO(10L, LocalDate.of(2025, 12, 1), LocalDate.of(2025, 12, 2), "INPATIENT")));
+        when(observationRepository.findDtosByPatientId(1L)).thenReturn(List.of(attached, unattached));
+
+        StepVerifier.create(everythingService.getEverything(1L, EnumSet.allOf(Section.class)))
+                .assertNext(everything -> {
+                    assertEquals(patientDTO, everything.getPatient());
+                    assertEquals(List.of(attached), everything.getEncounters().get(0).getObservations());
+                    assertEquals(List.of(unattached), everything.getObservations());
+                })
+                .verifyComplete();
+
+        System.out.println("✅ Patient record assembled");
+    }
+
+    @Test
+    @DisplayName("Test 2: Should complete empty when the patient does not exist")
+    void testGetEverythingPatientNotFound() {
+        when(patientService.getPatientById(99L)).thenReturn(Optional.empty());
+
+        StepVerifier.create(everythingService.getEverything(99L, EnumSet.of(Section.PATIENT)))
+                .verifyComplete();
+
+        System.out.println("✅ Missing patient produced no record");
+    }
+
+    @Test
+    @DisplayName("Test 3: Should only query the selected sections")
+    void testGetEverythingSelectedSections() {
+        when(patientService.getPatientById(1L)).thenReturn(Optional.of(patientDTO));
+        when(observationRepository.findDtosByPatientId(1L)).thenReturn(List.of(attached, unattached));
+
+        PatientEverythingDTO everything = everythingService
+                .getEverything(1L, PatientEverythingService.parseSections(List.of("observations")))
+                .block();
+
+        assertNotNull(everything);
+        assertNull(everything.getPatient());
+        assertNull(everything.getEncounters());
+        assertEquals(List.of(attached, unattached), everything.getObservations());
+        verify(encounterRepository, never()).findNestedDtosByPatientId(anyLong());
+
+        System.out.println("✅ Unselected sections skipped");
+    }
+
+    @Test
+    @DisplayName("Test 4: Should reject an unknown section")
+    void testParseSectionsInvalid() {
+        assertEquals(EnumSet.allOf(Section.class), PatientEverythingService.parseSections(null));
+        assertThrows(BadRequestException.class,
+                () -> PatientEverythingService.parseSections(List.of("medications")));
+
+        System.out.println("✅ Unknown section rejected");
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.patient.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Patient Name Index Tests")
+class PatientNameIndexTest {
+
+    private PatientNameIndex nameIndex;
+
+    @BeforeEach
+    void setUp() {
+        nameIndex = new PatientNameIndex();
+        nameIndex.put(1L, "John", "Doe");
+        nameIndex.put(2L, "Jane", "Smith");
+        nameIndex.put(3L, "Johnny", "Smithson");
+        nameIndex.put(4L, "José", "Goldsmith");
+        nameIndex.put(5L, "Mary", "Doerr");
+    }
+
+    @Test
+    @DisplayName("Test 1: Should rank exact matches before prefix and substring matches")
+    void testSearchRanking() {
+        List<Long> result = nameIndex.search("smith", null, 10);
+
+        assertEquals(List.of(2L, 3L, 4L), result);
+    }
+
+    @Test
+    @DisplayName("Test 2: Should tolerate typos")
+    void testSearchWithTypo() {
+        assertEquals(2L, nameIndex.search("smyth", null, 10).get(0));
+        assertTrue(nameIndex.search(null, "jon", 10).contains(1L));
+    }
+
+    @Test
+    @DisplayName("Test 3: Should match substrings in the middle of a name")
+    void testSearchSubstring() {
+        assertEquals(List.of(4L), nameIndex.search("olds", null, 10));
+    }
+
+    @Test
+    @DisplayName("Test 4: Should combine family and given name")
+    void testSearchCombined() {
+        assertEquals(List.of(3L), nameIndex.search("smith", "johnny", 10));
+        assertEquals(List.of(1L), nameIndex.search("doe", "john", 10));
+    }
+
+    @Test
+    @DisplayName("Test 5: Should ignore case and accents")
+    void testSearchNormalized() {
+        assertEquals(4L, nameIndex.search(null, "JOSE", 10).get(0));
+    }
+
+    @Test
+    @DisplayName("Test 6: Should reflect updates and removals")
+    void testUpdateAndRemove() {
+        nameIndex.put(1L, "John", "Brown");
+        nameIndex.remove(2L);
+
+        assertEquals(List.of(5L), nameIndex.search("doe", null, 10).subList(0, 1));
+        assertFalse(nameIndex.search("doe", null, 10).contains(1L));
+        assertFalse(nameIndex.search("smith", null, 10).contains(2L));
+        assertEquals(List.of(1L), nameIndex.search("brown", null, 10));
+        assertEquals(4, nameIndex.size());
+    }
+
+    @Test
+    @DisplayName("Test 7: Should respect the result limit")
+    void testSearchLimit() {
+        assertEquals(List.of(2L), nameIndex.search("smith", null, 1));
+    }
+}
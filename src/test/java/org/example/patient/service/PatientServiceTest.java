@@ -1,17 +1,47 @@
 package org.example.patient.service;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.example.patient.config.CacheConfig;
+import org.example.patient.entity.ChangeEvent;
+import org.example.patient.entity.Encounter;
 import org.example.patient.entity.Patient;
+import org.example.patient.exceptions.BadRequestException;
+import org.example.patient.exceptions.PreconditionFailedException;
+import org.example.patient.models.BatchItemResult;
+import org.example.patient.models.CursorPage;
 import org.example.patient.models.PatientDTO;
+import org.example.patient.models.PatientSearchCriteria;
+import org.example.patient.models.ResourceVersion;
+import org.example.patient.repository.EncounterRepo;
+import org.example.patient.repository.ObservationRepo;
 import org.example.patient.repository.PatientRepo;
+import org.example.patient.repository.PatientUpsertRepo;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -27,6 +57,40 @@ class PatientServiceTest {
     @Mock
     private PatientRepo patientRepository;
 
+    @Mock
+    private EncounterRepo encounterRepository;
+
+    @Mock
+    private ObservationRepo observationRepository;
+
+    @Mock
+    private PatientNameIndex nameIndex;
+
+    @Mock
+    private ChangeFeedService changeFeed;
+
+    @Mock
+    private RecentVitalsCache recentVitals;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private SessionFactory sessionFactory;
+
+    @Mock
+    private Cache secondLevelCache;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(
+            CacheConfig.PATIENTS, CacheConfig.PATIENTS_BY_IDENTIFIER);
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     @InjectMocks
     private PatientService patientService;
 
@@ -85,16 +149,16 @@ class PatientServiceTest {
     @Test
     @DisplayName("Test 3: Should get all patients successfully")
     void testGetAllPatients() {
-        Patient patient2 = new Patient();
-        patient2.setId(2L);
-        patient2.setIdentifier("MRN-67890");
-        patient2.setGivenName("Jane");
-        patient2.setFamilyName("Smith");
-        patient2.setBirthDate(LocalDate.of(1990, 3, 20));
-        patient2.setGender(Patient.Gender.FEMALE);
+        PatientDTO patient2 = new PatientDTO(
+                "MRN-67890",
+                "Jane",
+                "Smith",
+                LocalDate.of(1990, 3, 20),
+                "FEMALE"
+        );
 
-        List<Patient> patients = Arrays.asList(patient, patient2);
-        when(patientRepository.findAll()).thenReturn(patients);
+        List<PatientDTO> patients = Arrays.asList(patientDTO, patient2);
+        when(patientRepository.findAllDtos()).thenReturn(patients);
 
         List<PatientDTO> result = patientService.getAllPatients();
 
@@ -103,7 +167,7 @@ class PatientServiceTest {
         assertEquals("John", result.get(0).getGivenName());
         assertEquals("Jane", result.get(1).getGivenName());
 
-        verify(patientRepository, times(1)).findAll();
+        verify(patientRepository, times(1)).findAllDtos();
     }
 
     @Test
@@ -127,7 +191,7 @@ class PatientServiceTest {
         updatedPatient.setGender(Patient.Gender.MALE);
 
         when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
-        when(patientRepository.save(any(Patient.class))).thenReturn(updatedPatient);
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenReturn(updatedPatient);
 
         Optional<PatientDTO> result = patientService.updatePatient(1L, updatedDTO);
 
@@ -135,20 +199,20 @@ class PatientServiceTest {
         assertEquals("Smith", result.get().getFamilyName());
 
         verify(patientRepository, times(1)).findById(1L);
-        verify(patientRepository, times(1)).save(any(Patient.class));
+        verify(patientRepository, times(1)).saveAndFlush(any(Patient.class));
     }
 
     @Test
     @DisplayName("Test 5: Should delete patient successfully")
     void testDeletePatient() {
 
-        when(patientRepository.existsById(1L)).thenReturn(true);
+        when(patientRepository.findIdentifierById(1L)).thenReturn(Optional.of("MRN-12345"));
         doNothing().when(patientRepository).deleteById(1L);
 
         boolean result = patientService.deletePatient(1L);
 
         assertTrue(result);
-        verify(patientRepository, times(1)).existsById(1L);
+        verify(patientRepository, times(1)).findIdentifierById(1L);
         verify(patientRepository, times(1)).deleteById(1L);
     }
 
@@ -186,4 +250,248 @@ class PatientServiceTest {
 
         verify(patientRepository, times(1)).findByBirthDateBetween(startDate, endDate);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Test 8: Should return a keyset page with a cursor to the next page")
+    void testGetPatientsPage() {
+        Patient patient2 = new Patient();
+        patient2.setId(2L);
+        patient2.setIdentifier("MRN-67890");
+        patient2.setGivenName("Jane");
+        patient2.setFamilyName("Smith");
+        patient2.setBirthDate(LocalDate.of(1990, 3, 20));
+        patient2.setGender(Patient.Gender.FEMALE);
+
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2)))
+                .thenReturn(Arrays.asList(patient, patient2));
+
+        CursorPage<PatientDTO> result = patientService.getPatientsPage(null, 1);
+
+        assertEquals(1, result.getItems().size());
+        assertEquals("MRN-12345", result.getItems().get(0).getIdentifier());
+        assertEquals(1L, result.getNextCursor());
+
+        verify(patientRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2));
+    }
+
+    @Test
+    @DisplayName("Test 9: Should return the last keyset page without a cursor")
+    void testGetPatientsPage_LastPage() {
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(1L, Limit.of(11)))
+                .thenReturn(List.of());
+
+        CursorPage<PatientDTO> result = patientService.getPatientsPage(1L, 10);
+
+        assertTrue(result.getItems().isEmpty());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Test 10: Should search patients by name through the name index in rank order")
+    void testSearchByName() {
+        Patient patient2 = new Patient();
+        patient2.setId(2L);
+        patient2.setIdentifier("MRN-67890");
+        patient2.setGivenName("Jon");
+        patient2.setFamilyName("Doe");
+        patient2.setBirthDate(LocalDate.of(1990, 3, 20));
+        patient2.setGender(Patient.Gender.MALE);
+
+        when(nameIndex.isReady()).thenReturn(true);
+        when(nameIndex.search("Doe", "John", 10)).thenReturn(List.of(1L, 2L));
+        when(patientRepository.findAllById(List.of(1L, 2L))).thenReturn(Arrays.asList(patient2, patient));
+
+        List<PatientDTO> result = patientService.searchByName("Doe", "John", 10);
+
+        assertEquals(2, result.size());
+        assertEquals("MRN-12345", result.get(0).getIdentifier());
+        assertEquals("MRN-67890", result.get(1).getIdentifier());
+
+        verify(patientRepository, never()).findByFamilyNameContainingIgnoreCase(any());
+    }
+
+    @Test
+    @DisplayName("Test 11: Should keep the name index in sync on create and delete")
+    void testNameIndexMaintenance() {
+        when(patientRepository.save(any(Patient.class))).thenReturn(patient);
+        when(patientRepository.findIdentifierById(1L)).thenReturn(Optional.of("MRN-12345"));
+
+        patientService.createPatient(patientDTO);
+        patientService.deletePatient(1L);
+
+        verify(nameIndex, times(1)).put(1L, "John", "Doe");
+        verify(nameIndex, times(1)).remove(1L);
+    }
+
+    @Test
+    @DisplayName("Test 12: Should evict cached lookups for the old and new identifier on update and delete")
+    void testCacheEviction() {
+        cacheManager.getCache(CacheConfig.PATIENTS).put(1L, patientDTO);
+        cacheManager.getCache(CacheConfig.PATIENTS_BY_IDENTIFIER).put("MRN-12345", patientDTO);
+        cacheManager.getCache(CacheConfig.PATIENTS_BY_IDENTIFIER).put("MRN-99999", patientDTO);
+
+        PatientDTO renamed = new PatientDTO("MRN-99999", "John", "Doe", LocalDate.of(1985, 6, 15), "MALE");
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
+        when(patientRepository.saveAndFlush(any(Patient.class))).thenReturn(patient);
+
+        patientService.updatePatient(1L, renamed);
+
+        assertNull(cacheManager.getCache(CacheConfig.PATIENTS).get(1L));
+        assertNull(cacheManager.getCache(CacheConfig.PATIENTS_BY_IDENTIFIER).get("MRN-12345"));
+        assertNull(cacheManager.getCache(CacheConfig.PATIENTS_BY_IDENTIFIER).get("MRN-99999"));
+
+        cacheManager.getCache(CacheConfig.PATIENTS).put(1L, renamed);
+        cacheManager.getCache(CacheConfig.PATIENTS_BY_IDENTIFIER).put("MRN-99999", renamed);
+        when(patientRepository.findIdentifierById(1L)).thenReturn(Optional.of("MRN-99999"));
+
+        patientService.deletePatient(1L);
+
+        assertNull(cacheManager.getCache(CacheConfig.PATIENTS).get(1L));
+        assertNull(cacheManager.getCache(CacheConfig.PATIENTS_BY_IDENTIFIER).get("MRN-99999"));
+    }
+
+    @Test
+    @DisplayName("Test 13: Should translate page and sort parameters for a composite search")
+    void testSearchPatients() {
+        PatientSearchCriteria criteria = new PatientSearchCriteria("Doe", null, null, null,
+                LocalDate.of(1980, 1, 1), null, "MALE");
+        PageRequest expected = PageRequest.of(2, 20, Sort.by(Sort.Order.asc("familyName"), Sort.Order.desc("birthDate")));
+        when(patientRepository.search(criteria, expected)).thenReturn(new PageImpl<>(List.of(patientDTO), expected, 41));
+
+        Page<PatientDTO> result = patientService.searchPatients(criteria, 2, 20, List.of("family", "-birthDate"));
+
+        assertEquals(41, result.getTotalElements());
+        assertEquals("MRN-12345", result.getContent().get(0).getIdentifier());
+    }
+
+    @Test
+    @DisplayName("Test 14: Should reject unknown sort keys and gender values")
+    void testSearchPatients_InvalidParameters() {
+        PatientSearchCriteria criteria = new PatientSearchCriteria(null, null, null, null, null, null, null);
+
+        assertThrows(BadRequestException.class,
+                () -> patientService.searchPatients(criteria, 0, 10, List.of("encounters")));
+        criteria.setGender("OTHER");
+        assertThrows(BadRequestException.class,
+                () -> patientService.searchPatients(criteria, 0, 10, null));
+        verify(patientRepository, never()).search(any(), any());
+    }
+
+    @Test
+    @DisplayName("Test 15: Should upsert valid patients in one call and report each item")
+    void testUpsertPatientBatch() {
+        PatientDTO created = new PatientDTO("MRN-67890", "Jane", "Smith", LocalDate.of(1990, 3, 22), "FEMALE");
+        PatientDTO unchanged = new PatientDTO("MRN-11111", "Ann", "Lee", LocalDate.of(2000, 1, 1), "FEMALE");
+        PatientDTO invalid = new PatientDTO("MRN-22222", "", "Lee", LocalDate.of(2000, 1, 1), "FEMALE");
+        when(patientRepository.upsertByIdentifier(List.of(patientDTO, created, unchanged))).thenReturn(List.of(
+                new PatientUpsertRepo.Upserted(1L, "MRN-12345", "John", "Doe", false),
+                new PatientUpsertRepo.Upserted(2L, "MRN-67890", "Jane", "Smith", true)));
+        when(entityManager.getEntityManagerFactory()).thenReturn(entityManagerFactory);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getCache()).thenReturn(secondLevelCache);
+
+        List<BatchItemResult> results = patientService.upsertPatientBatch(
+                Arrays.asList(patientDTO, created, unchanged, invalid, null));
+
+        assertEquals(List.of(200, 201, 200, 400, 400), results.stream().map(BatchItemResult::getStatus).toList());
+        assertEquals("Updated", results.get(0).getMessage());
+        assertEquals("Unchanged", results.get(2).getMessage());
+        assertTrue(results.get(3).getMessage().startsWith("givenName"));
+        verify(patientRepository, times(1)).upsertByIdentifier(any());
+        verify(nameIndex, times(1)).put(2L, "Jane", "Smith");
+        verify(changeFeed, times(1)).record(ChangeEvent.ResourceType.PATIENT, ChangeEvent.Operation.CREATE, List.of(2L));
+        verify(changeFeed, times(1)).record(ChangeEvent.ResourceType.PATIENT, ChangeEvent.Operation.UPDATE, List.of(1L));
+        verify(secondLevelCache, times(1)).evictEntityData(Patient.class, 1L);
+        verify(secondLevelCache, times(1)).evictEntityData(Patient.class, 2L);
+        verify(secondLevelCache, times(1)).evictQueryRegion(PatientRepo.QUERY_REGION);
+    }
+
+    @Test
+    @DisplayName("Test 16: Should reject an update whose If-Match version is stale")
+    void testUpdatePatient_StaleVersion() {
+        patient.setVersion(3L);
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
+
+        assertThrows(PreconditionFailedException.class, () -> patientService.updatePatient(1L, patientDTO, 2L));
+        verify(patientRepository, never()).saveAndFlush(any(Patient.class));
+        verify(nameIndex, never()).put(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Test 17: Should answer version checks from the cached patient before the database")
+    void testGetPatientVersion() {
+        LocalDateTime lastModified = LocalDateTime.of(2025, 1, 2, 3, 4, 5);
+        patientDTO.setVersion(4L);
+        patientDTO.setLastModified(lastModified);
+        cacheManager.getCache(CacheConfig.PATIENTS).put(1L, patientDTO);
+        when(patientRepository.findVersionById(2L)).thenReturn(Optional.of(new ResourceVersion(7L, lastModified)));
+
+        assertEquals(Optional.of(new ResourceVersion(4L, lastModified)), patientService.getPatientVersion(1L));
+        assertEquals(7L, patientService.getPatientVersion(2L).orElseThrow().getVersion());
+        verify(patientRepository, never()).findVersionById(1L);
+    }
+
+    @Test
+    @DisplayName("Test 18: Should delete a small patient at once and evict its cached encounters")
+    void testDeletePatient_Cascade() {
+        ReflectionTestUtils.setField(patientService, "purgeThreshold", 100);
+        when(patientRepository.findIdentifierById(1L)).thenReturn(Optional.of("MRN-12345"));
+        when(observationRepository.countByPatientIdUpTo(1L, 100)).thenReturn(99L);
+        when(encounterRepository.findIdsByPatientId(1L)).thenReturn(List.of(10L, 11L));
+        when(entityManager.getEntityManagerFactory()).thenReturn(entityManagerFactory);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getCache()).thenReturn(secondLevelCache);
+
+        assertTrue(patientService.deletePatient(1L));
+
+        verify(patientRepository, times(1)).deleteById(1L);
+        verify(changeFeed, times(1)).recordPatientDelete(1L);
+        verify(secondLevelCache, times(1)).evictEntityData(Encounter.class, 10L);
+        verify(secondLevelCache, times(1)).evictEntityData(Encounter.class, 11L);
+        verify(secondLevelCache, times(1)).evictQueryRegion(EncounterRepo.QUERY_REGION);
+    }
+
+    @Test
+    @DisplayName("Test 19: Should soft-delete a patient with more observations than the purge threshold")
+    void testDeletePatient_Purge() {
+        ReflectionTestUtils.setField(patientService, "purgeThreshold", 100);
+        when(patientRepository.findIdentifierById(1L)).thenReturn(Optional.of("MRN-12345"));
+        when(observationRepository.countByPatientIdUpTo(1L, 100)).thenReturn(100L);
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(patient));
+        when(entityManager.getEntityManagerFactory()).thenReturn(entityManagerFactory);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getCache()).thenReturn(secondLevelCache);
+
+        assertTrue(patientService.deletePatient(1L));
+
+        assertNotNull(patient.getDeletedAt());
+        verify(patientRepository, never()).deleteById(any());
+        // the encounter and observation deletes are recorded as the purge removes them
+        verify(changeFeed, times(1)).record(ChangeEvent.ResourceType.PATIENT, ChangeEvent.Operation.DELETE, 1L);
+        verify(changeFeed, never()).recordPatientDelete(any());
+        verify(nameIndex, times(1)).remove(1L);
+        verify(recentVitals, times(1)).invalidateAfterCommit(List.of(1L));
+        verify(secondLevelCache, times(1)).evictEntityData(Patient.class, 1L);
+        verify(secondLevelCache, times(1)).evictQueryRegion(PatientRepo.QUERY_REGION);
+    }
+
+    @Test
+    @DisplayName("Test 20: Should change the name index only once the transaction commits")
+    void testNameIndexAfterCommit() {
+        when(patientRepository.save(any(Patient.class))).thenReturn(patient);
+        when(patientRepository.findIdentifierById(1L)).thenReturn(Optional.of("MRN-12345"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            patientService.createPatient(patientDTO);
+            patientService.deletePatient(1L);
+            verifyNoInteractions(nameIndex);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(nameIndex, times(1)).put(1L, "John", "Doe");
+        verify(nameIndex, times(1)).remove(1L);
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.patient.service;
+
+import org.example.patient.models.CursorPage;
+import org.example.patient.models.EncounterDTO;
+import org.example.patient.models.ObservationDTO;
+import org.example.patient.models.PatientDTO;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Patient Timeline Service Tests")
+class PatientTimelineServiceTest {
+
+    @Mock
+    private PatientService patientService;
+
+    @Mock
+    private EncounterService encounterService;
+
+    @Mock
+    private ObservationService observationService;
+
+    @InjectMocks
+    private PatientTimelineService timelineService;
+
+    private PatientDTO patientDTO;
+
+    @BeforeEach
+    void setUp(TestInfo testInfo) {
+        System.out.println("▶ Running: " + testInfo.getDisplayName());
+
+        patientDTO = new PatientDTO();
+        patientDTO.setIdentifier("MRN-12345");
+    }
+
+    @Test
+    @DisplayName("Test 1: Should stream every encounter page of an existing patient")
+    void testStreamEncounters() {
+        EncounterDTO first = new EncounterDTO(1L, LocalDate.of(2025, 12, 1), null, "OUTPATIENT");
+        EncounterDTO second = new EncounterDTO(1L, LocalDate.of(2025, 12, 2), null, "INPATIENT");
+        when(patientService.getPatientById(1L)).thenReturn(Optional.of(patientDTO));
+        when(encounterService.getPatientEncountersPage(eq(1L), isNull(), anyInt()))
+                .thenReturn(new CursorPage<>(List.of(first), 10L));
+        when(encounterService.getPatientEncountersPage(eq(1L), eq(10L), anyInt()))
+                .thenReturn(new CursorPage<>(List.of(second), null));
+
+        StepVerifier.create(timelineService.encounters(1L).flatMapMany(encounters -> encounters))
+                .expectNext(first, second)
+                .verifyComplete();
+
+        System.out.println("✅ Encounters streamed across pages");
+    }
+
+    @Test
+    @DisplayName("Test 2: Should complete empty when the patient does not exist")
+    void testStreamObservationsPatientNotFound() {
+        when(patientService.getPatientById(99L)).thenReturn(Optional.empty());
+        when(observationService.getPatientObservationsPage(eq(99L), isNull(), anyInt()))
+                .thenReturn(new CursorPage<>(List.of(), null));
+
+        StepVerifier.create(timelineService.observations(99L))
+                .verifyComplete();
+
+        System.out.println("✅ Missing patient produced no stream");
+    }
+
+    @Test
+    @DisplayName("Test 3: Should read at most one page ahead of the subscriber")
+    void testStreamPatientsFetchesOnDemand() {
+        PatientDTO second = new PatientDTO();
+        second.setIdentifier("MRN-2");
+        PatientDTO third = new PatientDTO();
+        third.setIdentifier("MRN-3");
+        when(patientService.getPatientsPage(isNull(), anyInt()))
+                .thenReturn(new CursorPage<>(List.of(patientDTO), 1L));
+        when(patientService.getPatientsPage(eq(1L), anyInt()))
+                .thenReturn(new CursorPage<>(List.of(second), 2L));
+        when(patientService.getPatientsPage(eq(2L), anyInt()))
+                .thenReturn(new CursorPage<>(List.of(third), null));
+
+        Flux<PatientDTO> patients = timelineService.patients();
+        verifyNoInteractions(patientService);
+
+        StepVerifier.create(patients, 1)
+                .expectNext(patientDTO)
+                .then(() -> verify(patientService, never()).getPatientsPage(eq(2L), anyInt()))
+                .thenRequest(2)
+                .expectNext(second, third)
+                .verifyComplete();
+
+        System.out.println("✅ Pages fetched on demand");
+    }
+
+    @Test
+    @DisplayName("Test 4: Should stream observations for an existing patient")
+    void testStreamObservations() {
+        ObservationDTO observation = new ObservationDTO();
+        observation.setCode("8867-4");
+        when(patientService.getPatientById(1L)).thenReturn(Optional.of(patientDTO));
+        when(observationService.getPatientObservationsPage(eq(1L), isNull(), anyInt()))
+                .thenReturn(new CursorPage<>(List.of(observation), null));
+
+        StepVerifier.create(timelineService.observations(1L).flatMapMany(observations -> observations))
+                .expectNext(observation)
+                .verifyComplete();
+
+        verify(observationService, times(1)).getPatientObservationsPage(anyLong(), any(), anyInt());
+        System.out.println("✅ Observations streamed");
+    }
+
+    @Test
+    @DisplayName("Test 5: Should stream every encounter and observation page by page")
+    void testStreamAll() {
+        EncounterDTO encounter = new EncounterDTO(1L, LocalDate.of(2025, 12, 1), null, "OUTPATIENT");
+        ObservationDTO first = new ObservationDTO();
+        first.setCode("8867-4");
+        ObservationDTO second = new ObservationDTO();
+        second.setCode("8310-5");
+        when(encounterService.getEncountersPage(isNull(), anyInt()))
+                .thenReturn(new CursorPage<>(List.of(encounter), null));
+        when(observationService.getObservationsPage(isNull(), anyInt()))
+                .thenReturn(new CursorPage<>(List.of(first), 5L));
+        when(observationService.getObservationsPage(eq(5L), anyInt()))
+                .thenReturn(new CursorPage<>(List.of(second), null));
+
+        StepVerifier.create(timelineService.encounters())
+                .expectNext(encounter)
+                .verifyComplete();
+        StepVerifier.create(timelineService.observations())
+                .expectNext(first, second)
+                .verifyComplete();
+
+        verifyNoInteractions(patientService);
+        System.out.println("✅ Encounters and observations streamed");
+    }
+}
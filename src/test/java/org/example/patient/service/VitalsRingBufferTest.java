@@ -0,0 +1,63 @@
+package org.example.patient.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Vitals Ring Buffer Tests")
+class VitalsRingBufferTest {
+
+    @Test
+    @DisplayName("Test 1: Should cut the memory budget into slots of the series capacity")
+    void testSlots() {
+        VitalsRingBuffer buffer = new VitalsRingBuffer(3 * 4 * VitalsRingBuffer.SAMPLE_BYTES + 10, 4);
+
+        assertEquals(3, buffer.slots());
+        int first = buffer.allocate();
+        int second = buffer.allocate();
+        int third = buffer.allocate();
+        assertEquals(-1, buffer.allocate());
+        assertEquals(3, Set.of(first, second, third).size());
+
+        buffer.free(second);
+        assertEquals(second, buffer.allocate());
+        assertThrows(IllegalArgumentException.class, () -> new VitalsRingBuffer(VitalsRingBuffer.SAMPLE_BYTES, 4));
+    }
+
+    @Test
+    @DisplayName("Test 2: Should keep the newest samples in time order once the series wraps")
+    void testWrapAround() {
+        VitalsRingBuffer buffer = new VitalsRingBuffer(4 * VitalsRingBuffer.SAMPLE_BYTES, 4);
+        int slot = buffer.allocate();
+        for (int i = 1; i <= 6; i++) {
+            buffer.add(slot, i * 1000L, i);
+        }
+
+        VitalsRingBuffer.Samples samples = buffer.read(slot, 0);
+        assertArrayEquals(new long[]{3000, 4000, 5000, 6000}, samples.times());
+        assertArrayEquals(new double[]{3, 4, 5, 6}, samples.values());
+        assertArrayEquals(new long[]{5000, 6000}, buffer.read(slot, 4500).times());
+        assertEquals(0, buffer.read(slot, 7000).times().length);
+    }
+
+    @Test
+    @DisplayName("Test 3: Should insert late samples in place and drop one older than a full series")
+    void testLateSamples() {
+        VitalsRingBuffer buffer = new VitalsRingBuffer(4 * VitalsRingBuffer.SAMPLE_BYTES, 4);
+        int slot = buffer.allocate();
+        buffer.add(slot, 1000, 1);
+        buffer.add(slot, 3000, 3);
+        buffer.add(slot, 4000, 4);
+        buffer.add(slot, 2000, 2);
+
+        buffer.add(slot, 500, 0.5);
+        buffer.add(slot, 3500, 3.5);
+
+        VitalsRingBuffer.Samples samples = buffer.read(slot, 0);
+        assertArrayEquals(new long[]{2000, 3000, 3500, 4000}, samples.times());
+        assertArrayEquals(new double[]{2, 3, 3.5, 4}, samples.values());
+    }
+}
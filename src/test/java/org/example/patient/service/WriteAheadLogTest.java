@@ -0,0 +1,88 @@
+package org.example.patient.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Write-Ahead Log Tests")
+class WriteAheadLogTest {
+
+    private static final int SEGMENT_SIZE = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Test 1: Should roll segments and replay only the records after the checkpoint")
+    void testReplayAfterCheckpoint() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(directory, SEGMENT_SIZE);
+        assertTrue(log.open().isEmpty());
+        long first = log.append(bytes("record-1-".repeat(3)));
+        log.append(bytes("record-2-".repeat(3)));
+        log.append(bytes("record-3-".repeat(3)));
+
+        List<WriteAheadLog.Entry> entries = log.read(0, Integer.MAX_VALUE);
+        assertEquals(3, entries.size());
+        assertEquals(3, segmentFiles());
+        log.checkpoint(first);
+
+        List<WriteAheadLog.Entry> replayed = new WriteAheadLog(directory, SEGMENT_SIZE).open();
+        assertEquals(List.of("record-2-".repeat(3), "record-3-".repeat(3)), replayed.stream().map(e -> text(e.payload)).toList());
+
+        log.checkpoint(entries.get(2).end);
+        assertEquals(1, segmentFiles());
+        assertTrue(new WriteAheadLog(directory, SEGMENT_SIZE).open().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test 2: Should drop a torn record on recovery and append over it")
+    void testTornRecord() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(directory, SEGMENT_SIZE);
+        log.open();
+        long end = log.append(bytes("kept"));
+        log.append(bytes("torn"));
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("0000000000000000.log").toFile(), "rw")) {
+            file.seek(end + 8);
+            file.write('x');
+        }
+
+        WriteAheadLog recovered = new WriteAheadLog(directory, SEGMENT_SIZE);
+        assertEquals(List.of("kept"), recovered.open().stream().map(e -> text(e.payload)).toList());
+        assertEquals(end + 8 + 5, recovered.append(bytes("after")));
+        assertEquals(List.of("kept", "after"),
+                new WriteAheadLog(directory, SEGMENT_SIZE).open().stream().map(e -> text(e.payload)).toList());
+    }
+
+    @Test
+    @DisplayName("Test 3: Should reject a record larger than a segment")
+    void testOversizedRecord() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(directory, SEGMENT_SIZE);
+        log.open();
+
+        assertThrows(IllegalArgumentException.class, () -> log.append(new byte[SEGMENT_SIZE]));
+        assertEquals(0, log.backlog());
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).count();
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}